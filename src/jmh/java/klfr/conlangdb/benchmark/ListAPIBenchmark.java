@@ -0,0 +1,72 @@
+package klfr.conlangdb.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.takes.Request;
+import org.takes.rq.RqFake;
+
+import klfr.conlangdb.ServerMain.Arguments;
+import klfr.conlangdb.database.FakeDatabase;
+import klfr.conlangdb.http.ResponseCache;
+import klfr.conlangdb.http.TkListAPI;
+
+/**
+ * Benchmarks the word list API from the request to the sent body, with the
+ * conversion of the result rows to JSON as the main cost. The response cache is
+ * disabled, so every request reaches the (fake) database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListAPIBenchmark {
+
+	@Param({ "10", "1000" })
+	public int rows;
+
+	private FakeDatabase database;
+	private TkListAPI wordList;
+	private Request request;
+
+	@Setup
+	public void setup() {
+		final var args = new Arguments();
+		args.responseCacheSize = 0;
+		ResponseCache.setup(args);
+
+		final var table = new ArrayList<Object[]>(rows);
+		for (int i = 0; i < rows; ++i)
+			table.add(new Object[] { "word" + i, "" + i,
+					FakeDatabase.array(new Object[] { "translation" + i, "other" + i }) });
+		database = new FakeDatabase(sql -> new FakeDatabase.Table(List.of("romanized", "text", "translations"), table));
+		wordList = new TkListAPI(TkListAPI.wordQueryBuilder, List.of("text", "translations"), "romanized");
+		request = new RqFake("GET", "/word/list?from=xx&to=en&fields=romanized");
+	}
+
+	@TearDown
+	public void tearDown() {
+		database.stop();
+	}
+
+	@Benchmark
+	public long wordList() throws IOException {
+		return Responses.send(wordList.act(request));
+	}
+}
@@ -0,0 +1,59 @@
+package klfr.conlangdb.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.takes.Request;
+import org.takes.rq.RqFake;
+import org.takes.rq.RqWithHeader;
+
+import klfr.conlangdb.http.TkMainPage;
+import klfr.conlangdb.http.TkStaticPageWrap;
+import klfr.conlangdb.http.util.TkFilesAdvanced;
+
+/**
+ * Benchmarks the static parts of the web application: page assembly and static
+ * file serving. The resources are read from the build output, as in the
+ * server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PageBenchmark {
+
+	private TkStaticPageWrap mainPage;
+	private TkFilesAdvanced files;
+	private Request pageRequest;
+	private Request fileRequest;
+
+	@Setup
+	public void setup() {
+		mainPage = new TkStaticPageWrap(new TkMainPage(), "mainpage");
+		files = new TkFilesAdvanced("static");
+		pageRequest = new RqWithHeader(new RqFake("GET", "/"), "Accept-Language", "de-DE,de;q=0.9,en;q=0.8");
+		fileRequest = new RqFake("GET", "/css/main.css");
+	}
+
+	@Benchmark
+	public long staticPage() throws IOException {
+		return Responses.send(mainPage.act(pageRequest));
+	}
+
+	@Benchmark
+	public long staticFile() throws IOException {
+		return Responses.send(files.act(fileRequest));
+	}
+}
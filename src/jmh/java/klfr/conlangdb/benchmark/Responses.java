@@ -0,0 +1,30 @@
+package klfr.conlangdb.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.takes.Response;
+
+/**
+ * Helpers for consuming responses like the HTTP back end does.
+ */
+final class Responses {
+
+	private Responses() {
+	}
+
+	/**
+	 * Reads the head and the whole body of the response.
+	 *
+	 * @return The number of head characters and body bytes, so that the work is
+	 *         not optimized away.
+	 */
+	static long send(final Response response) throws IOException {
+		var headLength = 0L;
+		for (final var line : response.head())
+			headLength += line.length();
+		try (final var body = response.body()) {
+			return headLength + body.transferTo(OutputStream.nullOutputStream());
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package klfr.conlangdb.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import klfr.conlangdb.TranslationProvider;
+import klfr.conlangdb.http.util.RsJSON;
+import klfr.conlangdb.util.StringStreamUtil;
+
+/**
+ * Benchmarks the serialization utilities: JSON responses, translation
+ * dictionaries and the string/stream conversions that the pages are built
+ * with.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+	/**
+	 * The serialized data of the given size. Only the benchmarks that use it run
+	 * once per size.
+	 */
+	@State(Scope.Benchmark)
+	public static class Data {
+		@Param({ "10", "1000" })
+		public int size;
+
+		private JSONArray list;
+		private String text;
+
+		@Setup
+		public void setup() {
+			list = new JSONArray();
+			for (int i = 0; i < size; ++i) {
+				final var obj = new JSONObject();
+				obj.put("romanized", "word" + i);
+				obj.put("text", "" + i);
+				obj.put("translations", new JSONArray().put("translation" + i).put("other" + i));
+				list.put(obj);
+			}
+			final var builder = new StringBuilder();
+			for (int i = 0; i < size; ++i)
+				builder.append("<p class=\"native-script-font\"> word ").append(i).append("</p>\n");
+			text = builder.toString();
+		}
+	}
+
+	@Benchmark
+	public long rsJSON(final Data data) throws IOException {
+		return Responses.send(new RsJSON(data.list));
+	}
+
+	@Benchmark
+	public JSONObject translation() {
+		return TranslationProvider.getTranslation("de", "DE");
+	}
+
+	@Benchmark
+	public String sequencifyStringify(final Data data) throws IOException {
+		return StringStreamUtil.stringify(StringStreamUtil.sequencify(StringStreamUtil.streamify("<html><body>"),
+				StringStreamUtil.streamify(data.text, StandardCharsets.UTF_8),
+				StringStreamUtil.streamify("</body></html>")));
+	}
+}
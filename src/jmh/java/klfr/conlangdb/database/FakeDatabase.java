@@ -0,0 +1,191 @@
+package klfr.conlangdb.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Function;
+
+import klfr.conlangdb.ServerMain.Arguments;
+
+/**
+ * Stand-in for the database in benchmarks. It takes the place of the database
+ * manager threads: a single executor thread takes the submitted commands from
+ * the command queue and runs them on a fake connection, whose queries return a
+ * fixed table. This keeps the queue handoff that real requests go through,
+ * while the database itself costs nothing.
+ */
+public final class FakeDatabase {
+
+	/** A fixed query result. */
+	public static final class Table {
+		final List<String> columns;
+		final List<Object[]> rows;
+
+		/**
+		 * @param columns The column names.
+		 * @param rows    The rows, with one value per column. Values are returned by
+		 *                {@link ResultSet#getObject(int)} as they are; the column
+		 *                types are reported from the first non-null values.
+		 */
+		public Table(final List<String> columns, final List<Object[]> rows) {
+			this.columns = columns;
+			this.rows = rows;
+		}
+	}
+
+	private final Thread executor;
+
+	/**
+	 * Sets up the database communicator with a fake database whose queries
+	 * return the table that the given function computes from the query's SQL.
+	 */
+	public FakeDatabase(final Function<String, Table> tables) {
+		final var args = new Arguments();
+		args.commandTimeout = 0;
+		args.queueDepth = 0;
+		args.queueTimeBudget = 0;
+		final BlockingQueue<DatabaseCommand<Object>> queue = DatabaseCommunicator.setupWithoutConnection(args);
+		final var connection = proxy(Connection.class, (self, method, arguments) -> {
+			switch (method.getName()) {
+				case "createStatement":
+					return statement(tables, null);
+				case "prepareStatement":
+					return statement(tables, (String) arguments[0]);
+				default:
+					return defaultValue(method);
+			}
+		});
+		executor = new Thread(() -> {
+			try {
+				while (true)
+					queue.take().getTask(connection).run();
+			} catch (InterruptedException e) {
+				// stopped
+			}
+		}, "FakeDB");
+		executor.setDaemon(true);
+		executor.start();
+	}
+
+	/** Stops the executor thread. */
+	public void stop() {
+		executor.interrupt();
+	}
+
+	private static Statement statement(final Function<String, Table> tables, final String preparedSql) {
+		return proxy(java.sql.PreparedStatement.class, (self, method, arguments) -> {
+			if (method.getName().equals("executeQuery"))
+				return resultSet(tables.apply(arguments == null ? preparedSql : (String) arguments[0]));
+			return defaultValue(method);
+		});
+	}
+
+	private static ResultSet resultSet(final Table table) {
+		final var meta = proxy(ResultSetMetaData.class, (self, method, arguments) -> {
+			switch (method.getName()) {
+				case "getColumnCount":
+					return table.columns.size();
+				case "getColumnName":
+				case "getColumnLabel":
+					return table.columns.get((Integer) arguments[0] - 1);
+				case "getColumnType":
+					return columnType(table, (Integer) arguments[0] - 1);
+				default:
+					return defaultValue(method);
+			}
+		});
+		final var cursor = new int[] { -1 };
+		final var wasNull = new boolean[1];
+		return proxy(ResultSet.class, (self, method, arguments) -> {
+			switch (method.getName()) {
+				case "next":
+					return ++cursor[0] < table.rows.size();
+				case "getMetaData":
+					return meta;
+				case "wasNull":
+					return wasNull[0];
+				case "getObject":
+				case "getArray":
+				case "getString":
+				case "getLong":
+				case "getBoolean":
+					final var value = arguments[0] instanceof Integer
+							? table.rows.get(cursor[0])[(Integer) arguments[0] - 1]
+							: table.rows.get(cursor[0])[table.columns.indexOf(arguments[0])];
+					wasNull[0] = value == null;
+					if (value == null)
+						return defaultValue(method);
+					if (method.getName().equals("getString"))
+						return value.toString();
+					if (method.getName().equals("getLong"))
+						return ((Number) value).longValue();
+					return value;
+				default:
+					return defaultValue(method);
+			}
+		});
+	}
+
+	/**
+	 * Returns the SQL type of a column like a database would report it, from the
+	 * column's first non-null value.
+	 */
+	private static int columnType(final Table table, final int column) {
+		for (final var row : table.rows) {
+			final var value = row[column];
+			if (value instanceof java.sql.Array)
+				return Types.ARRAY;
+			if (value instanceof Long || value instanceof Integer)
+				return Types.BIGINT;
+			if (value instanceof Boolean)
+				return Types.BOOLEAN;
+			if (value != null)
+				return Types.VARCHAR;
+		}
+		return Types.VARCHAR;
+	}
+
+	/**
+	 * Creates an SQL array value for a table, like the ones that the word list
+	 * queries return.
+	 */
+	public static java.sql.Array array(final Object[] elements) {
+		return proxy(java.sql.Array.class, (self, method, arguments) -> method.getName().equals("getArray")
+				? elements
+				: defaultValue(method));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(final Class<T> type, final InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(FakeDatabase.class.getClassLoader(), new Class<?>[] { type }, handler);
+	}
+
+	/** Returns the value of unsupported methods, which do nothing. */
+	private static Object defaultValue(final Method method) {
+		final var type = method.getReturnType();
+		if (type == boolean.class)
+			return false;
+		if (type == int.class)
+			return 0;
+		if (type == long.class)
+			return 0L;
+		if (type == double.class)
+			return 0d;
+		if (type == float.class)
+			return 0f;
+		if (type == short.class)
+			return (short) 0;
+		if (type == byte.class)
+			return (byte) 0;
+		if (type == char.class)
+			return '\0';
+		return null;
+	}
+}
@@ -0,0 +1,103 @@
+package klfr.conlangdb.load;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.json.JSONObject;
+
+/**
+ * Records the outcomes of the requests to one endpoint. The latencies of all
+ * successful requests are kept, so that the percentiles are exact; a load test
+ * run produces at most a few million of them.<br>
+ * <br>
+ * Requests have one of four outcomes: success (status below 400), rejection
+ * because of overload (503), other HTTP errors, and failures without response
+ * such as timeouts. Only successful requests count towards the latency
+ * percentiles and the throughput, fast rejections would flatter them.
+ */
+final class LatencyRecorder {
+
+	private final String endpoint;
+	private final LongAdder sent = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	/** Latencies of successful requests in nanoseconds; guarded by this. */
+	private long[] latencies = new long[4096];
+	private int count = 0;
+
+	LatencyRecorder(final String endpoint) {
+		this.endpoint = endpoint;
+	}
+
+	String endpoint() {
+		return endpoint;
+	}
+
+	void sent() {
+		sent.increment();
+	}
+
+	/**
+	 * Records a response.
+	 *
+	 * @param status  The HTTP status code.
+	 * @param latency The time from the scheduled start of the request until the
+	 *                response body was received, in nanoseconds.
+	 */
+	void response(final int status, final long latency) {
+		if (status == 503) {
+			rejected.increment();
+		} else if (status >= 400) {
+			errors.increment();
+		} else {
+			synchronized (this) {
+				if (count == latencies.length)
+					latencies = Arrays.copyOf(latencies, count * 2);
+				latencies[count++] = latency;
+			}
+		}
+	}
+
+	/** Records a request that failed without a response. */
+	void failure() {
+		failed.increment();
+	}
+
+	/**
+	 * Summarizes the recorded requests.
+	 *
+	 * @param seconds The length of the measurement in seconds, used for the
+	 *                throughput.
+	 * @return A JSON object with the request counts, the throughput in successful
+	 *         requests per second and the latency percentiles in milliseconds.
+	 */
+	synchronized JSONObject summary(final double seconds) {
+		final var sorted = Arrays.copyOf(latencies, count);
+		Arrays.sort(sorted);
+		final var summary = new JSONObject();
+		summary.put("sent", sent.sum());
+		summary.put("ok", count);
+		summary.put("rejected", rejected.sum());
+		summary.put("errors", errors.sum());
+		summary.put("failed", failed.sum());
+		summary.put("throughput", count / seconds);
+		summary.put("p50", millis(percentile(sorted, 0.5)));
+		summary.put("p99", millis(percentile(sorted, 0.99)));
+		summary.put("p999", millis(percentile(sorted, 0.999)));
+		summary.put("max", millis(sorted.length == 0 ? 0 : sorted[sorted.length - 1]));
+		return summary;
+	}
+
+	/** Returns the nearest-rank percentile of sorted values, 0 if there are none. */
+	private static long percentile(final long[] sorted, final double quantile) {
+		if (sorted.length == 0)
+			return 0;
+		final var rank = (int) Math.ceil(quantile * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+
+	private static double millis(final long nanos) {
+		return nanos / 1e6;
+	}
+}
@@ -0,0 +1,311 @@
+package klfr.conlangdb.load;
+
+import static klfr.conlangdb.CObject.f;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.json.JSONObject;
+
+import klfr.conlangdb.ServerEntry;
+import klfr.conlangdb.ServerMain.Arguments;
+
+/**
+ * End-to-end load test: Boots the server in this process against a PostgreSQL
+ * database, fills the database with a {@link SyntheticLexicon}, drives an
+ * open-loop HTTP {@link Workload} against the server and reports throughput
+ * and latency percentiles per endpoint, on the standard output and as JSON.<br>
+ * <br>
+ * The database is either given like the server's database, or a throwaway
+ * cluster is started with the local PostgreSQL binaries ({@code --temp-db}).
+ * Options of the server itself follow after {@code --}. Run with
+ * {@code gradlew loadTest -Pload="<options>"}, {@code --help} lists the
+ * options.
+ */
+public final class LoadTest {
+	private static final Logger log = Logger.getLogger(LoadTest.class.getCanonicalName());
+
+	/** Usage of the database options, which are shared with the lexicon generator. */
+	static final String databaseUsage = String.join(System.lineSeparator(), "database:",
+			"  --db-host H, --db-port N, --db-name D, --db-user U, --db-password P   like the server's database");
+
+	private static final String usage = String.join(System.lineSeparator(),
+			"usage: LoadTest [options] [-- server options]", "workload:",
+			"  --rate N              requests per second (100)",
+			"  --duration S          measurement time in seconds (60)",
+			"  --warmup S            unrecorded time before the measurement in seconds (15)",
+			"  --mix E=W,...         endpoint weights (list=40,word=40,statistics=10,word-post=9,language-post=1)",
+			"  --arrivals A          poisson or uniform request intervals (poisson)",
+			"  --timeout S           request timeout in seconds (10)",
+			"  --max-outstanding N   requests waiting for a response, more are skipped (1000)",
+			"  --result FILE         JSON result file", "  --port N              HTTP port of the server (8091)",
+			"lexicon, generated unless the database contains it:", SyntheticLexicon.usage, databaseUsage,
+			"  --temp-db DIR         start a throwaway PostgreSQL cluster in DIR instead;",
+			"                        DIR must be empty, missing or an earlier cluster",
+			"  --pg-bin DIR          directory of initdb and pg_ctl (PATH)",
+			"  --pg-port N           port of the throwaway cluster (54329)");
+
+	private LoadTest() {
+	}
+
+	public static void main(final String[] args) throws Exception {
+		Logger.getLogger("klfr.conlangdb").setLevel(Level.WARNING);
+		Logger.getLogger(LoadTest.class.getPackageName()).setLevel(Level.INFO);
+
+		// options up to "--" are the load test's, the rest are the server's
+		var separator = Arrays.asList(args).indexOf("--");
+		if (separator < 0)
+			separator = args.length;
+		final var server = ServerEntry
+				.parseArgs(Arrays.copyOfRange(args, Math.min(separator + 1, args.length), args.length));
+		if (server.errorMessage != null)
+			fail(server.errorMessage);
+		server.port = 8091;
+
+		var rate = 100.0;
+		var duration = 60;
+		var warmup = 15;
+		var mix = "list=40,word=40,statistics=10,word-post=9,language-post=1";
+		var poisson = true;
+		var timeout = 10;
+		var maxOutstanding = 1000;
+		Path result = null;
+		Path tempDatabase = null;
+		Path binaries = null;
+		var tempPort = 54329;
+		final var lexicon = new SyntheticLexicon();
+		int i = 0;
+		try {
+			for (; i < separator; ++i) {
+				switch (args[i]) {
+					case "--rate":
+						rate = Double.parseDouble(args[++i]);
+						break;
+					case "--duration":
+						duration = Integer.parseInt(args[++i]);
+						break;
+					case "--warmup":
+						warmup = Integer.parseInt(args[++i]);
+						break;
+					case "--mix":
+						mix = args[++i];
+						break;
+					case "--arrivals":
+						poisson = args[++i].equals("poisson");
+						break;
+					case "--timeout":
+						timeout = Integer.parseInt(args[++i]);
+						break;
+					case "--max-outstanding":
+						maxOutstanding = Integer.parseInt(args[++i]);
+						break;
+					case "--result":
+						result = Path.of(args[++i]);
+						break;
+					case "--temp-db":
+						tempDatabase = Path.of(args[++i]);
+						break;
+					case "--pg-bin":
+						binaries = Path.of(args[++i]);
+						break;
+					case "--pg-port":
+						tempPort = Integer.parseInt(args[++i]);
+						break;
+					case "--port":
+						server.port = Integer.parseInt(args[++i]);
+						break;
+					case "-h":
+					case "--help":
+						System.out.println(usage);
+						return;
+					default:
+						if (!lexicon.option(args[i], args[i + 1]) && !databaseOption(server, args[i], args[i + 1]))
+							fail(f("unknown option '%s'", args[i]));
+						++i;
+				}
+			}
+		} catch (NumberFormatException e) {
+			fail(f("the value of %s is not a number.", args[i]));
+		} catch (ArrayIndexOutOfBoundsException e) {
+			fail(f("option %s needs a value.", args[args.length - 1]));
+		}
+		final var weights = new LinkedHashMap<String, Integer>();
+		for (final var weight : mix.split(",")) {
+			final var parts = weight.split("=");
+			weights.put(parts[0].strip(), parts.length > 1 ? Integer.parseInt(parts[1].strip()) : 1);
+		}
+
+		LocalPostgres cluster = null;
+		try {
+			if (tempDatabase != null) {
+				cluster = LocalPostgres.start(binaries, tempDatabase, tempPort, server.databaseUser,
+						server.databaseName);
+				server.databaseHost = "localhost";
+				server.databasePort = tempPort;
+			}
+			final List<Workload.Language> languages;
+			try (final var connection = connect(server)) {
+				SyntheticLexicon.createSchema(connection);
+				if (!SyntheticLexicon.isLoaded(connection)) {
+					log.info(f("Generating %s", lexicon));
+					lexicon.load(connection);
+				}
+				languages = sampleWords(connection, lexicon.languages);
+			}
+
+			final var base = URI.create(f("http://localhost:%d/", server.port));
+			final var serverThread = new Thread(() -> ServerEntry.startServer(server), "LoadSrvr");
+			serverThread.setDaemon(true);
+			serverThread.start();
+			awaitServer(base);
+
+			final var workload = new Workload(base, languages, Duration.ofSeconds(timeout), maxOutstanding);
+			final var recorders = workload.run(weights, rate, poisson, Duration.ofSeconds(warmup),
+					Duration.ofSeconds(duration), lexicon.seed);
+
+			final var report = new JSONObject();
+			report.put("rate", rate);
+			report.put("arrivals", poisson ? "poisson" : "uniform");
+			report.put("warmup", warmup);
+			report.put("duration", duration);
+			report.put("mix", weights);
+			report.put("skipped", workload.skipped());
+			report.put("server", server.toString());
+			report.put("lexicon", lexicon.toString());
+			final var endpoints = new JSONObject();
+			for (final var recorder : recorders)
+				endpoints.put(recorder.endpoint(), recorder.summary(duration));
+			report.put("endpoints", endpoints);
+
+			print(recorders, endpoints, workload.skipped());
+			if (result != null) {
+				Files.createDirectories(result.toAbsolutePath().getParent());
+				Files.writeString(result, report.toString(2), StandardCharsets.UTF_8);
+				log.info(f("Results written to %s", result));
+			}
+		} finally {
+			if (cluster != null)
+				cluster.close();
+		}
+		// the server does not stop on its own
+		System.exit(0);
+	}
+
+	private static void fail(final String message) {
+		System.err.printf("LoadTest: error: %s%n%s%n", message, usage);
+		System.exit(1);
+	}
+
+	/**
+	 * Sets a database option of the server's arguments.
+	 *
+	 * @return Whether the option is a database option.
+	 * @throws NumberFormatException if the port is not a number.
+	 */
+	static boolean databaseOption(final Arguments server, final String option, final String value) {
+		switch (option) {
+			case "--db-host":
+				server.databaseHost = value;
+				break;
+			case "--db-port":
+				server.databasePort = Integer.parseInt(value);
+				break;
+			case "--db-name":
+				server.databaseName = value;
+				break;
+			case "--db-user":
+				server.databaseUser = value;
+				break;
+			case "--db-password":
+				server.databasePassword = value;
+				break;
+			default:
+				return false;
+		}
+		return true;
+	}
+
+	/** Connects to the database of the server's arguments. */
+	static Connection connect(final Arguments server) throws SQLException {
+		final var props = new Properties();
+		props.setProperty("user", server.databaseUser);
+		props.setProperty("password", server.databasePassword);
+		return DriverManager.getConnection(
+				f("jdbc:postgresql://%s:%d/%s", server.databaseHost, server.databasePort, server.databaseName), props);
+	}
+
+	/**
+	 * Returns the lexicon's languages that exist in the database, with a random
+	 * sample of their words.
+	 */
+	private static List<Workload.Language> sampleWords(final Connection connection, final int languageCount)
+			throws SQLException {
+		final var languages = new ArrayList<Workload.Language>();
+		try (final var stmt = connection
+				.prepareStatement("select Romanized from TWord where LID=? order by random() limit 1000;")) {
+			for (int i = 0; i < Math.min(languageCount, SyntheticLexicon.MAX_LANGUAGES); ++i) {
+				stmt.setString(1, SyntheticLexicon.languageId(i));
+				final var words = new ArrayList<String>();
+				final var rset = stmt.executeQuery();
+				while (rset.next())
+					words.add(rset.getString(1));
+				if (!words.isEmpty())
+					languages.add(new Workload.Language(SyntheticLexicon.languageId(i), words));
+			}
+		}
+		if (languages.size() < 2)
+			throw new IllegalStateException("The database contains less than two languages of the lexicon.");
+		return languages;
+	}
+
+	/** Waits until the server answers requests. */
+	private static void awaitServer(final URI base) throws IOException, InterruptedException {
+		final var client = HttpClient.newHttpClient();
+		final var request = HttpRequest.newBuilder(base.resolve("/statistics?language-count=all"))
+				.timeout(Duration.ofSeconds(5)).build();
+		for (int attempt = 0; attempt < 120; ++attempt) {
+			try {
+				if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200)
+					return;
+			} catch (IOException e) {
+				// not listening yet
+			}
+			Thread.sleep(500);
+		}
+		throw new IOException("The server did not start within a minute.");
+	}
+
+	private static void print(final List<LatencyRecorder> recorders, final JSONObject endpoints,
+			final long skipped) {
+		final var out = System.out;
+		out.printf("%n%-14s %8s %8s %8s %8s %8s %9s %9s %9s %9s %9s%n", "endpoint", "sent", "ok", "rejected",
+				"errors", "failed", "ok/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+		for (final var recorder : recorders) {
+			final var summary = endpoints.getJSONObject(recorder.endpoint());
+			out.printf("%-14s %8d %8d %8d %8d %8d %9.1f %9.2f %9.2f %9.2f %9.2f%n", recorder.endpoint(),
+					summary.getLong("sent"), summary.getLong("ok"), summary.getLong("rejected"),
+					summary.getLong("errors"), summary.getLong("failed"), summary.getDouble("throughput"),
+					summary.getDouble("p50"), summary.getDouble("p99"), summary.getDouble("p999"),
+					summary.getDouble("max"));
+		}
+		if (skipped > 0)
+			out.printf("%d requests were skipped because the load generator was saturated.%n", skipped);
+	}
+}
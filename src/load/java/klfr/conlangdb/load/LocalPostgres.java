@@ -0,0 +1,105 @@
+package klfr.conlangdb.load;
+
+import static klfr.conlangdb.CObject.f;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * A throwaway PostgreSQL cluster for the load test, created with the
+ * PostgreSQL binaries {@code initdb} and {@code pg_ctl} in a data directory
+ * that is deleted beforehand, if it is the data directory of an earlier
+ * cluster. The cluster only listens on localhost, trusts all
+ * local connections and is stopped on {@link #close()}.
+ */
+final class LocalPostgres implements AutoCloseable {
+	private static final Logger log = Logger.getLogger(LocalPostgres.class.getCanonicalName());
+
+	private final Path binaries;
+	private final Path dataDirectory;
+
+	private LocalPostgres(final Path binaries, final Path dataDirectory) {
+		this.binaries = binaries;
+		this.dataDirectory = dataDirectory;
+	}
+
+	/**
+	 * Creates and starts a new cluster and creates the database in it.
+	 *
+	 * @param binaries      The directory of the PostgreSQL binaries, or null to
+	 *                      look them up in the PATH.
+	 * @param dataDirectory The cluster's data directory, which is deleted first.
+	 *                      It must be empty or the data directory of an earlier
+	 *                      cluster, i.e. contain a PG_VERSION file.
+	 * @param port          The port that the cluster listens on.
+	 * @param user          The name of the cluster's superuser.
+	 * @param database      The database to create.
+	 */
+	static LocalPostgres start(final Path binaries, final Path dataDirectory, final int port, final String user,
+			final String database) throws IOException, InterruptedException, SQLException {
+		if (Files.exists(dataDirectory)) {
+			// only ever delete an earlier cluster, so that a mistyped path cannot wipe other data
+			if (!Files.isDirectory(dataDirectory))
+				throw new IOException(f("%s is not a directory", dataDirectory));
+			if (!Files.exists(dataDirectory.resolve("PG_VERSION")))
+				try (Stream<Path> files = Files.list(dataDirectory)) {
+					if (files.findAny().isPresent())
+						throw new IOException(f("%s is not empty and no PostgreSQL data directory, refusing to delete it",
+								dataDirectory));
+				}
+			try (Stream<Path> files = Files.walk(dataDirectory)) {
+				for (final var file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator)
+					Files.delete(file);
+			}
+		}
+		Files.createDirectories(dataDirectory.toAbsolutePath().getParent());
+		final var cluster = new LocalPostgres(binaries, dataDirectory);
+		cluster.run("initdb", "-D", dataDirectory.toString(), "-U", user, "--auth=trust", "--encoding=UTF8",
+				"--locale=C");
+		cluster.run("pg_ctl", "-D", dataDirectory.toString(), "-l", dataDirectory.resolve("server.log").toString(),
+				"-o", f("-p %d -c listen_addresses=localhost -c unix_socket_directories=''", port), "-w", "start");
+		log.info(f("PostgreSQL cluster in %s listening on port %d", dataDirectory, port));
+
+		final var props = new Properties();
+		props.setProperty("user", user);
+		try (final var connection = DriverManager
+				.getConnection(f("jdbc:postgresql://localhost:%d/postgres", port), props)) {
+			connection.createStatement().execute(f("CREATE DATABASE \"%s\" ENCODING 'UTF8'", database));
+		}
+		return cluster;
+	}
+
+	private void run(final String program, final String... arguments) throws IOException, InterruptedException {
+		final List<String> command = new ArrayList<>();
+		command.add(binaries == null ? program : binaries.resolve(program).toString());
+		command.addAll(List.of(arguments));
+		final var process = new ProcessBuilder(command).redirectErrorStream(true)
+				.redirectOutput(dataDirectory.toAbsolutePath().resolveSibling(program + ".log").toFile()).start();
+		if (process.waitFor() != 0)
+			throw new IOException(f("%s failed with exit code %d, see %s.log", program, process.exitValue(), program));
+	}
+
+	/**
+	 * Stops the cluster. The data directory is kept for inspection. If the thread
+	 * is interrupted while waiting for the cluster to stop, its interrupt flag is
+	 * restored and the cluster keeps shutting down in the background.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			run("pg_ctl", "-D", dataDirectory.toString(), "-m", "fast", "-w", "stop");
+		} catch (final InterruptedException e) {
+			log.warning(f("Interrupted while stopping the PostgreSQL cluster in %s", dataDirectory));
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,582 @@
+package klfr.conlangdb.load;
+
+import static klfr.conlangdb.CObject.f;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import klfr.conlangdb.ServerMain.Arguments;
+import klfr.conlangdb.database.commands.InitDatabaseCmd;
+
+/**
+ * Generates a synthetic multi-language lexicon and bulk-loads it into a
+ * database with the schema of {@code create-database.sql}, for benchmarks and
+ * capacity planning. The lexicon is the same for the same seed and
+ * parameters.<br>
+ * <br>
+ * The languages get the IDs of the private use range qaa-qtz, so they are
+ * constructed languages. Their words are random syllable sequences, with a
+ * native text in the Private Use Area like that of a conscript. Every language
+ * has a set of word attributes, every word has definitions, attributes and
+ * translations into words of other languages. The counts follow
+ * {@link Zipf} distributions from 1 to a maximum, whose skew is configurable:
+ * <ul>
+ * <li>The number of syllables of a word, i.e. the word length.</li>
+ * <li>The translation fan-out, i.e. the number of translations that a word
+ * gets into words of the languages after its own; it receives further
+ * translations from the languages before it. The translated words are also
+ * Zipf-distributed, so that some words have many translations.</li>
+ * <li>The number of definitions and of attributes of a word, with the first
+ * attributes of a language being the most common.</li>
+ * </ul>
+ * The rows are streamed to the database with {@code COPY}, with the word and
+ * attribute IDs assigned by the generator, so that millions of words load in
+ * minutes. The parameters are public fields, like the server's arguments.<br>
+ * <br>
+ * Run with {@code gradlew generateLexicon -Plexicon="<options>"}, or use
+ * {@link #load(Connection)} from tests and benchmarks.
+ */
+public final class SyntheticLexicon {
+	private static final Logger log = Logger.getLogger(SyntheticLexicon.class.getCanonicalName());
+
+	/** Maximum number of languages, the size of the range qaa-qtz. */
+	public static final int MAX_LANGUAGES = 20 * 26;
+
+	private static final String CONSONANTS = "ptkbdgmnlrsvfhjw";
+	private static final String VOWELS = "aeiou";
+
+	/** Names and symbols of the first word attributes of every language. */
+	private static final List<String[]> attributeNames = List.of(new String[] { "noun", "n" },
+			new String[] { "verb", "v" }, new String[] { "adjective", "adj" }, new String[] { "adverb", "adv" },
+			new String[] { "pronoun", "pron" }, new String[] { "preposition", "prep" },
+			new String[] { "conjunction", "conj" }, new String[] { "numeral", "num" },
+			new String[] { "particle", "part" }, new String[] { "interjection", "intj" },
+			new String[] { "transitive", "tr" }, new String[] { "intransitive", "intr" },
+			new String[] { "masculine", "m" }, new String[] { "feminine", "f" }, new String[] { "neuter", "nt" },
+			new String[] { "plural", "pl" }, new String[] { "perfective", "pfv" },
+			new String[] { "imperfective", "ipfv" }, new String[] { "diminutive", "dim" },
+			new String[] { "archaic", "arch" }, new String[] { "colloquial", "coll" },
+			new String[] { "formal", "form" });
+
+	/**
+	 * Triggers that are disabled while loading: the change notifications, which
+	 * would flood the listening servers, the duplicate translation check, which
+	 * scans the whole translation table per row, and the text search trigger,
+	 * which has no effect on inserted rows as it runs after the insertion. The
+	 * generator does not create duplicate translations.
+	 */
+	private static final List<String[]> disabledTriggers = List.of(new String[] { "TLanguage", "TrigNotifyTLanguage" },
+			new String[] { "TWord", "TrigNotifyTWord" },
+			new String[] { "TWord", "TrigCreateSearchVectorForTWordInsert" },
+			new String[] { "TDefinition", "TrigNotifyTDefinition" },
+			new String[] { "TWordAttribute", "TrigNotifyTWordAttribute" },
+			new String[] { "RelAttributeForWord", "TrigNotifyRelAttributeForWord" },
+			new String[] { "RelTranslation", "TrigNotifyRelTranslation" },
+			new String[] { "RelTranslation", "NoIdenticalTranslationInsert" });
+
+	/** Usage of the lexicon's command line options, with their defaults. */
+	public static final String usage = String.join(System.lineSeparator(),
+			"  --languages N         number of languages (20)", "  --words N             words per language (2000)",
+			"  --max-syllables N     maximum syllables of a word (6)",
+			"  --length-skew X       skew of the word lengths (1.0)",
+			"  --translations N      maximum translations into later languages per word (4)",
+			"  --translation-skew X  skew of the translation fan-out (1.0)",
+			"  --target-skew X       skew of the popularity of translated words (0.5)",
+			"  --definitions N       maximum definitions per word (3)",
+			"  --definition-skew X   skew of the definition counts (1.5)",
+			"  --attributes N        word attributes per language (12)",
+			"  --word-attributes N   maximum attributes per word (3)",
+			"  --attribute-skew X    skew of the attribute counts and choice (1.0)",
+			"  --seed N              random seed (1)");
+
+	/** Number of languages, at most {@link #MAX_LANGUAGES}. */
+	public int languages = 20;
+	/** Number of words in every language. */
+	public int wordsPerLanguage = 2000;
+	/** Maximum number of syllables of a word. */
+	public int maxSyllables = 6;
+	/** Skew of the number of syllables, 0 for uniform word lengths. */
+	public double lengthSkew = 1.0;
+	/**
+	 * Maximum number of translations that a word gets into words of later
+	 * languages. 0 disables translations.
+	 */
+	public int maxTranslations = 4;
+	/** Skew of the translation fan-out. */
+	public double translationSkew = 1.0;
+	/** Skew of the choice of translated words, 0 for uniform popularity. */
+	public double targetSkew = 0.5;
+	/** Maximum number of definitions of a word. 0 disables definitions. */
+	public int maxDefinitions = 3;
+	/** Skew of the number of definitions. */
+	public double definitionSkew = 1.5;
+	/** Number of word attributes of every language. */
+	public int attributesPerLanguage = 12;
+	/** Maximum number of attributes of a word. 0 disables word attributes. */
+	public int maxWordAttributes = 3;
+	/** Skew of the number of attributes of a word and of their choice. */
+	public double attributeSkew = 1.0;
+	/** Seed of the random generators. */
+	public long seed = 1;
+
+	/** Returns the ID of the i-th language. */
+	public static String languageId(final int i) {
+		return "q" + (char) ('a' + i / 26) + (char) ('a' + i % 26);
+	}
+
+	/**
+	 * Sets a parameter from a command line option.
+	 *
+	 * @param option The option, such as "--words".
+	 * @param value  The option's value.
+	 * @return Whether the option is a parameter of the lexicon.
+	 * @throws NumberFormatException if the value is not a number.
+	 */
+	public boolean option(final String option, final String value) {
+		switch (option) {
+			case "--languages":
+				languages = Integer.parseInt(value);
+				break;
+			case "--words":
+				wordsPerLanguage = Integer.parseInt(value);
+				break;
+			case "--max-syllables":
+				maxSyllables = Integer.parseInt(value);
+				break;
+			case "--length-skew":
+				lengthSkew = Double.parseDouble(value);
+				break;
+			case "--translations":
+				maxTranslations = Integer.parseInt(value);
+				break;
+			case "--translation-skew":
+				translationSkew = Double.parseDouble(value);
+				break;
+			case "--target-skew":
+				targetSkew = Double.parseDouble(value);
+				break;
+			case "--definitions":
+				maxDefinitions = Integer.parseInt(value);
+				break;
+			case "--definition-skew":
+				definitionSkew = Double.parseDouble(value);
+				break;
+			case "--attributes":
+				attributesPerLanguage = Integer.parseInt(value);
+				break;
+			case "--word-attributes":
+				maxWordAttributes = Integer.parseInt(value);
+				break;
+			case "--attribute-skew":
+				attributeSkew = Double.parseDouble(value);
+				break;
+			case "--seed":
+				seed = Long.parseLong(value);
+				break;
+			default:
+				return false;
+		}
+		return true;
+	}
+
+	/** Describes the parameters. */
+	@Override
+	public String toString() {
+		return f("SyntheticLexicon(languages=%d,words=%d,syllables=1-%d/%.2f,translations=1-%d/%.2f/%.2f,"
+				+ "definitions=1-%d/%.2f,attributes=%d,wordattributes=1-%d/%.2f,seed=%d)", languages, wordsPerLanguage,
+				maxSyllables, lengthSkew, maxTranslations, translationSkew, targetSkew, maxDefinitions, definitionSkew,
+				attributesPerLanguage, maxWordAttributes, attributeSkew, seed);
+	}
+
+	/**
+	 * Creates the schema from create-database.sql, as the server does on startup.
+	 * The Python function that classifies languages needs PL/Python and network
+	 * access, so a plain SQL version that treats the codes qaa-qtz as constructed
+	 * languages is created if the function does not exist yet.
+	 */
+	public static void createSchema(final Connection connection)
+			throws SQLException, InterruptedException, ExecutionException {
+		try (final var stmt = connection.createStatement()) {
+			if (!stmt.executeQuery("select 1 from pg_proc where proname='py_is_real_language';").next())
+				stmt.execute("CREATE FUNCTION py_is_real_language (code VARCHAR(3)) RETURNS BOOLEAN "
+						+ "AS $$ SELECT code !~ '^q[a-t][a-z]$' $$ LANGUAGE sql IMMUTABLE;");
+		}
+		final var init = new InitDatabaseCmd().getTask(connection);
+		init.run();
+		init.get();
+	}
+
+	/** Returns whether the database contains the lexicon's first language. */
+	public static boolean isLoaded(final Connection connection) throws SQLException {
+		try (final var stmt = connection.prepareStatement("select 1 from TLanguage where ID=?;")) {
+			stmt.setString(1, languageId(0));
+			return stmt.executeQuery().next();
+		}
+	}
+
+	/**
+	 * Loads the lexicon into the database, in a single transaction, and updates
+	 * the table statistics afterwards. The schema must exist and contain none of
+	 * the generated languages.
+	 *
+	 * @throws IllegalArgumentException if the parameters are out of range.
+	 */
+	public void load(final Connection connection) throws SQLException {
+		if (languages < 1 || languages > MAX_LANGUAGES)
+			throw new IllegalArgumentException(f("Between 1 and %d languages can be generated", MAX_LANGUAGES));
+		if (wordsPerLanguage < 1 || maxSyllables < 1 || attributesPerLanguage < 0
+				|| attributesPerLanguage > 10000)
+			throw new IllegalArgumentException("Invalid lexicon size");
+		final var start = System.nanoTime();
+		final var random = new SplittableRandom(seed);
+		final var autoCommit = connection.getAutoCommit();
+		connection.setAutoCommit(false);
+		try (final var stmt = connection.createStatement()) {
+			final var firstWordId = nextId(connection, "TWord");
+			final var firstAttributeId = nextId(connection, "TWordAttribute");
+			for (final var trigger : disabledTriggers)
+				stmt.execute(f("ALTER TABLE %s DISABLE TRIGGER %s", trigger[0], trigger[1]));
+
+			final var languageCount = copyLanguages(connection, random.split());
+			final var attributeCount = copyAttributes(connection, firstAttributeId);
+			final var wordCount = copyWords(connection, random.split(), firstWordId);
+			final var definitionCount = copyDefinitions(connection, random.split(), firstWordId);
+			final var wordAttributeCount = copyWordAttributes(connection, random.split(), firstWordId,
+					firstAttributeId);
+			final var translationCount = copyTranslations(connection, random.split(), firstWordId);
+
+			for (final var trigger : disabledTriggers)
+				stmt.execute(f("ALTER TABLE %s ENABLE TRIGGER %s", trigger[0], trigger[1]));
+			// the IDs were assigned explicitly, so the sequences must skip them
+			for (final var table : List.of("TWord", "TWordAttribute"))
+				stmt.execute(f("select setval(pg_get_serial_sequence('%1$s', 'id'), (select max(ID) from %1$s));",
+						table.toLowerCase()));
+			connection.commit();
+			log.info(f("Loaded %d languages, %d attributes, %d words, %d definitions, %d word attributes and "
+					+ "%d translations in %d s", languageCount, attributeCount, wordCount, definitionCount,
+					wordAttributeCount, translationCount, (System.nanoTime() - start) / 1_000_000_000));
+		} catch (SQLException | RuntimeException e) {
+			connection.rollback();
+			throw e;
+		} finally {
+			connection.setAutoCommit(autoCommit);
+		}
+		try (final var stmt = connection.createStatement()) {
+			stmt.execute("ANALYZE TLanguage, TWord, TDefinition, TWordAttribute, RelAttributeForWord, RelTranslation;");
+		}
+	}
+
+	private static long nextId(final Connection connection, final String table) throws SQLException {
+		try (final var stmt = connection.createStatement()) {
+			final var rset = stmt.executeQuery(f("select coalesce(max(ID), 0) + 1 from %s;", table));
+			rset.next();
+			return rset.getLong(1);
+		}
+	}
+
+	private long wordId(final long firstWordId, final int language, final int word) {
+		return firstWordId + (long) language * wordsPerLanguage + word;
+	}
+
+	private long copyLanguages(final Connection connection, final SplittableRandom random) throws SQLException {
+		final var names = new HashSet<String>();
+		try (final var rows = new CopyRows(connection, "TLanguage (ID, Name, Name_En, Description, Description_En)")) {
+			for (int language = 0; language < languages; ++language) {
+				final var id = languageId(language);
+				final var name = uniqueWord(random, names, 2 + random.nextInt(2));
+				rows.field(id).field(Character.toUpperCase(name.charAt(0)) + name.substring(1))
+						.field("Synthetic " + id).field(sentence(random, 12))
+						.field(f("Synthetic language %s for benchmarks.", id)).endRow();
+			}
+			return rows.finish();
+		}
+	}
+
+	private long copyAttributes(final Connection connection, final long firstAttributeId) throws SQLException {
+		try (final var rows = new CopyRows(connection, "TWordAttribute (ID, LID, Name, Description, Symbol)")) {
+			for (int language = 0; language < languages; ++language)
+				for (int attribute = 0; attribute < attributesPerLanguage; ++attribute) {
+					final var named = attribute < attributeNames.size();
+					rows.field(firstAttributeId + (long) language * attributesPerLanguage + attribute)
+							.field(languageId(language))
+							.field(named ? attributeNames.get(attribute)[0] : "attribute " + attribute)
+							.field(null).field(named ? attributeNames.get(attribute)[1] : "a" + attribute).endRow();
+				}
+			return rows.finish();
+		}
+	}
+
+	private long copyWords(final Connection connection, final SplittableRandom random, final long firstWordId)
+			throws SQLException {
+		final var syllables = new Zipf(1, maxSyllables, lengthSkew);
+		try (final var rows = new CopyRows(connection, "TWord (ID, LID, Native, Romanized)")) {
+			for (int language = 0; language < languages; ++language) {
+				final var id = languageId(language);
+				final var words = new HashSet<String>(wordsPerLanguage * 2);
+				for (int word = 0; word < wordsPerLanguage; ++word) {
+					final var romanized = uniqueWord(random, words, syllables.sample(random));
+					rows.field(wordId(firstWordId, language, word)).field(id).field(nativeText(romanized))
+							.field(romanized).endRow();
+				}
+				log.fine(() -> f("Generated the words of %s", id));
+			}
+			return rows.finish();
+		}
+	}
+
+	private long copyDefinitions(final Connection connection, final SplittableRandom random,
+			final long firstWordId) throws SQLException {
+		if (maxDefinitions < 1)
+			return 0;
+		final var counts = new Zipf(1, maxDefinitions, definitionSkew);
+		try (final var rows = new CopyRows(connection, "TDefinition (WID, Definition)")) {
+			for (int language = 0; language < languages; ++language)
+				for (int word = 0; word < wordsPerLanguage; ++word)
+					for (int i = counts.sample(random); i > 0; --i)
+						rows.field(wordId(firstWordId, language, word)).field(sentence(random, 4 + random.nextInt(12)))
+								.endRow();
+			return rows.finish();
+		}
+	}
+
+	private long copyWordAttributes(final Connection connection, final SplittableRandom random,
+			final long firstWordId, final long firstAttributeId) throws SQLException {
+		if (maxWordAttributes < 1 || attributesPerLanguage < 1)
+			return 0;
+		final var counts = new Zipf(1, Math.min(maxWordAttributes, attributesPerLanguage), attributeSkew);
+		final var choice = new Zipf(0, attributesPerLanguage - 1, attributeSkew);
+		final var chosen = new long[maxWordAttributes];
+		try (final var rows = new CopyRows(connection, "RelAttributeForWord (WID, AID)")) {
+			for (int language = 0; language < languages; ++language)
+				for (int word = 0; word < wordsPerLanguage; ++word) {
+					final var wid = wordId(firstWordId, language, word);
+					final var firstOfLanguage = firstAttributeId + (long) language * attributesPerLanguage;
+					final var count = distinct(chosen, counts.sample(random),
+							() -> firstOfLanguage + choice.sample(random));
+					for (int i = 0; i < count; ++i)
+						rows.field(wid).field(chosen[i]).endRow();
+				}
+			return rows.finish();
+		}
+	}
+
+	private long copyTranslations(final Connection connection, final SplittableRandom random,
+			final long firstWordId) throws SQLException {
+		if (maxTranslations < 1 || languages < 2)
+			return 0;
+		final var fanOut = new Zipf(1, maxTranslations, translationSkew);
+		final var targets = new Zipf(0, wordsPerLanguage - 1, targetSkew);
+		final var chosen = new long[maxTranslations];
+		try (final var rows = new CopyRows(connection, "RelTranslation (WIDOne, WIDTwo)")) {
+			// translations only go to later languages, so that no word pair is generated
+			// twice
+			for (int language = 0; language < languages - 1; ++language) {
+				final var first = language + 1;
+				for (int word = 0; word < wordsPerLanguage; ++word) {
+					final var wid = wordId(firstWordId, language, word);
+					final var count = distinct(chosen, fanOut.sample(random), () -> wordId(firstWordId,
+							first + random.nextInt(languages - first), targets.sample(random)));
+					for (int i = 0; i < count; ++i)
+						rows.field(wid).field(chosen[i]).endRow();
+				}
+			}
+			return rows.finish();
+		}
+	}
+
+	/**
+	 * Draws up to count distinct values into the beginning of the array. Values
+	 * that were already drawn are drawn again a few times, and are dropped if
+	 * they keep repeating, as happens with strongly skewed choices.
+	 *
+	 * @return The number of distinct values.
+	 */
+	private static int distinct(final long[] values, final int count, final LongSupplier draw) {
+		var drawn = 0;
+		for (int attempt = 0; drawn < count && attempt < count * 4; ++attempt) {
+			final var value = draw.getAsLong();
+			var duplicate = false;
+			for (int i = 0; i < drawn; ++i)
+				duplicate |= values[i] == value;
+			if (!duplicate)
+				values[drawn++] = value;
+		}
+		return drawn;
+	}
+
+	/**
+	 * Generates a word of the given number of syllables that is not in the set of
+	 * existing words, and adds it.
+	 */
+	private static String uniqueWord(final SplittableRandom random, final Set<String> existing, int syllables) {
+		for (int attempt = 1;; ++attempt) {
+			final var word = word(random, syllables);
+			if (existing.add(word))
+				return word;
+			// the short words run out first
+			if (attempt % 8 == 0)
+				++syllables;
+		}
+	}
+
+	private static String word(final SplittableRandom random, final int syllables) {
+		final var word = new StringBuilder(syllables * 3);
+		for (int i = 0; i < syllables; ++i) {
+			word.append(CONSONANTS.charAt(random.nextInt(CONSONANTS.length())))
+					.append(VOWELS.charAt(random.nextInt(VOWELS.length())));
+			// some closed syllables
+			if (random.nextInt(4) == 0)
+				word.append(CONSONANTS.charAt(random.nextInt(CONSONANTS.length())));
+		}
+		return word.toString();
+	}
+
+	private static String sentence(final SplittableRandom random, final int words) {
+		final var sentence = new StringBuilder(words * 6);
+		for (int i = 0; i < words; ++i)
+			sentence.append(i == 0 ? "" : " ").append(word(random, 1 + random.nextInt(3)));
+		return sentence.append('.').toString();
+	}
+
+	/**
+	 * Returns the native text of a romanized word, in which every letter is
+	 * replaced by its own Private Use Area character, as with a conscript.
+	 */
+	private static String nativeText(final String romanized) {
+		final var text = new StringBuilder(romanized.length());
+		for (int i = 0; i < romanized.length(); ++i)
+			text.append((char) (0xE000 + romanized.charAt(i) - 'a'));
+		return text.toString();
+	}
+
+	/**
+	 * Rows of a {@code COPY ... FROM STDIN} in the text format, which are sent to
+	 * the server in chunks while they are generated.
+	 */
+	private static final class CopyRows implements AutoCloseable {
+		private static final int CHUNK_SIZE = 1 << 16;
+
+		private final CopyIn copy;
+		private final StringBuilder buffer = new StringBuilder(CHUNK_SIZE + 1024);
+		private boolean rowStart = true;
+
+		/**
+		 * @param target The table with the list of the copied columns.
+		 */
+		CopyRows(final Connection connection, final String target) throws SQLException {
+			copy = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(f("COPY %s FROM STDIN", target));
+		}
+
+		/** Appends the next field of the current row, null for SQL NULL. */
+		CopyRows field(final Object value) {
+			if (!rowStart)
+				buffer.append('\t');
+			rowStart = false;
+			if (value == null) {
+				buffer.append("\\N");
+				return this;
+			}
+			final var text = value.toString();
+			for (int i = 0; i < text.length(); ++i) {
+				final var c = text.charAt(i);
+				switch (c) {
+					case '\\':
+						buffer.append("\\\\");
+						break;
+					case '\t':
+						buffer.append("\\t");
+						break;
+					case '\n':
+						buffer.append("\\n");
+						break;
+					case '\r':
+						buffer.append("\\r");
+						break;
+					default:
+						buffer.append(c);
+				}
+			}
+			return this;
+		}
+
+		void endRow() throws SQLException {
+			buffer.append('\n');
+			rowStart = true;
+			if (buffer.length() >= CHUNK_SIZE)
+				flush();
+		}
+
+		private void flush() throws SQLException {
+			final var bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+			copy.writeToCopy(bytes, 0, bytes.length);
+			buffer.setLength(0);
+		}
+
+		/**
+		 * Sends the remaining rows and ends the copy.
+		 *
+		 * @return The number of copied rows.
+		 */
+		long finish() throws SQLException {
+			flush();
+			return copy.endCopy();
+		}
+
+		/** Cancels the copy if it was not finished. */
+		@Override
+		public void close() throws SQLException {
+			if (copy.isActive())
+				copy.cancelCopy();
+		}
+	}
+
+	/**
+	 * Generates a lexicon into the database given on the command line, creating
+	 * the schema if necessary.
+	 */
+	public static void main(final String[] args) throws Exception {
+		final var lexicon = new SyntheticLexicon();
+		final var database = new Arguments();
+		int i = 0;
+		try {
+			for (; i < args.length; ++i) {
+				if (args[i].equals("-h") || args[i].equals("--help")) {
+					System.out.printf("usage: SyntheticLexicon [options]%n%s%n%s%n", usage, LoadTest.databaseUsage);
+					return;
+				}
+				if (!lexicon.option(args[i], args[i + 1]) && !LoadTest.databaseOption(database, args[i], args[i + 1])) {
+					System.err.printf("SyntheticLexicon: error: unknown option '%s'%n", args[i]);
+					System.exit(1);
+				}
+				++i;
+			}
+		} catch (NumberFormatException e) {
+			System.err.printf("SyntheticLexicon: error: %s is not a number.%n", args[i + 1]);
+			System.exit(1);
+		} catch (ArrayIndexOutOfBoundsException e) {
+			System.err.printf("SyntheticLexicon: error: option %s needs a value.%n", args[i]);
+			System.exit(1);
+		}
+
+		try (final var connection = LoadTest.connect(database)) {
+			createSchema(connection);
+			log.info(f("Generating %s", lexicon));
+			lexicon.load(connection);
+		} catch (SQLException | IllegalArgumentException e) {
+			log.log(Level.SEVERE, "Generating the lexicon failed.", e);
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,232 @@
+package klfr.conlangdb.load;
+
+import static klfr.conlangdb.CObject.f;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.logging.Logger;
+
+import org.json.JSONObject;
+
+/**
+ * Open-loop HTTP workload: requests are sent at their scheduled times, whether
+ * or not the earlier requests were answered, just like independent clients
+ * would. The latency of a request is measured from its scheduled time, so that
+ * a server that falls behind is charged for the time requests wait to be sent
+ * (coordinated omission does not hide its queueing).<br>
+ * <br>
+ * The requests go to the endpoints in proportion to the endpoints' weights.
+ * Their parameters are drawn from a sample of the database's languages and
+ * words.
+ */
+final class Workload {
+	private static final Logger log = Logger.getLogger(Workload.class.getCanonicalName());
+
+	/** A language ID with a sample of its romanized words. */
+	static final class Language {
+		final String id;
+		final List<String> words;
+
+		Language(final String id, final List<String> words) {
+			this.id = id;
+			this.words = words;
+		}
+	}
+
+	/**
+	 * The endpoints of the workload by name, which create a request for the base
+	 * URI from a random generator and a sequence number.
+	 */
+	private final Map<String, BiFunction<SplittableRandom, Long, HttpRequest.Builder>> endpoints = new LinkedHashMap<>();
+
+	private final URI base;
+	private final List<Language> languages;
+	private final HttpClient client;
+	private final Duration timeout;
+	/** Limits the number of requests that wait for their response. */
+	private final Semaphore outstanding;
+	private final int maxOutstanding;
+	/** Requests that were not sent because too many requests were outstanding. */
+	private final LongAdder skipped = new LongAdder();
+	private final AtomicLong sequence = new AtomicLong();
+
+	/**
+	 * @param base           The server's base URI.
+	 * @param languages      The languages and words that requests refer to, at
+	 *                       least two languages with words.
+	 * @param timeout        The time after which a request fails.
+	 * @param maxOutstanding The maximum number of requests that wait for their
+	 *                       response. Further requests are skipped and counted,
+	 *                       as the load generator itself is saturated then.
+	 */
+	Workload(final URI base, final List<Language> languages, final Duration timeout, final int maxOutstanding) {
+		this.base = base;
+		this.languages = languages;
+		this.timeout = timeout;
+		this.outstanding = new Semaphore(maxOutstanding);
+		this.maxOutstanding = maxOutstanding;
+		this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+				.executor(Executors.newCachedThreadPool(runnable -> {
+					final var thread = new Thread(runnable, "LoadClnt");
+					thread.setDaemon(true);
+					return thread;
+				})).build();
+
+		endpoints.put("list", (random, n) -> {
+			final var from = language(random);
+			return get(f("/word/list?from=%s&to=%s&fields=romanized,text,translations&ipp=50&page=%d", from.id,
+					otherLanguage(random, from).id, random.nextInt(Math.max(1, from.words.size() / 50))))
+							.header("Accept", "application/json");
+		});
+		endpoints.put("word", (random, n) -> {
+			final var language = language(random);
+			return get(f("/word/%s/%s?to=%s", language.id, encode(word(random, language)),
+					otherLanguage(random, language).id)).header("Accept", "application/json");
+		});
+		endpoints.put("statistics", (random, n) -> get(f(
+				"/statistics?language-count=all&word-count=all,%1$s&definition-count=all,%1$s&wordattribute-count=all",
+				language(random).id)));
+		endpoints.put("word-post", (random, n) -> {
+			final var language = language(random);
+			return HttpRequest.newBuilder(base.resolve(f("/word/%s/%s", language.id, encode(word(random, language)))))
+					.header("Content-Type", "application/json")
+					.POST(HttpRequest.BodyPublishers.ofString(new JSONObject().put("text", "load " + n).toString()));
+		});
+		endpoints.put("language-post",
+				(random, n) -> HttpRequest.newBuilder(base.resolve("/language/" + language(random).id))
+						.header("Content-Type", "application/json")
+						.POST(HttpRequest.BodyPublishers.ofString(
+								new JSONObject().put("description-en", "Synthetic language, revision " + n).toString())));
+	}
+
+	/**
+	 * Runs the workload.
+	 *
+	 * @param weights  The relative frequencies of the endpoints by name; endpoints
+	 *                 without weight are not requested.
+	 * @param rate     The number of requests per second.
+	 * @param poisson  Whether the requests arrive at exponentially distributed
+	 *                 intervals, like independent clients, instead of evenly
+	 *                 spaced.
+	 * @param warmup   The time before the measurement, whose requests are sent but
+	 *                 not recorded.
+	 * @param duration The time of the measurement.
+	 * @param seed     The seed of the random generator.
+	 * @return The recorders of the endpoints with non-zero weight.
+	 */
+	List<LatencyRecorder> run(final Map<String, Integer> weights, final double rate, final boolean poisson,
+			final Duration warmup, final Duration duration, final long seed) throws InterruptedException {
+		final var names = new ArrayList<String>();
+		final var cumulativeWeights = new ArrayList<Integer>();
+		final var recorders = new ArrayList<LatencyRecorder>();
+		var totalWeight = 0;
+		for (final var weight : weights.entrySet()) {
+			if (!endpoints.containsKey(weight.getKey()))
+				throw new IllegalArgumentException(
+						f("Unknown endpoint %s, known are %s", weight.getKey(), endpoints.keySet()));
+			if (weight.getValue() <= 0)
+				continue;
+			totalWeight += weight.getValue();
+			names.add(weight.getKey());
+			cumulativeWeights.add(totalWeight);
+			recorders.add(new LatencyRecorder(weight.getKey()));
+		}
+		if (totalWeight == 0)
+			throw new IllegalArgumentException("The workload contains no endpoint");
+
+		final var random = new SplittableRandom(seed);
+		final var interval = 1e9 / rate;
+		final var start = System.nanoTime();
+		final var measurementStart = start + warmup.toNanos();
+		final var end = measurementStart + duration.toNanos();
+		log.info(f("Sending %.0f requests per second for %d s warmup and %d s measurement", rate,
+				warmup.toSeconds(), duration.toSeconds()));
+		// schedule in doubles, so that high rates are not rounded to whole nanoseconds
+		double scheduled = start;
+		while (scheduled < end) {
+			final var scheduledTime = (long) scheduled;
+			final var delay = scheduledTime - System.nanoTime();
+			if (delay > 0)
+				TimeUnit.NANOSECONDS.sleep(delay);
+
+			final var choice = random.nextInt(totalWeight);
+			var endpoint = 0;
+			while (cumulativeWeights.get(endpoint) <= choice)
+				++endpoint;
+			final var recorder = scheduledTime >= measurementStart ? recorders.get(endpoint) : null;
+			send(endpoints.get(names.get(endpoint)).apply(random, sequence.incrementAndGet()), scheduledTime,
+					recorder);
+
+			scheduled += poisson ? -Math.log(1 - random.nextDouble()) * interval : interval;
+		}
+
+		// wait for the outstanding requests, which time out eventually
+		if (outstanding.tryAcquire(maxOutstanding, timeout.toMillis() + 1000, TimeUnit.MILLISECONDS))
+			outstanding.release(maxOutstanding);
+		return recorders;
+	}
+
+	/**
+	 * Returns the number of requests that were skipped because the load generator
+	 * was saturated.
+	 */
+	long skipped() {
+		return skipped.sum();
+	}
+
+	private void send(final HttpRequest.Builder request, final long scheduledTime, final LatencyRecorder recorder) {
+		if (!outstanding.tryAcquire()) {
+			skipped.increment();
+			return;
+		}
+		if (recorder != null)
+			recorder.sent();
+		client.sendAsync(request.timeout(timeout).build(), HttpResponse.BodyHandlers.discarding())
+				.whenComplete((response, exception) -> {
+					outstanding.release();
+					if (recorder == null)
+						return;
+					if (exception != null)
+						recorder.failure();
+					else
+						recorder.response(response.statusCode(), System.nanoTime() - scheduledTime);
+				});
+	}
+
+	private HttpRequest.Builder get(final String pathAndQuery) {
+		return HttpRequest.newBuilder(base.resolve(pathAndQuery)).GET();
+	}
+
+	private Language language(final SplittableRandom random) {
+		return languages.get(random.nextInt(languages.size()));
+	}
+
+	private Language otherLanguage(final SplittableRandom random, final Language language) {
+		final var index = languages.indexOf(language);
+		return languages.get((index + 1 + random.nextInt(languages.size() - 1)) % languages.size());
+	}
+
+	private static String word(final SplittableRandom random, final Language language) {
+		return language.words.get(random.nextInt(language.words.size()));
+	}
+
+	private static String encode(final String pathSegment) {
+		return URLEncoder.encode(pathSegment, StandardCharsets.UTF_8).replace("+", "%20");
+	}
+}
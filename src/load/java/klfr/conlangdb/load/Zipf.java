@@ -0,0 +1,35 @@
+package klfr.conlangdb.load;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Zipf distribution over the integers from min to max: the probability of k is
+ * proportional to 1 / (k - min + 1)^skew, so that min is the most frequent
+ * value. A skew of 0 gives the uniform distribution, larger skews concentrate
+ * the values at min.
+ */
+final class Zipf {
+
+	private final int min;
+	/** Cumulative probabilities of the values, the last one being 1. */
+	private final double[] cumulative;
+
+	Zipf(final int min, final int max, final double skew) {
+		if (max < min)
+			throw new IllegalArgumentException("The maximum of a Zipf distribution must not be below its minimum");
+		this.min = min;
+		this.cumulative = new double[max - min + 1];
+		var sum = 0.0;
+		for (int rank = 1; rank <= cumulative.length; ++rank)
+			cumulative[rank - 1] = sum += Math.pow(rank, -skew);
+		for (int i = 0; i < cumulative.length; ++i)
+			cumulative[i] /= sum;
+	}
+
+	int sample(final SplittableRandom random) {
+		final var index = Arrays.binarySearch(cumulative, random.nextDouble());
+		// value k has the probabilities from cumulative[k - min - 1] inclusive to cumulative[k - min] exclusive
+		return min + Math.min(cumulative.length - 1, index >= 0 ? index + 1 : -index - 1);
+	}
+}
@@ -2,10 +2,20 @@ package klfr.conlangdb;
 
 import java.io.*;
 import java.nio.charset.Charset;
+import java.net.URISyntaxException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -23,6 +33,12 @@ public final class CResources extends CObject {
 	public static final String RESOURCE_PATH = "res";
 	private static final Module MODULE_LOADER = CResources.class.getModule();
 
+	/**
+	 * Contents of the preloaded resources by resource name, see
+	 * {@link #preload(String...)}.
+	 */
+	private static final Map<String, byte[]> preloaded = new ConcurrentHashMap<>();
+
 	/**
 	 * Opens a resource to a file as a binary stream.
 	 * 
@@ -39,6 +55,9 @@ public final class CResources extends CObject {
 	 */
 	public static Optional<InputStream> openBinary(String rname) {
 		log.fine(f("RESOURCE %s open binary", rname));
+		final var data = preloaded.get(rname);
+		if (data != null)
+			return Just(new ByteArrayInputStream(data));
 		try {
 			return Optional.ofNullable(MODULE_LOADER.getResourceAsStream(RESOURCE_PATH + "/" + rname));
 		} catch (IOException | NullPointerException e) {
@@ -62,6 +81,9 @@ public final class CResources extends CObject {
 	 */
 	public static Optional<Reader> open(String rname) {
 		log.fine(f("RESOURCE %s open", rname));
+		final var data = preloaded.get(rname);
+		if (data != null)
+			return Just(new InputStreamReader(new ByteArrayInputStream(data), Charset.forName("utf-8")));
 		try {
 			return Optional.ofNullable(new InputStreamReader(
 					MODULE_LOADER.getResourceAsStream(RESOURCE_PATH + "/" + rname), Charset.forName("utf-8")));
@@ -128,6 +150,63 @@ public final class CResources extends CObject {
 		}
 	}
 
+	/**
+	 * Lists all resource files in the resource folder and its subfolders. This
+	 * works both for resources in a plain folder and in a JAR.
+	 * 
+	 * @param directory The name of the folder relative to the resource root folder.
+	 * @return The names of all files in the folder, relative to the resource root
+	 *         folder and separated with "/" as accepted by the open methods. Empty
+	 *         if the folder does not exist or cannot be read.
+	 */
+	public static List<String> list(final String directory) {
+		try {
+			final var location = Path.of(CResources.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+			if (Files.isDirectory(location))
+				return list(location.resolve(RESOURCE_PATH), directory);
+			try (final var jar = FileSystems.newFileSystem(location, (ClassLoader) null)) {
+				return list(jar.getPath("/" + RESOURCE_PATH), directory);
+			}
+		} catch (IOException | URISyntaxException | SecurityException | NullPointerException e) {
+			log.log(Level.WARNING, f("Resource folder %s cannot be listed", directory), e);
+			return List.of();
+		}
+	}
+
+	private static List<String> list(final Path root, final String directory) throws IOException {
+		final var folder = root.resolve(directory);
+		if (!Files.isDirectory(folder))
+			return List.of();
+		try (final var files = Files.walk(folder)) {
+			return files.filter(Files::isRegularFile).map(file -> root.relativize(file).toString().replace(
+					root.getFileSystem().getSeparator(), "/")).collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * Reads all resources in the given folders in parallel and keeps them in
+	 * memory, so that the open methods do not access the file system or JAR
+	 * anymore. Changes to these resources are not noticed afterwards.
+	 * 
+	 * @param directories The names of the folders relative to the resource root
+	 *                    folder.
+	 * @return The number of preloaded resources.
+	 */
+	public static int preload(final String... directories) {
+		return (int) Arrays.stream(directories).map(CResources::list).flatMap(List::stream).parallel()
+				.filter(rname -> {
+					try (final var in = MODULE_LOADER.getResourceAsStream(RESOURCE_PATH + "/" + rname)) {
+						if (in == null)
+							return false;
+						preloaded.put(rname, in.readAllBytes());
+						return true;
+					} catch (IOException e) {
+						log.log(Level.WARNING, f("Resource %s cannot be preloaded", rname), e);
+						return false;
+					}
+				}).count();
+	}
+
 	@Override
 	public CObject clone() {
 		return new CResources();
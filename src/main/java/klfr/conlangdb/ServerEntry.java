@@ -10,8 +10,7 @@ import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.MissingResourceException;
-import java.util.Optional;
-import java.util.logging.ConsoleHandler;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Formatter;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
@@ -22,6 +21,13 @@ import java.util.stream.Collectors;
 
 import klfr.conlangdb.ServerMain.Arguments;
 import klfr.conlangdb.database.DatabaseCommunicator;
+import klfr.conlangdb.http.ChangeFeed;
+import klfr.conlangdb.http.DataVersions;
+import klfr.conlangdb.http.LanguageRegistry;
+import klfr.conlangdb.http.ResponseCache;
+import klfr.conlangdb.http.util.RqBody;
+import klfr.conlangdb.http.util.TkFilesAdvanced;
+import klfr.conlangdb.util.AsyncLogHandler;
 
 /**
  * Entry method of the server. Responsible for parsing command line arguments
@@ -40,8 +46,8 @@ public class ServerEntry extends CObject {
 			exc.printStackTrace();
 			System.err.flush();
 		});
-		// create a handler with custom compact one-line formatting
-		var ch = new ConsoleHandler();
+		// create an asynchronous handler with custom compact one-line formatting
+		var ch = new AsyncLogHandler(System.err);
 		ch.setLevel(Level.ALL);
 		ch.setFormatter(new Formatter() {
 			private final DateTimeFormatter dateTimeFmt = new DateTimeFormatterBuilder()
@@ -63,7 +69,7 @@ public class ServerEntry extends CObject {
 						Math.min(record.getLevel().getLocalizedName().length(), 5));
 				// the replacement makes the application's logs significantly smaller
 				final var logName = record.getLoggerName().replace("klfr.conlangdb.", "~");
-				final var threadname = threadFromID(record.getThreadID()).orElse(Thread.currentThread()).getName().replace("BkParallel", "HTTPBk");
+				final var threadname = AsyncLogHandler.threadName().replace("BkParallel", "HTTPBk");
 
 				return "[%s %-10s:%-40s|%5s] %s%n".formatted(time, threadname, logName, level, msg)
 						+ (record.getThrown() == null ? ""
@@ -74,14 +80,6 @@ public class ServerEntry extends CObject {
 																.append(System.lineSeparator()),
 														(b1, b2) -> b1.append(b2))));
 			}
-
-			/**
-			 * Helper that retrieves a reference to the thread object given the thread's ID,
-			 * or Nothing if it doesn't exist.
-			 */
-			private Optional<Thread> threadFromID(final int threadID) {
-				return Thread.getAllStackTraces().keySet().stream().filter(t -> t.getId() == threadID).findAny();
-			}
 		});
 		LogManager.getLogManager().reset();
 		Logger.getLogger("").setLevel(Level.FINER);
@@ -99,14 +97,55 @@ public class ServerEntry extends CObject {
 			System.exit(1);
 		}
 
+		startServer(argo);
+	}
+
+	/**
+	 * Connects to the database, sets up the server-wide caches and runs the HTTP
+	 * server. This method does not return. Besides {@link #main(String[])}, it is
+	 * used by the load test, which runs the server in its own process.
+	 * 
+	 * @param argo The parsed arguments, which must not contain an error.
+	 */
+	public static void startServer(Arguments argo) {
+		// on fast start, read the resources while the database connection is set up
+		final CompletableFuture<Void> preloading = argo.fastStart
+				? CompletableFuture.runAsync(ServerEntry::preloadResources)
+				: CompletableFuture.completedFuture(null);
 		// start SQL connection thread
 		DatabaseCommunicator.setupDatabaseConnection(argo);
+		ResponseCache.setup(argo);
+		RqBody.setup(argo);
+		LanguageRegistry.setup();
+		DatabaseCommunicator.addModificationListener(DataVersions::modifiedExternally);
+		DatabaseCommunicator.addModificationListener(ChangeFeed::publish);
 
+		preloading.join();
+		if (argo.trainingRun)
+			TrainingRun.start(argo);
 		// enter HTTP server code
 		new ServerMain(argo).start();
 	}
 
-	private static Arguments parseArgs(String[] args) {
+	/**
+	 * Reads the page templates, translations and database setup code as well as
+	 * the static files into memory, in parallel.
+	 */
+	private static void preloadResources() {
+		final var start = System.nanoTime();
+		final var templates = CResources.preload("html", "translation", "sql", "server-functions");
+		final var files = TkFilesAdvanced.preload("static");
+		log.info(f("Preloaded %d templates and %d static files in %d ms", templates, files,
+				(System.nanoTime() - start) / 1000000));
+	}
+
+	/**
+	 * Parses the server's command line options. Parsing stops at the first
+	 * argument that is not an option, unknown options are ignored.
+	 * 
+	 * @return The arguments, whose error message is set if an option was invalid.
+	 */
+	public static Arguments parseArgs(String[] args) {
 		var argo = new Arguments();
 		int i = 0;
 		try {
@@ -116,7 +155,7 @@ public class ServerEntry extends CObject {
 				if (m.matches()) {
 					var prefix = m.group(1);
 					List<String> opt = new LinkedList<String>();
-					if (prefix.length() == 2) {
+					if (prefix.length() == 1) {
 						opt = m.group(2).chars().mapToObj(c -> String.valueOf((char) c)).collect(Collectors.toList());
 					} else {
 						opt.add(m.group(2));
@@ -127,6 +166,57 @@ public class ServerEntry extends CObject {
 							case "port":
 								argo.port = Integer.parseInt(args[++i]);
 								break;
+							case "write-batch-window":
+								argo.writeBatchWindow = Integer.parseInt(args[++i]);
+								break;
+							case "write-batch-size":
+								argo.writeBatchSize = Integer.parseInt(args[++i]);
+								break;
+							case "command-timeout":
+								argo.commandTimeout = Integer.parseInt(args[++i]);
+								break;
+							case "queue-depth":
+								argo.queueDepth = Integer.parseInt(args[++i]);
+								break;
+							case "queue-budget":
+								argo.queueTimeBudget = Integer.parseInt(args[++i]);
+								break;
+							case "cache-size":
+								argo.responseCacheSize = Integer.parseInt(args[++i]);
+								break;
+							case "max-body-size":
+								argo.maxBodySize = Integer.parseInt(args[++i]);
+								break;
+							case "font-dir":
+								argo.fontDirectory = args[++i];
+								break;
+							case "fast-start":
+								argo.fastStart = true;
+								break;
+							case "training-run":
+								argo.trainingRun = true;
+								break;
+							case "access-log":
+								argo.accessLog = args[++i];
+								break;
+							case "event-streams":
+								argo.eventStreams = Integer.parseInt(args[++i]);
+								break;
+							case "db-host":
+								argo.databaseHost = args[++i];
+								break;
+							case "db-port":
+								argo.databasePort = Integer.parseInt(args[++i]);
+								break;
+							case "read-connections":
+								argo.readConnections = Integer.parseInt(args[++i]);
+								break;
+							case "read-host":
+								argo.readDatabaseHost = args[++i];
+								break;
+							case "read-port":
+								argo.readDatabasePort = Integer.parseInt(args[++i]);
+								break;
 							default:
 								// skip
 								break;
@@ -1,6 +1,8 @@
 package klfr.conlangdb;
 
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Optional;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
@@ -10,30 +12,35 @@ import org.takes.facets.fallback.FbChain;
 import org.takes.facets.fallback.RqFallback;
 import org.takes.facets.fallback.TkFallback;
 import org.takes.facets.fork.FkMethods;
-import org.takes.facets.fork.FkRegex;
 import org.takes.facets.fork.FkTypes;
 import org.takes.facets.fork.TkFork;
-import org.takes.http.BkBasic;
 import org.takes.http.BkParallel;
 import org.takes.http.Exit;
 import org.takes.http.FtBasic;
 import org.takes.rs.RsHtml;
 
 import klfr.conlangdb.http.TkDictionaryPage;
+import klfr.conlangdb.http.TkEvents;
 import klfr.conlangdb.http.TkFontProvider;
 import klfr.conlangdb.http.TkLanguageAPI;
 import klfr.conlangdb.http.TkLanguageListPage;
 import klfr.conlangdb.http.TkLanguagePage;
 import klfr.conlangdb.http.TkListAPI;
 import klfr.conlangdb.http.TkMainPage;
+import klfr.conlangdb.http.TkMetrics;
 import klfr.conlangdb.http.TkSingleWordAPI;
 import klfr.conlangdb.http.TkSingleWordPage;
 import klfr.conlangdb.http.TkStaticPageWrap;
 import klfr.conlangdb.http.TkStatistics;
 import klfr.conlangdb.http.TkTranslations;
+import klfr.conlangdb.http.util.AccessLog;
+import klfr.conlangdb.http.util.BkFlushing;
 import klfr.conlangdb.http.util.FbFail;
+import klfr.conlangdb.http.util.FkMetered;
 import klfr.conlangdb.http.util.HttpStatusCode;
+import klfr.conlangdb.http.util.TkCompressed;
 import klfr.conlangdb.http.util.TkFilesAdvanced;
+import klfr.conlangdb.http.util.TkFontFiles;
 import klfr.conlangdb.http.util.TkLog;
 
 /**
@@ -52,23 +59,125 @@ public class ServerMain extends CObject {
 
 		/** Port on which the server will listen. */
 		public int port = 8001;
+		/** Host of the primary PostgreSQL server */
+		public String databaseHost = "localhost";
+		/** Port of the primary PostgreSQL server */
+		public int databasePort = 5431;
 		public String databaseName = "conlangdb";
 		/** PostgreSQL database user */
 		public String databaseUser = "conlang";
 		/** PostgreSQL database user password */
 		public String databasePassword = "planlingvo";
 
+		/**
+		 * Time in milliseconds for which batchable write commands are collected into a
+		 * single database transaction. 0 disables write batching.
+		 */
+		public int writeBatchWindow = 0;
+		/** Maximum number of write commands in a single write batch. */
+		public int writeBatchSize = 32;
+		/**
+		 * Time in seconds after which the result of a database command is not needed
+		 * anymore and the command is dropped or cancelled. 0 disables command
+		 * deadlines.
+		 */
+		public int commandTimeout = 30;
+		/**
+		 * Maximum number of commands waiting in each database command queue, further
+		 * commands are rejected. 0 allows unlimited commands.
+		 */
+		public int queueDepth = 256;
+		/**
+		 * Time in milliseconds that the next command in a database command queue may
+		 * have waited until further commands are rejected. 0 disables the limit.
+		 */
+		public int queueTimeBudget = 5000;
+		/**
+		 * Size of the API response cache in MiB. 0 disables the response cache.
+		 */
+		public int responseCacheSize = 16;
+		/**
+		 * Maximum size of request bodies in KiB. Larger requests are answered with 413
+		 * Payload Too Large. Their body is read and discarded if it is at most 16 MiB,
+		 * otherwise the connection is closed.
+		 */
+		public int maxBodySize = 1024;
+		/**
+		 * Directory that the conscript font files served under /font are read from.
+		 */
+		public String fontDirectory = "out/res/font";
+		/**
+		 * Whether to start quickly: The database schema and server functions are only
+		 * applied if their code changed since they were last applied, and the static
+		 * resources and page templates are preloaded in parallel while the database
+		 * connection is set up. Changes to the templates are not noticed while the
+		 * server runs.
+		 */
+		public boolean fastStart = false;
+		/**
+		 * Whether to exit after sending a few requests to the own server, which is
+		 * used to record the loaded classes for a class data sharing archive.
+		 */
+		public boolean trainingRun = false;
+		/**
+		 * Maximum number of concurrent Server-Sent Events streams, each of which
+		 * occupies an HTTP server thread.
+		 */
+		public int eventStreams = 4;
+		/**
+		 * File that the access log is appended to, "-" for the standard output. If
+		 * null, requests are logged to the Java logging system.
+		 */
+		public String accessLog = null;
+
+		/**
+		 * Number of read-only connections that execute read-only commands. 0 means
+		 * that all commands are executed on the primary connection.
+		 */
+		public int readConnections = 0;
+		/**
+		 * Host of the PostgreSQL server used by the read-only connections, such as a
+		 * streaming replica. If null, the primary host is used.
+		 */
+		public String readDatabaseHost = null;
+		/**
+		 * Port of the PostgreSQL server used by the read-only connections. If 0, the
+		 * primary port is used.
+		 */
+		public int readDatabasePort = 0;
+
 		public String errorMessage = null;
 
 		public String toString() {
-			return f("Arguments(port=%d,error='%s',db=%s@%s,passwd='%s')", port, errorMessage, databaseUser,
-					databaseName, databasePassword);
+			return f("Arguments(port=%d,error='%s',db=%s@%s:%d/%s,passwd='%s',writebatch=%dms/%d,timeout=%ds,"
+					+ "queue=%d/%dms,cache=%dMiB,maxbody=%dKiB,fonts=%s,fast=%s,training=%s,events=%d,accesslog=%s,"
+					+ "read=%dx%s:%d)", port, errorMessage, databaseUser, databaseHost, databasePort, databaseName,
+					databasePassword, writeBatchWindow, writeBatchSize, commandTimeout, queueDepth, queueTimeBudget,
+					responseCacheSize, maxBodySize, fontDirectory, fastStart, trainingRun, eventStreams, accessLog,
+					readConnections, readDatabaseHost, readDatabasePort);
 		}
 
 		@Override
 		public CObject clone() {
 			Arguments nw = new Arguments();
 			nw.port = this.port;
+			nw.writeBatchWindow = this.writeBatchWindow;
+			nw.writeBatchSize = this.writeBatchSize;
+			nw.commandTimeout = this.commandTimeout;
+			nw.queueDepth = this.queueDepth;
+			nw.queueTimeBudget = this.queueTimeBudget;
+			nw.responseCacheSize = this.responseCacheSize;
+			nw.maxBodySize = this.maxBodySize;
+			nw.fontDirectory = this.fontDirectory;
+			nw.fastStart = this.fastStart;
+			nw.trainingRun = this.trainingRun;
+			nw.eventStreams = this.eventStreams;
+			nw.accessLog = this.accessLog;
+			nw.databaseHost = this.databaseHost;
+			nw.databasePort = this.databasePort;
+			nw.readConnections = this.readConnections;
+			nw.readDatabaseHost = this.readDatabaseHost;
+			nw.readDatabasePort = this.readDatabasePort;
 			nw.errorMessage = this.errorMessage;
 			return nw;
 		}
@@ -88,30 +197,37 @@ public class ServerMain extends CObject {
 			log.info("Server Main method entered. Unicode test: ÄÖÜßЛこれ");
 			log.config(() -> arguments.toString());
 
+			final Optional<AccessLog> accessLog = arguments.accessLog == null ? Nothing()
+					: Just(new AccessLog(arguments.accessLog));
+			if (accessLog.isPresent())
+				accessLog.get().start();
+
 			//// Setup the Takes server architecture
-			// Basic frontent using parallel threads, logging and error handling
-			new FtBasic(new BkParallel(new BkBasic(new TkLog(new TkFallback(new TkFork(
+			// Basic frontent using parallel threads that flush event streams, logging, compression and error handling
+			new FtBasic(new BkParallel(new BkFlushing(new TkLog(new TkCompressed(new TkFallback(new TkFork(
 					//// STATIC
 					// Static JavaScript
-					new FkRegex("/js/.+", new TkFilesAdvanced("static")),
+					new FkMetered("/js/.+", new TkFilesAdvanced("static")),
 					// Static CSS
-					new FkRegex("/css/.+", new TkFilesAdvanced("static")),
+					new FkMetered("/css/.+", new TkFilesAdvanced("static")),
 					// Static images
-					new FkRegex("/img/.+", new TkFilesAdvanced("static")),
+					new FkMetered("/img/.+", new TkFilesAdvanced("static")),
 					// Favicon
-					new FkRegex(Pattern.quote("/favicon.ico"), new TkFilesAdvanced("static/img")),
+					new FkMetered(Pattern.quote("/favicon.ico"), new TkFilesAdvanced("static/img")),
+					// User-provided conscript fonts
+					new FkMetered(TkFontFiles.requestPath.pattern(), new TkFontFiles(Path.of(arguments.fontDirectory))),
 					//// PAGES / PAGE-API COMBINATION
 					// Main page
-					new FkRegex("/", new TkStaticPageWrap(new TkMainPage(), "mainpage")),
+					new FkMetered("/", new TkStaticPageWrap(new TkMainPage(), "mainpage")),
 					// Language list page/api
-					new FkRegex(Pattern.quote("/language/list"), new TkFork(
+					new FkMetered(Pattern.quote("/language/list"), new TkFork(
 							new FkTypes("text/html",
 									new TkStaticPageWrap(new TkLanguageListPage(), new TkLanguageListPage.Header(),
 											"languages")),
 							new FkTypes("application/json",
 									new TkListAPI(TkListAPI.languageQueryBuilder, List.of("id", "name"), "id")))),
 					// Single language page/api
-					new FkRegex(TkLanguageAPI.languageAPIPattern,
+					new FkMetered(TkLanguageAPI.languageAPIPattern,
 							new TkFork(
 									new FkMethods("GET",
 											new TkFork(
@@ -122,7 +238,7 @@ public class ServerMain extends CObject {
 									new FkMethods("POST", new TkLanguageAPI.Post()),
 									new FkMethods("DELETE", new TkLanguageAPI.Delete()))),
 					// Word list page/api (WIP)
-					new FkRegex(Pattern.quote("/word/list"),
+					new FkMetered(Pattern.quote("/word/list"),
 							new TkFork(
 									new FkTypes("text/html",
 											new TkStaticPageWrap(new TkDictionaryPage(), new TkDictionaryPage.Headers(),
@@ -131,7 +247,7 @@ public class ServerMain extends CObject {
 											new TkListAPI(TkListAPI.wordQueryBuilder, List.of("text", "translations"),
 													"romanized")))),
 					// single word page/api (WIP)
-					new FkRegex(TkSingleWordAPI.singleWordAPIPtn,
+					new FkMetered(TkSingleWordAPI.singleWordAPIPtn,
 							new TkFork(
 									new FkMethods("GET",
 											new TkFork(
@@ -143,10 +259,14 @@ public class ServerMain extends CObject {
 									new FkMethods("DELETE", new TkSingleWordAPI.Delete()))),
 					//// API
 					// Translation JSON maps
-					new FkRegex("\\/translation\\/([a-z]{2,3})(?:\\_([A-Z]{2,3}))?", new TkTranslations()),
-					new FkRegex(TkFontProvider.requestPath, new TkFontProvider()),
+					new FkMetered("\\/translation\\/([a-z]{2,3})(?:\\_([A-Z]{2,3}))?", new TkTranslations()),
+					new FkMetered(TkFontProvider.requestPath, new TkFontProvider()),
 					// Statistics
-					new FkRegex(Pattern.quote("/statistics"), new TkStatistics())),
+					new FkMetered(Pattern.quote("/statistics"), new TkStatistics()),
+					// Modification events
+					new FkMetered(Pattern.quote("/events"), new TkEvents(arguments.eventStreams)),
+					// Operational metrics
+					new FkMetered(Pattern.quote("/metrics"), new TkMetrics())),
 					//// Fallback for handling server errors and error codes
 					new FbChain(new FbFail(HttpStatusCode.NOT_FOUND), new FbFail(HttpStatusCode.METHOD_UNALLOWED),
 							new FbFail(HttpStatusCode.BAD_REQUEST), new FbFail(HttpStatusCode.INTERNAL_SERVER_ERROR),
@@ -156,7 +276,7 @@ public class ServerMain extends CObject {
 									return new org.takes.misc.Opt.Single<Response>(
 											new RsHtml("oops, something went terribly wrong!"));
 								}
-							})))),
+							}))), accessLog)),
 					10),
 					// Start server on given port and run it forever
 					arguments.port).start(Exit.NEVER);
@@ -0,0 +1,108 @@
+package klfr.conlangdb;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import klfr.conlangdb.ServerMain.Arguments;
+
+/**
+ * Training run of the server for the class data sharing (AppCDS) archive. Once
+ * the server accepts connections, one request of each kind is sent to it, so
+ * that the classes needed for answering requests are loaded, and the server
+ * exits. The JVM then records all loaded classes in the archive given with
+ * {@code -XX:ArchiveClassesAtExit}, and later runs with
+ * {@code -XX:SharedArchiveFile} map them instead of loading and verifying them
+ * again. See the Gradle task {@code cdsArchive}.<br>
+ * <br>
+ * The training run only sends reading requests, so that it can be run against
+ * any database. Requests that fail because there is no database or no data
+ * still load most of the classes involved.
+ */
+public final class TrainingRun extends CObject implements Runnable {
+	private static final long serialVersionUID = 1L;
+	private static final Logger log = Logger.getLogger(TrainingRun.class.getCanonicalName());
+
+	/** Time in milliseconds that the server may take to accept connections. */
+	private static final int START_TIMEOUT = 30000;
+
+	/** Request paths with their request headers. */
+	private static final List<Map.Entry<String, Map<String, String>>> requests = List.of(
+			Map.entry("/", Map.of("Accept", "text/html", "Accept-Encoding", "gzip")),
+			Map.entry("/language/list", Map.of("Accept", "text/html")),
+			Map.entry("/language/list?limit=10", Map.of("Accept", "application/json")),
+			Map.entry("/language/qaa", Map.of("Accept", "text/html")),
+			Map.entry("/language/qaa", Map.of("Accept", "application/json")),
+			Map.entry("/word/list", Map.of("Accept", "text/html")),
+			Map.entry("/word/list?limit=10", Map.of("Accept", "application/json", "Accept-Encoding", "deflate")),
+			Map.entry("/word/qaa/a", Map.of("Accept", "text/html")),
+			Map.entry("/word/qaa/a", Map.of("Accept", "application/json")),
+			Map.entry("/translation/en", Map.of()), Map.entry("/conscript/qaa", Map.of()),
+			Map.entry("/statistics", Map.of()), Map.entry("/metrics", Map.of()),
+			Map.entry("/css/main.css", Map.of("Accept-Encoding", "gzip")),
+			Map.entry("/js/main.js", Map.of("Range", "bytes=0-99,1000-1099")),
+			Map.entry("/favicon.ico", Map.of("If-None-Match", "*")), Map.entry("/font/none.woff2", Map.of()));
+
+	private final int port;
+
+	private TrainingRun(final int port) {
+		this.port = port;
+	}
+
+	/**
+	 * Starts the training run in the background. It waits for the server to start
+	 * and exits the JVM when it is done.
+	 */
+	public static void start(final Arguments args) {
+		final var thread = new Thread(new TrainingRun(args.port), "Training");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public void run() {
+		final var start = System.currentTimeMillis();
+		var index = 0;
+		while (index < requests.size()) {
+			final var request = requests.get(index);
+			try {
+				final var connection = (HttpURLConnection) new URL("http", "localhost", port, request.getKey())
+						.openConnection();
+				request.getValue().forEach(connection::setRequestProperty);
+				final var status = connection.getResponseCode();
+				try (final var body = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+					if (body != null)
+						body.readAllBytes();
+				}
+				log.fine(f("Training request %s: %d", request.getKey(), status));
+				++index;
+			} catch (ConnectException e) {
+				// the server is not up yet
+				if (System.currentTimeMillis() - start > START_TIMEOUT) {
+					log.severe("Server did not start, training run aborted");
+					System.exit(1);
+				}
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException e1) {
+					return;
+				}
+			} catch (IOException e) {
+				log.log(Level.WARNING, f("Training request %s failed", request.getKey()), e);
+				++index;
+			}
+		}
+		log.info(f("Training run finished after %d ms", System.currentTimeMillis() - start));
+		System.exit(0);
+	}
+
+	@Override
+	public CObject clone() {
+		return new TrainingRun(port);
+	}
+}
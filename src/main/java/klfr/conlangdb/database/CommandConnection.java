@@ -0,0 +1,52 @@
+package klfr.conlangdb.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Connection proxy that is handed to a database command while it executes. It
+ * behaves exactly like the real connection, but registers every statement that
+ * the command creates with the command, so that the statements receive the
+ * command's deadline as their query timeout and can be cancelled together with
+ * the command.
+ */
+final class CommandConnection implements InvocationHandler {
+
+	private final Connection connection;
+	private final DatabaseCommand<?> command;
+
+	private CommandConnection(final Connection connection, final DatabaseCommand<?> command) {
+		this.connection = connection;
+		this.command = command;
+	}
+
+	/**
+	 * Wraps the connection for the execution of the given command.
+	 * 
+	 * @param connection The real database connection.
+	 * @param command    The command that will operate on the connection.
+	 * @return A connection that delegates to the real connection.
+	 */
+	public static Connection wrap(final Connection connection, final DatabaseCommand<?> command) {
+		return (Connection) Proxy.newProxyInstance(CommandConnection.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, new CommandConnection(connection, command));
+	}
+
+	@Override
+	public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+		final Object result;
+		try {
+			result = method.invoke(connection, args);
+		} catch (final InvocationTargetException e) {
+			throw e.getCause();
+		}
+		// this catches createStatement, prepareStatement and prepareCall
+		if (result instanceof Statement)
+			command.registerStatement((Statement) result);
+		return result;
+	}
+}
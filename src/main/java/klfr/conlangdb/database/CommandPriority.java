@@ -0,0 +1,36 @@
+package klfr.conlangdb.database;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The priority classes of database commands. The database command queue orders
+ * commands by the time they were submitted plus the maximum deferral time of
+ * their priority class. Therefore, short interactive queries overtake long
+ * scans that were submitted shortly before them, but low priority commands are
+ * never starved by a constant stream of high priority commands.
+ */
+public enum CommandPriority {
+	/**
+	 * Short lookups that a user is directly waiting on, such as single language or
+	 * word data, and the database setup at startup.
+	 */
+	Interactive(0),
+	/**
+	 * Standard priority for most commands, such as paginated lists and writes.
+	 */
+	Normal(50),
+	/**
+	 * Long-running commands, such as unpaginated lists and statistics.
+	 */
+	Bulk(1000);
+
+	/**
+	 * Maximum number of nanoseconds that a command of this priority is deferred in
+	 * favor of commands with a higher priority.
+	 */
+	public final long maxDeferral;
+
+	private CommandPriority(long maxDeferralMillis) {
+		this.maxDeferral = TimeUnit.MILLISECONDS.toNanos(maxDeferralMillis);
+	}
+}
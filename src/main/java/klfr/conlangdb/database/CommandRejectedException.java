@@ -0,0 +1,23 @@
+package klfr.conlangdb.database;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Thrown by the Future methods of a database command that was not admitted to
+ * the command queue, because the queue was full or commands in it have waited
+ * longer than the queue time budget. The command was never executed and may be
+ * submitted again later. Callers such as the HTTP API should report the
+ * overload to their clients instead of failing.
+ */
+public class CommandRejectedException extends ExecutionException {
+	private static final long serialVersionUID = 1L;
+
+	/** The time after which submitting the command again is reasonable. */
+	public final Duration retryAfter;
+
+	public CommandRejectedException(final String message, final Duration retryAfter) {
+		super(message);
+		this.retryAfter = retryAfter;
+	}
+}
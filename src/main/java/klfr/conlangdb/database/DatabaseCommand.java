@@ -2,7 +2,12 @@ package klfr.conlangdb.database;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.time.Instant;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -10,6 +15,7 @@ import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -70,6 +76,36 @@ public abstract class DatabaseCommand<T> extends CObject implements Future<Optio
 	 */
 	private volatile Optional<FutureTask<Optional<T>>> lastTask = Nothing();
 
+	/**
+	 * Order in which commands are taken from the command queue: By the time at
+	 * which they should be executed at the latest, which is computed from their
+	 * submission time and priority, and then by submission order.
+	 */
+	static final Comparator<DatabaseCommand<?>> queueOrder = Comparator
+			.<DatabaseCommand<?>>comparingLong(cmd -> cmd.queueDeadline).thenComparingLong(cmd -> cmd.sequence);
+
+	/** System.nanoTime() of the last submission of this command to the queue. */
+	private volatile long submitTime;
+	/**
+	 * System.nanoTime() at which this command should leave the queue at the
+	 * latest, computed from the submission time and the priority.
+	 */
+	private volatile long queueDeadline;
+	/** Sequence number of the last submission of this command to the queue. */
+	private volatile long sequence;
+
+	/** Value of the deadline if the command has none. */
+	public static final long NO_DEADLINE = Long.MAX_VALUE;
+	/**
+	 * System.nanoTime() after which nobody is interested in the result of this
+	 * command anymore, or NO_DEADLINE.
+	 */
+	private volatile long deadline = NO_DEADLINE;
+	/** Whether the command was cancelled by a caller. */
+	private volatile boolean cancelled = false;
+	/** Statements that the command created during its current execution. */
+	private final transient List<Statement> openStatements = Collections.synchronizedList(new ArrayList<>());
+
 	/**
 	 * Creates the database command and sets the function that the command executes.
 	 * This constructor is used by subclasses which pass their own, mostly static
@@ -111,6 +147,123 @@ public abstract class DatabaseCommand<T> extends CObject implements Future<Optio
 		};
 	}
 
+	/**
+	 * Create a simple no argument database command that has the given priority.
+	 * Apart from that, this is identical to
+	 * {@link DatabaseCommand#from(DatabaseFunction)}; in particular, the command is
+	 * executed on the primary connection, also if it only reads.
+	 * 
+	 * @param priority  The priority class of the command, see
+	 *                  {@link DatabaseCommand#getPriority()}.
+	 * @param toExecute A function taking a database connection and optionally
+	 *                  returning a value of any type.
+	 * @return A new database command that will simply execute the given function
+	 *         when it is processed.
+	 */
+	public static <U> DatabaseCommand<U> from(final CommandPriority priority, final DatabaseFunction<U> toExecute) {
+		return new NoArgumentCmd<U>(toExecute) {
+			private static final long serialVersionUID = 1L;
+
+			public String getReadableName() {
+				return "SimpleExternalCmd";
+			}
+
+			@Override
+			public CommandPriority getPriority() {
+				return priority;
+			}
+		};
+	}
+
+	/**
+	 * Create a simple no argument database command that only reads from the
+	 * database, as declared by {@link DatabaseCommand#isReadOnly()}. Apart from
+	 * that, this is identical to {@link DatabaseCommand#from(DatabaseFunction)}.
+	 * 
+	 * @param toExecute A function taking a database connection and optionally
+	 *                  returning a value of any type. The function must not modify
+	 *                  the database.
+	 * @return A new read-only database command that will simply execute the given
+	 *         function when it is processed.
+	 */
+	public static <U> DatabaseCommand<U> readOnly(final DatabaseFunction<U> toExecute) {
+		return readOnly(CommandPriority.Normal, toExecute);
+	}
+
+	/**
+	 * Create a simple no argument database command that only reads from the
+	 * database and has the given priority. Apart from that, this is identical to
+	 * {@link DatabaseCommand#from(DatabaseFunction)}.
+	 * 
+	 * @param priority  The priority class of the command, see
+	 *                  {@link DatabaseCommand#getPriority()}.
+	 * @param toExecute A function taking a database connection and optionally
+	 *                  returning a value of any type. The function must not modify
+	 *                  the database.
+	 * @return A new read-only database command that will simply execute the given
+	 *         function when it is processed.
+	 */
+	public static <U> DatabaseCommand<U> readOnly(final CommandPriority priority,
+			final DatabaseFunction<U> toExecute) {
+		return new NoArgumentCmd<U>(toExecute) {
+			private static final long serialVersionUID = 1L;
+
+			public String getReadableName() {
+				return "SimpleExternalReadCmd";
+			}
+
+			@Override
+			public boolean isReadOnly() {
+				return true;
+			}
+
+			@Override
+			public CommandPriority getPriority() {
+				return priority;
+			}
+		};
+	}
+
+	/**
+	 * Create a simple no argument database command that only reads from the
+	 * database, has the given priority and needs current data, as declared by
+	 * {@link DatabaseCommand#needsCurrentData()}. Apart from that, this is
+	 * identical to {@link DatabaseCommand#readOnly(CommandPriority, DatabaseFunction)}.
+	 * 
+	 * @param priority  The priority class of the command, see
+	 *                  {@link DatabaseCommand#getPriority()}.
+	 * @param toExecute A function taking a database connection and optionally
+	 *                  returning a value of any type. The function must not modify
+	 *                  the database.
+	 * @return A new read-only database command that will simply execute the given
+	 *         function when it is processed.
+	 */
+	public static <U> DatabaseCommand<U> currentRead(final CommandPriority priority,
+			final DatabaseFunction<U> toExecute) {
+		return new NoArgumentCmd<U>(toExecute) {
+			private static final long serialVersionUID = 1L;
+
+			public String getReadableName() {
+				return "SimpleExternalCurrentReadCmd";
+			}
+
+			@Override
+			public boolean isReadOnly() {
+				return true;
+			}
+
+			@Override
+			public boolean needsCurrentData() {
+				return true;
+			}
+
+			@Override
+			public CommandPriority getPriority() {
+				return priority;
+			}
+		};
+	}
+
 	/**
 	 * Create a new FutureTask with the specified connection. Also stores the
 	 * returned task so that callers can retrieve its value
@@ -119,50 +272,192 @@ public abstract class DatabaseCommand<T> extends CObject implements Future<Optio
 	 * @return
 	 */
 	public synchronized FutureTask<Optional<T>> getTask(final Connection con) {
-		lastTask = Just(new FutureTask<Optional<T>>(() -> toExecute.apply(con)));
+		publish(getUnpublishedTask(con));
 		return lastTask.get();
 	}
 
+	/**
+	 * Create a new FutureTask with the specified connection, but do not make it
+	 * available to callers of this command's Future methods yet. This is used by
+	 * the executor if the result of the command must not be visible before some
+	 * later point, such as the commit of a write batch. The task must later be
+	 * handed to {@link DatabaseCommand#publish(FutureTask)}.
+	 */
+	FutureTask<Optional<T>> getUnpublishedTask(final Connection con) {
+		return new FutureTask<Optional<T>>(() -> toExecute.apply(con));
+	}
+
+	/**
+	 * Make the given task the last task of this command, so that callers waiting
+	 * on this command recieve the task's result.
+	 */
+	synchronized void publish(final FutureTask<Optional<T>> task) {
+		lastTask = Just(task);
+		notifyAll();
+	}
+
+	/**
+	 * Whether this command may be executed together with other batchable commands
+	 * in a single transaction. The executor then places a savepoint before the
+	 * command and rolls back to it if the command fails, so that failing commands
+	 * do not affect the rest of the batch. Batchable commands therefore must not
+	 * change the auto-commit mode or commit and roll back on their own, contrary to
+	 * what is usually allowed for commands. The default is false.
+	 * 
+	 * @return whether this command may be batched.
+	 */
+	public boolean isBatchable() {
+		return false;
+	}
+
+	/**
+	 * Whether this command only reads from the database. Read-only commands may be
+	 * executed on a separate read-only connection, which possibly points to a
+	 * replica of the database that lags slightly behind the primary database.
+	 * Commands that modify the database in any way must return false. The default
+	 * is false.
+	 * 
+	 * @return whether this command only reads from the database.
+	 */
+	public boolean isReadOnly() {
+		return false;
+	}
+
+	/**
+	 * Whether this read-only command must see all modifications that were
+	 * committed before it was submitted, for example because its result is cached
+	 * or sent with an ETag of the current data version. Such commands are executed
+	 * on the primary connection if the read-only connections use a separate
+	 * server, such as a replica that may lag behind. The default is false.
+	 * 
+	 * @return whether this command needs the current data.
+	 */
+	public boolean needsCurrentData() {
+		return false;
+	}
+
+	/**
+	 * Return the priority class of this command. Commands with a higher priority
+	 * may overtake commands with a lower priority in the command queue, see
+	 * {@link CommandPriority}. The default is {@link CommandPriority#Normal}.
+	 * 
+	 * @return the priority class of this command.
+	 */
+	public CommandPriority getPriority() {
+		return CommandPriority.Normal;
+	}
+
+	/**
+	 * Marks this command as submitted to the command queue just now. This
+	 * determines the command's position in the queue and its deadline.
+	 * 
+	 * @param sequence The sequence number of the submission, which must increase
+	 *                 with every submission.
+	 * @param timeout  Time after which the result of the command is not needed
+	 *                 anymore, or zero if the command has no deadline.
+	 */
+	void markSubmitted(final long sequence, final Duration timeout) {
+		this.sequence = sequence;
+		this.submitTime = System.nanoTime();
+		this.queueDeadline = submitTime + getPriority().maxDeferral;
+		this.deadline = timeout.isZero() ? NO_DEADLINE : submitTime + timeout.toNanos();
+	}
+
+	/**
+	 * Returns the System.nanoTime() at which this command was last submitted to
+	 * the command queue.
+	 */
+	long getSubmitTime() {
+		return submitTime;
+	}
+
 	/**
 	 * Retrieves the result of the computation. The special behavior of this
-	 * implementation is that it will first block up to MAX_CMD_RESULT_WAIT_SECONDS
-	 * while there has not been a task started.
+	 * implementation is that it will first block while there has not been a task
+	 * started, up to CMD_START_WAITTIME_SECONDS or until the deadline of the
+	 * command. If the command has a deadline, waiting for the result ends at the
+	 * deadline and the command is cancelled.
 	 */
 	@Override
 	public Optional<T> get() throws InterruptedException, ExecutionException {
-		// wait until the task becomes available or the maximum wait time passes
-		final Instant endTime = Instant.now().plusSeconds(CMD_START_WAITTIME_SECONDS);
-		while (lastTask.isEmpty() && Instant.now().isBefore(endTime))
-			Thread.onSpinWait();
-
-		// throw a custom exception if necessary
-		return lastTask.orElseThrow(() -> new ExecutionException(
-				new IllegalStateException("No task from this DatabaseCommand yet started."))).get();
+		if (deadline == NO_DEADLINE)
+			try {
+				return awaitTask(TimeUnit.SECONDS.toNanos(CMD_START_WAITTIME_SECONDS)).get();
+			} catch (final ExecutionException e) {
+				throw unwrapRejection(e);
+			}
+		try {
+			return get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+		} catch (final TimeoutException e) {
+			cancel(false);
+			throw new ExecutionException(e);
+		}
 	}
 
+	/**
+	 * Cancels the command. A command that is still queued will not be executed. If
+	 * the command is currently executing, its running statements are cancelled on
+	 * the database server. The database manager thread is never interrupted,
+	 * regardless of the argument.
+	 */
 	@Override
-	public boolean cancel(final boolean interrupt) {
-		if (lastTask.isEmpty())
+	public synchronized boolean cancel(final boolean interrupt) {
+		if (isDone())
 			return false;
-		return lastTask.get().cancel(interrupt);
+		cancelled = true;
+		for (final var statement : openStatements)
+			try {
+				statement.cancel();
+			} catch (final SQLException e) {
+				log.log(Level.WARNING, f("Could not cancel statement of %s", this), e);
+			}
+		lastTask.ifPresent(task -> task.cancel(false));
+		return true;
 	}
 
 	@Override
 	public Optional<T> get(final long timeout, final TimeUnit unit)
 			throws InterruptedException, ExecutionException, TimeoutException {
-		// wait until the task becomes available or the maximum wait time passes
-		final Instant endTime = Instant.now().plusSeconds(CMD_START_WAITTIME_SECONDS);
-		while (lastTask.isEmpty() && Instant.now().isBefore(endTime))
-			Thread.onSpinWait();
+		final long end = System.nanoTime() + unit.toNanos(timeout);
+		final var task = awaitTask(Math.min(end - System.nanoTime(), deadline == NO_DEADLINE
+				? TimeUnit.SECONDS.toNanos(CMD_START_WAITTIME_SECONDS) : deadline - System.nanoTime()));
+		try {
+			return task.get(end - System.nanoTime(), TimeUnit.NANOSECONDS);
+		} catch (final ExecutionException e) {
+			throw unwrapRejection(e);
+		}
+	}
 
-		return lastTask
-				.orElseThrow(() -> new ExecutionException(
-						new IllegalStateException("No task from this DatabaseCommand yet started.")))
-				.get(timeout, unit);
+	/**
+	 * Returns the CommandRejectedException that caused the given exception, so
+	 * that callers can catch rejections directly, or the exception itself.
+	 */
+	private static ExecutionException unwrapRejection(final ExecutionException e) {
+		return e.getCause() instanceof CommandRejectedException ? (CommandRejectedException) e.getCause() : e;
+	}
+
+	/**
+	 * Waits until a task of this command was started or the given time has passed.
+	 * 
+	 * @param timeout Maximum waiting time in nanoseconds.
+	 * @return The last task of this command.
+	 * @throws ExecutionException If no task was started in time.
+	 */
+	private synchronized FutureTask<Optional<T>> awaitTask(final long timeout)
+			throws InterruptedException, ExecutionException {
+		final long end = System.nanoTime() + timeout;
+		while (lastTask.isEmpty() && end - System.nanoTime() > 0)
+			TimeUnit.NANOSECONDS.timedWait(this, end - System.nanoTime());
+		// throw a custom exception if necessary
+		return lastTask.orElseThrow(() -> new ExecutionException(deadline - System.nanoTime() <= 0
+				? new TimeoutException("Deadline of DatabaseCommand expired before it was started.")
+				: new IllegalStateException("No task from this DatabaseCommand yet started.")));
 	}
 
 	@Override
 	public boolean isCancelled() {
+		if (cancelled)
+			return true;
 		if (lastTask.isEmpty())
 			return false;
 		return lastTask.get().isCancelled();
@@ -175,6 +470,67 @@ public abstract class DatabaseCommand<T> extends CObject implements Future<Optio
 		return lastTask.get().isDone();
 	}
 
+	/**
+	 * Whether the command's deadline has passed.
+	 */
+	public boolean isExpired() {
+		return deadline != NO_DEADLINE && deadline - System.nanoTime() <= 0;
+	}
+
+	/**
+	 * Registers a statement that this command created while executing. The
+	 * statement's query timeout is set to the time remaining until the deadline, so
+	 * that the database server stops working on the statement when nobody waits for
+	 * its result anymore. Registered statements are cancelled when the command is
+	 * cancelled.
+	 */
+	synchronized void registerStatement(final Statement statement) throws SQLException {
+		if (deadline != NO_DEADLINE)
+			statement.setQueryTimeout(
+					(int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(deadline - System.nanoTime() + 999_999_999)));
+		if (cancelled)
+			statement.cancel();
+		openStatements.add(statement);
+	}
+
+	/**
+	 * Forgets all statements registered during the execution of this command. Is
+	 * called by the executor after the command finished.
+	 */
+	void clearStatements() {
+		openStatements.clear();
+	}
+
+	/**
+	 * Drops this command without executing it, because it was cancelled or its
+	 * deadline has passed. Callers waiting on the command recieve a
+	 * CancellationException or an ExecutionException caused by a TimeoutException,
+	 * respectively.
+	 */
+	synchronized void drop() {
+		final var dropped = new FutureTask<Optional<T>>(() -> {
+			throw new TimeoutException("Deadline of DatabaseCommand expired before it was started.");
+		});
+		if (cancelled)
+			dropped.cancel(false);
+		else
+			dropped.run();
+		publish(dropped);
+	}
+
+	/**
+	 * Rejects this command without executing it, because it was not admitted to
+	 * the command queue. Callers waiting on the command recieve the given
+	 * exception.
+	 */
+	synchronized void reject(final CommandRejectedException rejection) {
+		final var rejected = new FutureTask<Optional<T>>(() -> {
+			throw rejection;
+		});
+		rejected.run();
+		publish(rejected);
+	}
+
 	/**
 	 * Return the human-readable name of the command. The default is the
 	 * {@code class.getSimpleName()}.
@@ -185,6 +541,21 @@ public abstract class DatabaseCommand<T> extends CObject implements Future<Optio
 		return this.getClass().getSimpleName() + "(" + String.join(", ", this.getArguments().map(x -> x.toString()).collect(Collectors.toList())) + ")";
 	}
 
+	/**
+	 * Returns the name of the command without its arguments, which identifies the
+	 * kind of command in the metrics. The default is the class name or, for
+	 * anonymous classes, the readable name up to its arguments.
+	 * 
+	 * @return the name of the kind of command.
+	 */
+	public String getMetricName() {
+		if (!this.getClass().isAnonymousClass())
+			return this.getClass().getSimpleName();
+		final var name = getReadableName();
+		final var arguments = name.indexOf('(');
+		return arguments < 0 ? name : name.substring(0, arguments);
+	}
+
 	/**
 	 * Returns this command's arguments, or an empty stream if there are none.
 	 */
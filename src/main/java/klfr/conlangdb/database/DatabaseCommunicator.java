@@ -1,23 +1,26 @@
 package klfr.conlangdb.database;
 
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Future;
-import java.util.concurrent.FutureTask;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.logging.Level;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 import klfr.conlangdb.CObject;
 import klfr.conlangdb.ServerMain.Arguments;
 import klfr.conlangdb.database.commands.CreateServerFunctionsCmd;
 import klfr.conlangdb.database.commands.InitDatabaseCmd;
+import klfr.conlangdb.util.Metrics;
 
 /**
  * Static class used to communicate with the database managing thread. This
@@ -27,15 +30,43 @@ public class DatabaseCommunicator extends CObject {
 	private static final long serialVersionUID = 1L;
 	protected static final Logger log = Logger.getLogger(DatabaseCommunicator.class.getCanonicalName());
 
-	/**
-	 * Maximum number of times the communicator will try to submit any command to
-	 * the queue.
-	 */
-	public static final int MAX_COMMAND_RETRIES = 10;
-
 	/** Database manager thread that is used by the communicators */
 	private static DatabaseManagerThread dbmanagerT;
 	private static BlockingQueue<DatabaseCommand<Object>> queue;
+	/**
+	 * Database manager threads with read-only connections, possibly none. They
+	 * share the read queue.
+	 */
+	private static final List<DatabaseManagerThread> readManagers = new ArrayList<>();
+	/** Thread that listens for modification notifications from the database. */
+	private static DatabaseListenerThread listener;
+	/**
+	 * Queue for read-only commands. This is the normal queue if there are no
+	 * read-only connections.
+	 */
+	private static BlockingQueue<DatabaseCommand<Object>> readQueue;
+	/**
+	 * Whether the read-only connections use a separate server, which may lag
+	 * behind the primary server.
+	 */
+	private static boolean separateReadServer = false;
+
+	/** Sequence number for command submissions, which keeps the queue order stable. */
+	private static final AtomicLong submissionSequence = new AtomicLong();
+	/**
+	 * Default time after which the result of a command is not needed anymore.
+	 * Zero means that commands have no deadline.
+	 */
+	private static Duration commandTimeout = Duration.ZERO;
+	/** Maximum number of commands in each queue, or 0 if unlimited. */
+	private static int queueDepth = 0;
+	/**
+	 * Maximum time the next command in a queue may have waited for new commands to
+	 * be admitted to the queue, or zero if unlimited.
+	 */
+	private static Duration queueTimeBudget = Duration.ZERO;
+	/** Time that commands spent in the queues, per priority class. */
+	private static final QueueStatistics queueStatistics = new QueueStatistics();
 
 	@Override
 	public CObject clone() {
@@ -47,70 +78,185 @@ public class DatabaseCommunicator extends CObject {
 	 * itself.
 	 */
 	public static synchronized void setupDatabaseConnection(Arguments args) {
+		commandTimeout = Duration.ofSeconds(args.commandTimeout);
+		queueDepth = args.queueDepth;
+		queueTimeBudget = Duration.ofMillis(args.queueTimeBudget);
+		queue = new PriorityBlockingQueue<DatabaseCommand<Object>>(11, DatabaseCommand.queueOrder);
+		readQueue = args.readConnections > 0
+				? new PriorityBlockingQueue<DatabaseCommand<Object>>(11, DatabaseCommand.queueOrder)
+				: queue;
+		separateReadServer = args.readConnections > 0
+				&& (args.readDatabaseHost != null || args.readDatabasePort > 0);
+
 		Lock signal = new ReentrantLock();
 		Condition cond = signal.newCondition();
-		queue = new LinkedBlockingQueue<DatabaseCommand<Object>>();
 		dbmanagerT = new DatabaseManagerThread(args, signal, cond, queue);
+		startAndAwaitConnection(dbmanagerT, signal, cond);
+		log.info("Database manager up");
+
+		for (int i = 0; i < args.readConnections; ++i) {
+			signal = new ReentrantLock();
+			cond = signal.newCondition();
+			final var readManager = new DatabaseManagerThread(args, true, f("DBReadr%d", i), signal, cond, readQueue);
+			startAndAwaitConnection(readManager, signal, cond);
+			readManagers.add(readManager);
+		}
+		if (args.readConnections > 0)
+			log.info(f("%d read-only database managers up", args.readConnections));
+
+		listener = new DatabaseListenerThread(args);
+		listener.start();
+
+		registerMetrics();
+
+		// initialize the database, which may take long and nobody waits on
+		// on fast start, unchanged code is not applied again
+		submitCommand(new CreateServerFunctionsCmd(args.fastStart), Duration.ZERO);
+		submitCommand(new InitDatabaseCmd(args.fastStart), Duration.ZERO);
+	}
+
+	/**
+	 * Sets up the command queue without any database manager threads or
+	 * connections, so that the caller can execute the submitted commands itself.
+	 * Used by the benchmarks, which run against a fake database.
+	 * 
+	 * @return The queue that all commands are submitted to.
+	 */
+	static synchronized BlockingQueue<DatabaseCommand<Object>> setupWithoutConnection(Arguments args) {
+		commandTimeout = Duration.ofSeconds(args.commandTimeout);
+		queueDepth = args.queueDepth;
+		queueTimeBudget = Duration.ofMillis(args.queueTimeBudget);
+		queue = new PriorityBlockingQueue<DatabaseCommand<Object>>(11, DatabaseCommand.queueOrder);
+		readQueue = queue;
+		return queue;
+	}
+
+	/**
+	 * Registers a listener that is called whenever the data of a language was
+	 * modified in the database, by this server or anyone else. The listener
+	 * recieves the modification, or Nothing if modifications may have been missed
+	 * and all data must be considered modified. Listeners are called on the listener thread and should
+	 * return quickly.
+	 */
+	public static void addModificationListener(final Consumer<Optional<Modification>> modificationListener) {
+		listener.addListener(modificationListener);
+	}
 
+	/**
+	 * Registers the queue lengths and rejections with the {@link Metrics}.
+	 */
+	private static void registerMetrics() {
+		final var primaryQueue = queue;
+		Metrics.callback("db_queue_length", "Number of commands waiting in a database command queue.", "gauge",
+				"queue", "primary", primaryQueue::size);
+		if (readQueue != primaryQueue) {
+			final var secondaryQueue = readQueue;
+			Metrics.callback("db_queue_length", "Number of commands waiting in a database command queue.", "gauge",
+					"queue", "read", secondaryQueue::size);
+		}
+		for (final var priority : CommandPriority.values())
+			Metrics.callback("db_queue_rejections_total", "Number of commands that were rejected because of overload.",
+					"counter", "priority", priority.name().toLowerCase(), () -> queueStatistics.rejections(priority));
+	}
+
+	/**
+	 * Returns the statistics of the time that commands spent waiting in the
+	 * command queues.
+	 */
+	public static QueueStatistics getQueueStatistics() {
+		return queueStatistics;
+	}
+
+	/**
+	 * Starts the database manager thread and waits until it has attempted to
+	 * establish its connection. If the attempt failed, the thread keeps trying to
+	 * connect in the background.
+	 */
+	private static void startAndAwaitConnection(final DatabaseManagerThread thread, final Lock signal,
+			final Condition cond) {
 		signal.lock();
 
-		dbmanagerT.start();
-		log.info("Database thread up");
+		thread.start();
+		log.info(f("Database thread %s up", thread.getName()));
 
-		// wait on the thread to establish the connection
+		// wait on the thread to attempt the connection
 		try {
 			cond.await();
 		} catch (InterruptedException e) {
 		} finally {
 			signal.unlock();
 		}
-		log.info("Database connection up");
-
-		// initialize the database
-		try {
-			queue.put(new CreateServerFunctionsCmd());
-			queue.put(new InitDatabaseCmd());
-		} catch (InterruptedException e) {
-			log.log(Level.SEVERE, "Interrupted while initializing database", e);
-			dbmanagerT.interrupt();
-		}
 	}
 
 	/**
 	 * Submit the command to the database command queue to be executed at some
-	 * point.
+	 * point. Read-only commands are submitted to the read-only connections, if
+	 * there are any, except for commands that need current data while the
+	 * read-only connections use a separate server. The command receives the
+	 * default deadline.
 	 * 
 	 * @param cmd The database command to execute.
 	 * @return The command itself, which implements the Future interface. This is
 	 *         for avoiding typecasting.
 	 */
 	public static synchronized <T extends Object> Future<Optional<T>> submitCommand(DatabaseCommand<T> cmd) {
-		return submitCommand(cmd, 0);
+		return submitCommand(cmd, commandTimeout);
 	}
 
 	/**
-	 * command submitter with retry count that limits how often commands are
-	 * re-submitted
+	 * Submit the command to the database command queue to be executed at some
+	 * point. If the command is not finished within the given time, it is dropped
+	 * or cancelled, and waiting on its result fails.<br>
+	 * <br>
+	 * If the queue is full or overloaded, the command is rejected instead and its
+	 * Future methods throw a {@link CommandRejectedException}.
+	 * 
+	 * @param cmd     The database command to execute.
+	 * @param timeout The time after which the command's result is not needed
+	 *                anymore. Zero means that the command has no deadline.
+	 * @return The command itself, which implements the Future interface. This is
+	 *         for avoiding typecasting.
 	 */
 	@SuppressWarnings("unchecked")
-	private static synchronized <T extends Object> Future<Optional<T>> submitCommand(DatabaseCommand<T> cmd,
-			int retryCount) {
-		try {
-			queue.put((DatabaseCommand<Object>) cmd);
-		} catch (InterruptedException e) {
-			log.log(Level.WARNING,
-					f("Interrupted while submitting command to queue, try %d of %d.", retryCount, MAX_COMMAND_RETRIES),
-					e);
-			if (retryCount > MAX_COMMAND_RETRIES) {
-				log.log(Level.SEVERE, f("Maximum number of resubmission tries (%d) reached. Dropping command %s.",
-						MAX_COMMAND_RETRIES, cmd), e);
-				return new FutureTask<>(() -> Nothing());
-			}
-			submitCommand(cmd, retryCount + 1);
+	public static synchronized <T extends Object> Future<Optional<T>> submitCommand(DatabaseCommand<T> cmd,
+			Duration timeout) {
+		final var target = cmd.isReadOnly() && !(separateReadServer && cmd.needsCurrentData()) ? readQueue : queue;
+		cmd.markSubmitted(submissionSequence.getAndIncrement(), timeout);
+		final var rejection = admit(target);
+		if (rejection.isPresent()) {
+			log.fine(f("Rejecting command %s: %s", cmd, rejection.get().getMessage()));
+			queueStatistics.recordRejection(cmd.getPriority());
+			cmd.reject(rejection.get());
+		} else {
+			// the queue is unbounded, therefore this always succeeds
+			target.offer((DatabaseCommand<Object>) cmd);
 		}
 		return cmd;
 	}
 
+	/**
+	 * Checks whether a new command may be admitted to the given queue.
+	 * 
+	 * @return The exception to reject the command with, or Nothing if the command
+	 *         is admitted.
+	 */
+	private static Optional<CommandRejectedException> admit(final BlockingQueue<DatabaseCommand<Object>> target) {
+		final var retryAfter = queueTimeBudget.isZero() ? Duration.ofSeconds(1) : queueTimeBudget;
+		if (queueDepth > 0 && target.size() >= queueDepth)
+			return Just(new CommandRejectedException(f("Command queue full (%d commands)", target.size()),
+					retryAfter));
+		if (!queueTimeBudget.isZero()) {
+			final var next = target.peek();
+			if (next != null) {
+				final var waited = Duration.ofNanos(System.nanoTime() - next.getSubmitTime());
+				if (waited.compareTo(queueTimeBudget) > 0)
+					return Just(new CommandRejectedException(
+							f("Queue time budget exceeded (waited %d ms)", waited.toMillis()), retryAfter));
+			}
+		}
+		return Nothing();
+	}
+
 	/**
 	 * Typechecker that converts known non-mapped sql types like Arrays to
 	 * compatible Java types. For Arrays, in particular, a collection type is
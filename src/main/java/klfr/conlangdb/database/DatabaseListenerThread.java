@@ -0,0 +1,120 @@
+package klfr.conlangdb.database;
+
+import static klfr.conlangdb.CObject.Nothing;
+import static klfr.conlangdb.CObject.f;
+
+import java.net.URISyntaxException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.postgresql.PGConnection;
+
+import klfr.conlangdb.ServerMain.Arguments;
+
+/**
+ * Thread that listens for the change notifications that the database triggers
+ * send whenever a language's data is modified, including modifications by
+ * other servers or by hand. It holds its own connection to the primary
+ * database, as notifications are not replicated, and hands every modification
+ * to the registered listeners.
+ */
+class DatabaseListenerThread extends Thread {
+
+	private static final Logger log = Logger.getLogger(DatabaseListenerThread.class.getCanonicalName());
+
+	/** The notification channel that the database triggers notify. */
+	public static final String CHANNEL = "conlangdb_modified";
+
+	/**
+	 * Time in milliseconds to wait for notifications before the connection is
+	 * checked.
+	 */
+	private static final int POLL_MILLIS = 10_000;
+	/** Maximum number of seconds that validating the connection may take. */
+	private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+	/** Time to wait before the second attempt of connecting to the database. */
+	private static final long RECONNECT_INITIAL_BACKOFF_MILLIS = 250;
+	/** Maximum time to wait between attempts of connecting to the database. */
+	private static final long RECONNECT_MAX_BACKOFF_MILLIS = 30_000;
+
+	private final Arguments args;
+	/**
+	 * Listeners that recieve the modifications. They recieve Nothing if
+	 * notifications may have been missed while the connection was down or could
+	 * not be understood, so that all data must be considered modified.
+	 */
+	private final List<Consumer<Optional<Modification>>> listeners = new CopyOnWriteArrayList<>();
+
+	public DatabaseListenerThread(final Arguments args) {
+		super(Thread.currentThread().getThreadGroup(), "DBListnr");
+		super.setDaemon(true);
+		this.args = args;
+	}
+
+	/**
+	 * Registers a listener for modifications.
+	 */
+	public void addListener(final Consumer<Optional<Modification>> listener) {
+		listeners.add(listener);
+	}
+
+	private void notifyListeners(final Optional<Modification> modification) {
+		for (final var listener : listeners)
+			try {
+				listener.accept(modification);
+			} catch (final RuntimeException e) {
+				log.log(Level.WARNING, "Modification listener failed.", e);
+			}
+	}
+
+	public void run() {
+		var backoff = RECONNECT_INITIAL_BACKOFF_MILLIS;
+		var firstAttempt = true;
+		try {
+			while (true) {
+				try (final var connection = DatabaseManagerThread.connect(args, false);
+						final var stmt = connection.createStatement()) {
+					stmt.execute("LISTEN " + CHANNEL + ";");
+					log.info(f("Listening for modifications on %s", CHANNEL));
+					// notifications sent while not connected are lost
+					if (!firstAttempt)
+						notifyListeners(Nothing());
+					firstAttempt = false;
+					backoff = RECONNECT_INITIAL_BACKOFF_MILLIS;
+
+					final var pgConnection = connection.unwrap(PGConnection.class);
+					while (true) {
+						final var notifications = pgConnection.getNotifications(POLL_MILLIS);
+						if (notifications != null && notifications.length > 0) {
+							for (final var notification : notifications) {
+								final var modification = Modification.parse(notification.getParameter());
+								if (modification.isEmpty())
+									log.warning(f("Malformed modification notification %s",
+											notification.getParameter()));
+								log.finer(() -> f("%s", modification));
+								notifyListeners(modification);
+							}
+						} else if (!connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+							throw new SQLException("Listener connection is not valid anymore.");
+						}
+					}
+				} catch (final SQLException e) {
+					firstAttempt = false;
+					log.log(Level.WARNING,
+							f("Listener connection failed, reconnecting in %d ms: %s", backoff, e.getMessage()), e);
+					Thread.sleep(backoff);
+					backoff = Math.min(backoff * 2, RECONNECT_MAX_BACKOFF_MILLIS);
+				}
+			}
+		} catch (final URISyntaxException e) {
+			log.log(Level.SEVERE, f("Invalid URL resulted from database name %s.", args.databaseName), e);
+		} catch (final InterruptedException e) {
+			log.warning("Interrupted while reconnecting");
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package klfr.conlangdb.database;
 
+import static klfr.conlangdb.CObject.Just;
+import static klfr.conlangdb.CObject.Nothing;
 import static klfr.conlangdb.CObject.f;
 
 import java.net.URI;
@@ -7,15 +9,23 @@ import java.net.URISyntaxException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
 import java.util.Properties;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import klfr.conlangdb.ServerMain.Arguments;
+import klfr.conlangdb.util.Metrics;
 
 /**
  * Thread that will communicate with the database and recieve commands from the
@@ -30,10 +40,38 @@ class DatabaseManagerThread extends Thread {
 	 */
 	private final Arguments args;
 
+	/**
+	 * Whether this thread executes read-only commands on a read-only connection.
+	 */
+	private final boolean readOnly;
+
 	/**
 	 * The connection to the database that is established by the thread.
 	 */
 	private Connection databaseConnection;
+	/**
+	 * Whether the connection is known to be broken, so that it must be replaced
+	 * before the next command is executed.
+	 */
+	private boolean connectionBroken = true;
+	/** System.nanoTime() at which the connection was last known to work. */
+	private long connectionLastUsed;
+
+	/**
+	 * Time after which an idle connection is validated before it is used again.
+	 */
+	private static final long VALIDATION_IDLE_NANOS = TimeUnit.SECONDS.toNanos(5);
+	/** Maximum number of seconds that validating the connection may take. */
+	private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+	/** Time to wait before the second attempt of connecting to the database. */
+	private static final long RECONNECT_INITIAL_BACKOFF_MILLIS = 250;
+	/** Maximum time to wait between attempts of connecting to the database. */
+	private static final long RECONNECT_MAX_BACKOFF_MILLIS = 30_000;
+	/**
+	 * Maximum number of times a read-only command is executed if the connection
+	 * breaks during its execution.
+	 */
+	private static final int MAX_READ_ATTEMPTS = 3;
 
 	private final BlockingQueue<DatabaseCommand<Object>> commandQueue;
 
@@ -50,9 +88,24 @@ class DatabaseManagerThread extends Thread {
 	 */
 	public DatabaseManagerThread(final Arguments args, final Lock signal, final Condition cond,
 			final BlockingQueue<DatabaseCommand<Object>> queue) {
-		super(Thread.currentThread().getThreadGroup(), "DBManagr");
+		this(args, false, "DBManagr", signal, cond, queue);
+	}
+
+	/**
+	 * Constructs a database manager thread that possibly uses a read-only
+	 * connection.
+	 * 
+	 * @param readOnly Whether the thread should connect to the read database and
+	 *                 mark its connection read-only. The queue of such a thread must
+	 *                 only contain read-only commands.
+	 * @param name     The name of the thread.
+	 */
+	public DatabaseManagerThread(final Arguments args, final boolean readOnly, final String name, final Lock signal,
+			final Condition cond, final BlockingQueue<DatabaseCommand<Object>> queue) {
+		super(Thread.currentThread().getThreadGroup(), name);
 		super.setDaemon(true);
 		log.fine(f("CONSTRUCT %s", this.getClass().getCanonicalName()));
+		this.readOnly = readOnly;
 		this.args = args;
 		this.signal = signal;
 		this.cond = cond;
@@ -71,60 +124,371 @@ class DatabaseManagerThread extends Thread {
 	 *                            server name yields an invalid URI.
 	 */
 	public static Connection connect(final Arguments args) throws SQLException, URISyntaxException {
+		return connect(args, false);
+	}
+
+	/**
+	 * Causes this DatabaseManager thread to initiate a connection to the primary
+	 * database or the read database, using the username and password contained in
+	 * the Arguments.
+	 * 
+	 * @param args     The argument object that contains the database servers,
+	 *                 username and password to use. Is never modified by this
+	 *                 class.
+	 * @param readOnly Whether to connect to the read database server and mark the
+	 *                 connection as read-only.
+	 * @return the connection established
+	 * @throws SQLException       If the database connection fails.
+	 * @throws URISyntaxException If the database name in combination with the
+	 *                            server name yields an invalid URI.
+	 */
+	public static Connection connect(final Arguments args, final boolean readOnly)
+			throws SQLException, URISyntaxException {
 		final var props = new Properties();
 		props.setProperty("user", args.databaseUser);
 		props.setProperty("password", args.databasePassword);
 		// props.setProperty("ssl", "true");
-		// use postgresql database on localhost with given database
-		final String url = new URI("jdbc:postgresql://localhost:5431/" + args.databaseName).toASCIIString();
-		return DriverManager.getConnection(url, props);
+		// the read database defaults to the primary database
+		final var host = readOnly && args.readDatabaseHost != null ? args.readDatabaseHost : args.databaseHost;
+		final var port = readOnly && args.readDatabasePort > 0 ? args.readDatabasePort : args.databasePort;
+		final String url = "jdbc:"
+				+ new URI("postgresql", null, host, port, "/" + args.databaseName, null, null).toASCIIString();
+		final var connection = DriverManager.getConnection(url, props);
+		connection.setReadOnly(readOnly);
+		return connection;
+	}
+
+	/**
+	 * Executes a single command on the database connection. If the connection
+	 * breaks while a read-only command is executed, the command is executed again
+	 * on a new connection, as reading is idempotent. Other commands fail in that
+	 * case, because it is unknown whether they modified the database.
+	 */
+	private void runCommand(final DatabaseCommand<Object> nextCommand)
+			throws InterruptedException, URISyntaxException {
+		recordQueueTime(nextCommand);
+		for (int attempt = 1;; ++attempt) {
+			ensureConnection();
+			if (dropIfAbandoned(nextCommand))
+				return;
+			log.fine(() -> f("RUN COMMAND %s", nextCommand));
+			var executable = nextCommand.getUnpublishedTask(CommandConnection.wrap(databaseConnection, nextCommand));
+			try {
+				databaseConnection.beginRequest();
+				// batchable commands rely on auto-commit, which other commands may have disabled
+				if (nextCommand.isBatchable())
+					databaseConnection.setAutoCommit(true);
+				execute(nextCommand, executable);
+				databaseConnection.endRequest();
+			} catch (final SQLException e) {
+				log.log(Level.WARNING, f("Connection failed around command %s.", nextCommand), e);
+				if (!executable.isDone())
+					executable = failedTask(e);
+			} finally {
+				finishExecution(nextCommand);
+			}
+
+			// a command that returned nothing usually just found nothing; validating the connection would cost a
+			// round trip, so only the driver's own knowledge of a closed connection is checked then
+			if (!executable.isCancelled() && (hasThrown(executable) ? !checkConnection() : isClosed())) {
+				if (nextCommand.isReadOnly() && attempt < MAX_READ_ATTEMPTS) {
+					log.warning(f("Connection lost while running %s, running it again (attempt %d of %d).",
+							nextCommand, attempt + 1, MAX_READ_ATTEMPTS));
+					continue;
+				}
+				log.warning(f("Connection lost while running %s.", nextCommand));
+			}
+			nextCommand.publish(executable);
+
+			if (executable.isCancelled())
+				log.fine(() -> f("Command %s was cancelled while running.", nextCommand));
+			else
+				try {
+					executable.get();
+				} catch (final ExecutionException e) {
+					log.log(Level.SEVERE, "Command execution caused exception.", e);
+				}
+			return;
+		}
+	}
+
+	/**
+	 * Whether the executed task threw an exception, which may be caused by a
+	 * broken connection.
+	 */
+	private static boolean hasThrown(final FutureTask<Optional<Object>> task) throws InterruptedException {
+		try {
+			task.get();
+			return false;
+		} catch (final ExecutionException e) {
+			return true;
+		}
+	}
+
+	/**
+	 * Checks whether the driver knows that the connection is closed and marks it
+	 * broken if so. This needs no round trip to the server: The PostgreSQL driver
+	 * closes the connection itself when a statement fails because of a broken
+	 * connection, also if the command caught the SQLException and returned nothing.
+	 * 
+	 * @return whether the connection is closed.
+	 */
+	private boolean isClosed() {
+		try {
+			if (!connectionBroken && !databaseConnection.isClosed())
+				return false;
+		} catch (final SQLException e) {
+			log.log(Level.FINE, "Connection state check failed.", e);
+		}
+		connectionBroken = true;
+		return true;
+	}
+
+	/**
+	 * Creates a finished task that fails with the given exception.
+	 */
+	private static FutureTask<Optional<Object>> failedTask(final Exception e) {
+		final var failed = new FutureTask<Optional<Object>>(() -> {
+			throw e;
+		});
+		failed.run();
+		return failed;
 	}
 
+	/**
+	 * Checks whether the connection is still working and marks it broken if not.
+	 * 
+	 * @return whether the connection works.
+	 */
+	private boolean checkConnection() {
+		try {
+			if (!connectionBroken && databaseConnection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+				connectionLastUsed = System.nanoTime();
+				return true;
+			}
+		} catch (final SQLException e) {
+			log.log(Level.FINE, "Connection validation failed.", e);
+		}
+		connectionBroken = true;
+		return false;
+	}
+
+	/**
+	 * Makes sure that there is a working connection before a command is executed.
+	 * A connection that was idle for some time is validated first. If the
+	 * connection is broken, it is replaced by a new connection; connecting is
+	 * retried with exponential backoff until it succeeds.
+	 */
+	private void ensureConnection() throws InterruptedException, URISyntaxException {
+		if (!connectionBroken && System.nanoTime() - connectionLastUsed < VALIDATION_IDLE_NANOS) {
+			connectionLastUsed = System.nanoTime();
+			return;
+		}
+		if (checkConnection())
+			return;
+		if (databaseConnection != null)
+			try {
+				databaseConnection.close();
+			} catch (final SQLException e) {
+				// the connection is broken anyways
+			}
+		var backoff = RECONNECT_INITIAL_BACKOFF_MILLIS;
+		while (!tryConnect()) {
+			log.warning(f("Reconnecting to the database in %d ms.", backoff));
+			Thread.sleep(backoff);
+			backoff = Math.min(backoff * 2, RECONNECT_MAX_BACKOFF_MILLIS);
+		}
+	}
+
+	/**
+	 * Tries to connect to the database once.
+	 * 
+	 * @return whether the connection was established.
+	 * @throws URISyntaxException If the database URI is invalid, which is not
+	 *                            worth retrying.
+	 */
+	private boolean tryConnect() throws URISyntaxException {
+		try {
+			databaseConnection = connect(args, readOnly);
+			connectionBroken = false;
+			connectionLastUsed = System.nanoTime();
+			log.info(f("%s connected to database %s.", getName(), args.databaseName));
+			return true;
+		} catch (final SQLException e) {
+			log.log(Level.WARNING, f("Could not connect to database %s: %s (%s).", args.databaseName,
+					e.getMessage(), e.getSQLState()), e);
+			return false;
+		}
+	}
+
+	/**
+	 * Drops the command without executing it if it was cancelled or its deadline
+	 * has passed while it was queued.
+	 * 
+	 * @return whether the command was dropped.
+	 */
+	private static boolean dropIfAbandoned(final DatabaseCommand<Object> command) {
+		if (!command.isCancelled() && !command.isExpired())
+			return false;
+		log.fine(() -> f("DROP COMMAND %s, cancelled or deadline expired", command));
+		command.drop();
+		return true;
+	}
+
+	/**
+	 * Cleans up after a command was executed.
+	 */
+	private static void finishExecution(final DatabaseCommand<Object> command) {
+		command.clearStatements();
+		// a command must not leave this thread interrupted, or the main loop exits
+		Thread.interrupted();
+	}
+
+	/**
+	 * Records the time the command spent in the queue, which ends now.
+	 */
+	private static void recordQueueTime(final DatabaseCommand<Object> command) {
+		final var queueTime = System.nanoTime() - command.getSubmitTime();
+		DatabaseCommunicator.getQueueStatistics().record(command.getPriority(), queueTime);
+		Metrics.histogram("db_command_queue_seconds", "Time that database commands waited in the queue.",
+				"command", command.getMetricName()).record(queueTime);
+	}
+
+	/**
+	 * Executes the command's task and records the execution time.
+	 */
+	private static void execute(final DatabaseCommand<Object> command, final Runnable executable) {
+		final var start = System.nanoTime();
+		try {
+			executable.run();
+		} finally {
+			Metrics.histogram("db_command_execution_seconds", "Time that database commands took to execute.",
+					"command", command.getMetricName()).record(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Adds batchable commands from the queue to the batch until the write batch
+	 * window has passed, the batch is full or a command that cannot be batched is
+	 * encountered.
+	 * 
+	 * @param batch The batch to fill, which already contains the first command.
+	 * @return The non-batchable command that ended the collection, or Nothing if
+	 *         the window or batch size was exhausted.
+	 */
+	private Optional<DatabaseCommand<Object>> collectBatch(final List<DatabaseCommand<Object>> batch)
+			throws InterruptedException {
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(args.writeBatchWindow);
+		while (batch.size() < args.writeBatchSize) {
+			final var next = commandQueue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+			if (next == null)
+				return Nothing();
+			if (!next.isBatchable())
+				return Just(next);
+			batch.add(next);
+		}
+		return Nothing();
+	}
+
+	/**
+	 * Executes all commands of the batch in a single transaction. Each command is
+	 * surrounded by a savepoint, so a failing command is rolled back without
+	 * affecting the other commands. The commands' results only become available to
+	 * their callers after the transaction was committed; if the commit fails, all
+	 * commands of the batch fail.
+	 */
+	private void runBatch(final List<DatabaseCommand<Object>> batch)
+			throws InterruptedException, URISyntaxException {
+		if (batch.size() == 1) {
+			runCommand(batch.get(0));
+			return;
+		}
+		ensureConnection();
+		log.fine(() -> f("RUN BATCH of %d commands %s", batch.size(), batch));
+		// the executed commands and their tasks, which are published after the commit
+		final var tasks = new LinkedHashMap<DatabaseCommand<Object>, FutureTask<Optional<Object>>>();
+		try {
+			databaseConnection.beginRequest();
+			databaseConnection.setAutoCommit(false);
+			for (final var command : batch) {
+				recordQueueTime(command);
+				if (dropIfAbandoned(command))
+					continue;
+				final var savepoint = databaseConnection.setSavepoint();
+				final var executable = command
+						.getUnpublishedTask(CommandConnection.wrap(databaseConnection, command));
+				execute(command, executable);
+				finishExecution(command);
+				try {
+					executable.get();
+					// fails if the command left the transaction in an aborted state
+					databaseConnection.releaseSavepoint(savepoint);
+				} catch (final ExecutionException | CancellationException | SQLException e) {
+					log.log(Level.WARNING, f("Command %s failed in write batch, rolling back.", command), e);
+					databaseConnection.rollback(savepoint);
+				}
+				tasks.put(command, executable);
+			}
+			databaseConnection.commit();
+			for (final var executed : tasks.entrySet())
+				executed.getKey().publish(executed.getValue());
+		} catch (final SQLException e) {
+			log.log(Level.SEVERE, f("Write batch of %d commands failed.", batch.size()), e);
+			try {
+				databaseConnection.rollback();
+			} catch (final SQLException e1) {
+				// do nothing
+			}
+			// fail all commands that were not dropped
+			for (final var command : batch)
+				if (!command.isDone())
+					command.publish(failedTask(e));
+			checkConnection();
+		} finally {
+			try {
+				databaseConnection.setAutoCommit(true);
+				databaseConnection.endRequest();
+			} catch (final SQLException e) {
+				checkConnection();
+			}
+		}
+	}
+
+	/**
+	 * Main loop of the database manager. The thread keeps running while the
+	 * database is unreachable and reconnects once it is available again. Startup
+	 * continues after the first connection attempt, regardless of its outcome.
+	 */
 	public void run() {
 		log.entering(this.getClass().getCanonicalName(), "run");
 		try {
 			signal.lock();
 			try {
-				databaseConnection = connect(args);
-				cond.signalAll();
+				tryConnect();
 			} finally {
+				cond.signalAll();
 				signal.unlock();
 			}
-			try {
-				DatabaseCommand<Object> nextCommand;
-				while (true) {
-					// blocks while queue is empty
-					nextCommand = commandQueue.take();
-					final var nc = nextCommand;
-					log.fine(() -> f("RUN COMMAND %s", nc));
-					databaseConnection.beginRequest();
-					final var executable = nextCommand.getTask(databaseConnection);
-					executable.run();
-					databaseConnection.endRequest();
-					if (executable.isDone() && !executable.isCancelled())
-						try {
-							executable.get();
-						} catch (final ExecutionException e) {
-							log.log(Level.SEVERE, "Command execution caused exception.", e);
-						}
-					else {
-						// TODO: restart the command without cloning - is this a good idea?
-						commandQueue.add(nextCommand);
-					}
+			var nextCommand = commandQueue.take();
+			while (true) {
+				if (nextCommand.isBatchable() && args.writeBatchWindow > 0) {
+					final var batch = new ArrayList<DatabaseCommand<Object>>(args.writeBatchSize);
+					batch.add(nextCommand);
+					// the command that ended the batch collection must run right after the batch
+					final var leftover = collectBatch(batch);
+					runBatch(batch);
+					nextCommand = leftover.isPresent() ? leftover.get() : commandQueue.take();
+					continue;
 				}
-			} catch (final InterruptedException e) {
-				log.warning("Interrupted on main loop");
-				return;
+				runCommand(nextCommand);
+				// blocks while queue is empty
+				nextCommand = commandQueue.take();
 			}
+		} catch (final InterruptedException e) {
+			log.warning("Interrupted on main loop");
 		} catch (final URISyntaxException e) {
 			log.log(Level.SEVERE, f("Invalid URL resulted from database name %s.", args.databaseName), e);
-			// kill the database manager
-			Thread.currentThread().interrupt();
-		} catch (final SQLException e) {
-			log.log(Level.SEVERE, f("SQL exception occurred while opening database %s: %s (%d).", args.databaseName,
-					e.getMessage(), e.getErrorCode()), e);
-			Thread.currentThread().interrupt();
 		}
 	}
 
-}
\ No newline at end of file
+}
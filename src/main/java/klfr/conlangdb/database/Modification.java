@@ -0,0 +1,80 @@
+package klfr.conlangdb.database;
+
+import java.util.Optional;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import klfr.conlangdb.CObject;
+
+/**
+ * A modification of the database as reported by the database's change
+ * notifications. Modifications are always associated with a language, and with
+ * a word if a single word was modified.
+ */
+public final class Modification extends CObject {
+	private static final long serialVersionUID = 1L;
+
+	/** The kind of the modified entity: "language", "word" or "attribute". */
+	public final String kind;
+	/** The operation: "insert", "update" or "delete". */
+	public final String operation;
+	/** The ID of the modified language, or of the language the entity belongs to. */
+	public final String language;
+	/**
+	 * The romanized text of the modified word, if a single word was modified.
+	 * Statements that modify several words are reported once per language
+	 * without a word.
+	 */
+	public final Optional<String> word;
+
+	public Modification(final String kind, final String operation, final String language,
+			final Optional<String> word) {
+		this.kind = kind;
+		this.operation = operation;
+		this.language = language;
+		this.word = word;
+	}
+
+	/**
+	 * Parses the payload of a change notification.
+	 *
+	 * @param payload The JSON object sent by the database triggers.
+	 * @return The modification, or Nothing if the payload is malformed.
+	 */
+	public static Optional<Modification> parse(final String payload) {
+		try {
+			final var json = new JSONObject(payload);
+			return Just(new Modification(json.getString("kind"), json.getString("op"), json.getString("language"),
+					json.isNull("word") ? Nothing() : Just(json.getString("word"))));
+		} catch (final JSONException e) {
+			return Nothing();
+		}
+	}
+
+	/** Whether this modification concerns the language table itself. */
+	public boolean isLanguageModification() {
+		return kind.equals("language");
+	}
+
+	/**
+	 * Returns a compact JSON representation, which omits the kind.
+	 */
+	public JSONObject toJSON() {
+		final var json = new JSONObject();
+		json.put("op", operation);
+		json.put("language", language);
+		word.ifPresent(w -> json.put("word", w));
+		return json;
+	}
+
+	@Override
+	public String toString() {
+		return f("Modification(%s %s %s%s)", operation, kind, language, word.map(w -> "/" + w).orElse(""));
+	}
+
+	@Override
+	public CObject clone() {
+		return new Modification(kind, operation, language, word);
+	}
+}
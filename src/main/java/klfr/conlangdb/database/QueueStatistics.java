@@ -0,0 +1,86 @@
+package klfr.conlangdb.database;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import klfr.conlangdb.CObject;
+
+/**
+ * Collects the time that database commands spent waiting in the command queue,
+ * separately for every priority class. The statistics are updated by the
+ * database manager threads and may be read from any thread.
+ */
+public final class QueueStatistics extends CObject {
+	private static final long serialVersionUID = 1L;
+
+	private final Map<CommandPriority, LongAdder> counts = new EnumMap<>(CommandPriority.class);
+	private final Map<CommandPriority, LongAdder> totalTimes = new EnumMap<>(CommandPriority.class);
+	private final Map<CommandPriority, LongAccumulator> maximumTimes = new EnumMap<>(CommandPriority.class);
+	private final Map<CommandPriority, LongAdder> rejections = new EnumMap<>(CommandPriority.class);
+
+	public QueueStatistics() {
+		for (final var priority : CommandPriority.values()) {
+			counts.put(priority, new LongAdder());
+			totalTimes.put(priority, new LongAdder());
+			maximumTimes.put(priority, new LongAccumulator(Math::max, 0));
+			rejections.put(priority, new LongAdder());
+		}
+	}
+
+	/**
+	 * Records that a command of the given priority has waited in the queue for the
+	 * given time.
+	 * 
+	 * @param priority  The priority class of the command.
+	 * @param queueTime The time the command waited, in nanoseconds.
+	 */
+	public void record(final CommandPriority priority, final long queueTime) {
+		counts.get(priority).increment();
+		totalTimes.get(priority).add(queueTime);
+		maximumTimes.get(priority).accumulate(queueTime);
+	}
+
+	/**
+	 * Records that a command of the given priority was not admitted to the queue.
+	 */
+	public void recordRejection(final CommandPriority priority) {
+		rejections.get(priority).increment();
+	}
+
+	/** Returns the number of commands of the given priority that were executed. */
+	public long count(final CommandPriority priority) {
+		return counts.get(priority).sum();
+	}
+
+	/**
+	 * Returns the average queue time of commands with the given priority in
+	 * milliseconds, or 0 if no such command was executed yet.
+	 */
+	public double averageMillis(final CommandPriority priority) {
+		final var count = count(priority);
+		return count == 0 ? 0 : totalTimes.get(priority).sum() / (count * 1_000_000d);
+	}
+
+	/**
+	 * Returns the maximum queue time of commands with the given priority in
+	 * milliseconds.
+	 */
+	public double maximumMillis(final CommandPriority priority) {
+		return maximumTimes.get(priority).get() / 1_000_000d;
+	}
+
+	/**
+	 * Returns the number of commands of the given priority that were not admitted
+	 * to the queue.
+	 */
+	public long rejections(final CommandPriority priority) {
+		return rejections.get(priority).sum();
+	}
+
+	@Override
+	public CObject clone() {
+		return new QueueStatistics();
+	}
+}
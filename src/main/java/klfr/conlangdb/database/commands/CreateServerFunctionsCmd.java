@@ -3,13 +3,16 @@ package klfr.conlangdb.database.commands;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Scanner;
 import java.util.logging.Level;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import klfr.conlangdb.CResources;
+import klfr.conlangdb.database.CommandPriority;
 
 /**
  * Command for creating all Python server functions defined in the
@@ -27,7 +30,11 @@ import klfr.conlangdb.CResources;
  * The list of server functions to be created (and replaced) is contained in a
  * special file named "functions.txt" On each line of this file, one name of a
  * function file without the .py ending relative to the server function
- * directory is given.
+ * directory is given.<br>
+ * <br>
+ * The hash of the created functions' code is recorded with
+ * {@link SchemaVersion}, and the command may be told to skip creating them if
+ * the code did not change since.
  */
 public class CreateServerFunctionsCmd extends NoArgumentCmd<Object> {
 
@@ -39,27 +46,49 @@ public class CreateServerFunctionsCmd extends NoArgumentCmd<Object> {
 	public static final Pattern functionDefinitionLine = Pattern
 			.compile("^\\p{IsWhite_Space}*\\#\\p{IsWhite_Space}*(.+)$");
 
+	/** Component name of the server functions in the schema version table. */
+	private static final String component = "server-functions";
+
+	/** Always creates the server functions. */
 	public CreateServerFunctionsCmd() {
+		this(false);
+	}
+
+	/**
+	 * @param onlyIfChanged Whether to skip creating the functions if their code is
+	 *                      the same as the last time they were created.
+	 */
+	public CreateServerFunctionsCmd(final boolean onlyIfChanged) {
 		super(con -> {
 			try {
 				con.setAutoCommit(true);
 				final var stmt = con.createStatement();
+				// read all function code first, so that it can be compared with the created functions
 				final var files = new Scanner(CResources.open("server-functions/functions.txt").get());
+				final var names = new ArrayList<String>();
+				final var codes = new ArrayList<String>();
 				while (files.hasNextLine()) {
 					final var file = files.nextLine();
-					final var pythonCode = CResources.open("server-functions/" + file + ".py").get();
-					final var pythonCodeScanner = new Scanner(
-							CResources.open("server-functions/" + file + ".py").get());
-					final var flm = functionDefinitionLine.matcher(pythonCodeScanner.nextLine());
-					pythonCodeScanner.close();
+					final var out = new StringWriter();
+					CResources.open("server-functions/" + file + ".py").get().transferTo(out);
+					names.add(file);
+					codes.add(out.toString());
+				}
+				files.close();
+				final var hash = SchemaVersion.hash(Stream.concat(names.stream(), codes.stream()).toArray(String[]::new));
+				if (onlyIfChanged && SchemaVersion.isApplied(con, component, hash)) {
+					log.info("Server functions are up to date");
+					return Optional.empty();
+				}
+
+				var allCreated = true;
+				for (int i = 0; i < names.size(); ++i) {
+					final var file = names.get(i);
+					final var functionCode = codes.get(i);
+					final var flm = functionDefinitionLine.matcher(functionCode.lines().findFirst().orElse(""));
 					if (!flm.matches())
 						continue;
 					final var functionLayout = flm.group(1);
-					// TODO: magic number??
-					final var out = new StringWriter(1024);
-					pythonCode.transferTo(out);
-					final var functionCode = out.toString();
-					pythonCodeScanner.close();
 
 					// create the function, replace if necessary
 					try {
@@ -68,11 +97,15 @@ public class CreateServerFunctionsCmd extends NoArgumentCmd<Object> {
 						log.finer(qry);
 						stmt.execute(qry);
 					} catch (final SQLException e) {
+						allCreated = false;
 						log.log(Level.SEVERE, String.format(
 								"SQL exception while creating function py_%s. Check resource server-functions/%s.py for correct first line and general Python syntax.",
 								file, file), e);
 					}
 				}
+				// functions that failed are attempted again on the next start
+				if (allCreated)
+					SchemaVersion.applied(con, component, hash);
 			} catch (NoSuchElementException | IOException | SQLException e) {
 				throw new RuntimeException(e);
 			}
@@ -81,5 +114,14 @@ public class CreateServerFunctionsCmd extends NoArgumentCmd<Object> {
 
 	}
 
+	/**
+	 * Database setup is submitted before the server accepts requests and must run
+	 * before all of them, which only the highest priority guarantees.
+	 */
+	@Override
+	public CommandPriority getPriority() {
+		return CommandPriority.Interactive;
+	}
+
 	private static final long serialVersionUID = 1L;
 }
\ No newline at end of file
@@ -10,4 +10,9 @@ public class EmptyCmd<T> extends NoArgumentCmd<T> {
 		super(con -> Nothing());
 	}
 
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
+
 }
\ No newline at end of file
@@ -8,6 +8,7 @@ import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
 import klfr.conlangdb.CResources;
+import klfr.conlangdb.database.CommandPriority;
 import klfr.conlangdb.util.StringStreamUtil;
 
 /**
@@ -15,24 +16,46 @@ import klfr.conlangdb.util.StringStreamUtil;
  * necessary, creating PL/PgSQL triggers for defaults, generated columns and
  * constraints.<br>
  * <br>
+ * The hash of the applied code is recorded with {@link SchemaVersion}, and the
+ * command may be told to skip the setup if the code did not change since.<br>
+ * <br>
  * Master comand for deleting the database:
- * {@code drop table tlanguage cascade; drop table tword cascade; drop table reltranslation cascade; drop table relattributeforword cascade; drop table tdefinition cascade; drop table twordattribute cascade;}
+ * {@code drop table tlanguage cascade; drop table tword cascade; drop table reltranslation cascade; drop table relattributeforword cascade; drop table tdefinition cascade; drop table twordattribute cascade; drop table tschemaversion;}
  */
 public class InitDatabaseCmd extends NoArgumentCmd<Object> {
 	private static final Logger log = Logger.getLogger(InitDatabaseCmd.class.getCanonicalName());
 
+	/** Component name of the schema in the schema version table. */
+	private static final String component = "schema";
+
+	/** Always sets up the database. */
 	public InitDatabaseCmd() {
+		this(false);
+	}
+
+	/**
+	 * @param onlyIfChanged Whether to skip the setup if the setup code is the same
+	 *                      as the last time.
+	 */
+	public InitDatabaseCmd(final boolean onlyIfChanged) {
 		super(con -> {
 			try {
-				final var code = StringStreamUtil.stringify(CResources.open("sql/create-database.sql").get()).split(Pattern.quote("--JAVA-SEPARATOR-NEXT-CMD\n"));
-				log.finer(Arrays.toString(code));
-
+				final var source = StringStreamUtil.stringify(CResources.open("sql/create-database.sql").get());
+				final var hash = SchemaVersion.hash(source);
 				con.setAutoCommit(true);
+				if (onlyIfChanged && SchemaVersion.isApplied(con, component, hash)) {
+					log.info("Database schema is up to date");
+					return Optional.empty();
+				}
+
+				final var code = source.split(Pattern.quote("--JAVA-SEPARATOR-NEXT-CMD\n"));
+				log.finer(Arrays.toString(code));
 				final var stmt = con.createStatement();
 				for (var query : code) {
 					stmt.addBatch(query);
 				}
 				stmt.executeBatch();
+				SchemaVersion.applied(con, component, hash);
 			} catch (final SQLException | IOException e) {
 				throw new RuntimeException(e);
 			}
@@ -41,5 +64,14 @@ public class InitDatabaseCmd extends NoArgumentCmd<Object> {
 
 	}
 
+	/**
+	 * Database setup is submitted before the server accepts requests and must run
+	 * before all of them, which only the highest priority guarantees.
+	 */
+	@Override
+	public CommandPriority getPriority() {
+		return CommandPriority.Interactive;
+	}
+
 	private static final long serialVersionUID = 1L;
 }
\ No newline at end of file
@@ -0,0 +1,85 @@
+package klfr.conlangdb.database.commands;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import klfr.conlangdb.CObject;
+
+/**
+ * Records which version of the database schema and the server functions was
+ * applied to the database, as SHA-256 hashes of their source code in the table
+ * TSchemaVersion. The setup commands can then skip re-applying unchanged code,
+ * which makes the server start much faster.
+ */
+final class SchemaVersion extends CObject {
+	private static final long serialVersionUID = 1L;
+
+	private static final String createTable = "CREATE TABLE if not exists TSchemaVersion (Component varchar(30) not null primary key, Hash text not null);";
+
+	private SchemaVersion() {
+	}
+
+	/**
+	 * Returns the hexadecimal SHA-256 hash of the source code parts. Every part is
+	 * preceded by its length, so that the hash depends on the boundaries between
+	 * the parts as well.
+	 */
+	static String hash(final String... parts) {
+		try {
+			final var digest = MessageDigest.getInstance("SHA-256");
+			final var length = ByteBuffer.allocate(Integer.BYTES);
+			for (final var part : parts) {
+				final var bytes = part.getBytes(StandardCharsets.UTF_8);
+				digest.update(length.clear().putInt(bytes.length).flip());
+				digest.update(bytes);
+			}
+			final var hash = new StringBuilder(64);
+			for (final var b : digest.digest())
+				hash.append(f("%02x", b));
+			return hash.toString();
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform supports SHA-256
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Returns whether the source code with the hash was applied last for the
+	 * component. The connection must be in auto-commit mode.
+	 */
+	static boolean isApplied(final Connection con, final String component, final String hash) throws SQLException {
+		try (final var stmt = con.createStatement()) {
+			stmt.execute(createTable);
+		}
+		try (final var stmt = con.prepareStatement("SELECT Hash FROM TSchemaVersion WHERE Component=?;")) {
+			stmt.setString(1, component);
+			final var result = stmt.executeQuery();
+			return result.next() && result.getString(1).equals(hash);
+		}
+	}
+
+	/**
+	 * Records that the source code with the hash was applied for the component. The
+	 * connection must be in auto-commit mode.
+	 */
+	static void applied(final Connection con, final String component, final String hash) throws SQLException {
+		try (final var stmt = con.createStatement()) {
+			stmt.execute(createTable);
+		}
+		try (final var stmt = con.prepareStatement(
+				"INSERT INTO TSchemaVersion (Component, Hash) VALUES (?, ?) ON CONFLICT (Component) DO UPDATE SET Hash=excluded.Hash;")) {
+			stmt.setString(1, component);
+			stmt.setString(2, hash);
+			stmt.executeUpdate();
+		}
+	}
+
+	@Override
+	public CObject clone() {
+		return this;
+	}
+}
@@ -11,6 +11,7 @@ import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.stream.Stream;
 
+import klfr.conlangdb.database.CommandPriority;
 import klfr.conlangdb.database.DatabaseCommand;
 
 /**
@@ -161,6 +162,22 @@ public class StatisticsCmd extends DatabaseCommand<Map<String, Map<String, Objec
 		return index == 0 ? (Optional<T>) Optional.of(requested) : Optional.empty();
 	}
 
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
+
+	/** The statistics are sent with the ETag of the current data version. */
+	@Override
+	public boolean needsCurrentData() {
+		return true;
+	}
+
+	@Override
+	public CommandPriority getPriority() {
+		return CommandPriority.Bulk;
+	}
+
 	@Override
 	public DatabaseCommand<Map<String, Map<String, Object>>> clone() {
 		return new StatisticsCmd(requested);
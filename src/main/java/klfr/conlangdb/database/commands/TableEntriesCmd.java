@@ -6,6 +6,7 @@ import java.util.Optional;
 import java.util.logging.Level;
 import java.util.stream.Stream;
 
+import klfr.conlangdb.database.CommandPriority;
 import klfr.conlangdb.database.DatabaseCommand;
 
 /**
@@ -80,6 +81,17 @@ public class TableEntriesCmd extends DatabaseCommand<ResultSet> {
 		return Nothing();
 	}
 
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
+
+	/** Retrieving all entries of a table is a bulk operation. */
+	@Override
+	public CommandPriority getPriority() {
+		return count > 0 ? CommandPriority.Normal : CommandPriority.Bulk;
+	}
+
 	@Override
 	public DatabaseCommand<ResultSet> clone() {
 		return new TableEntriesCmd(table, fields, offset, count);
@@ -8,6 +8,7 @@ import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.stream.Stream;
 
+import klfr.conlangdb.database.CommandPriority;
 import klfr.conlangdb.database.DatabaseCommand;
 
 /**
@@ -76,6 +77,22 @@ public class WordAttributeDataCmd extends DatabaseCommand<ResultSet> {
 		return index == 0 ? language.isEmpty() ? (Optional<U>)Just(wordID) : (Optional<U>)Just(language) : Nothing();
 	}
 
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
+
+	/** The attributes are part of the word API's responses, which carry ETags. */
+	@Override
+	public boolean needsCurrentData() {
+		return true;
+	}
+
+	@Override
+	public CommandPriority getPriority() {
+		return CommandPriority.Interactive;
+	}
+
 	@Override
 	public DatabaseCommand<ResultSet> clone() {
 		return language.isEmpty() ? new WordAttributeDataCmd(wordID) : new WordAttributeDataCmd(language);
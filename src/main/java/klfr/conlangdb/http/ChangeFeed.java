@@ -0,0 +1,167 @@
+package klfr.conlangdb.http;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Logger;
+
+import klfr.conlangdb.CObject;
+import klfr.conlangdb.database.Modification;
+import klfr.conlangdb.util.Metrics;
+
+/**
+ * Static feed of the database modifications for the Server-Sent Events
+ * endpoint. Modifications are turned into events, which are kept in a short
+ * history for clients that reconnect with a Last-Event-ID, and handed to all
+ * current subscriptions whose language matches.
+ */
+public class ChangeFeed extends CObject {
+	private static final long serialVersionUID = 1L;
+	private static final Logger log = Logger.getLogger(ChangeFeed.class.getCanonicalName());
+
+	/** Number of events kept for reconnecting clients. */
+	private static final int HISTORY_SIZE = 256;
+	/** Number of events that a subscription can buffer. */
+	private static final int SUBSCRIPTION_CAPACITY = 1024;
+
+	/**
+	 * An event of the feed in Server-Sent Events format. Events without a language
+	 * concern all languages.
+	 */
+	static final class Event {
+		final long id;
+		final Optional<String> language;
+		final byte[] formatted;
+
+		Event(final long id, final String type, final Optional<String> language, final String data) {
+			this.id = id;
+			this.language = language;
+			this.formatted = ((id > 0 ? f("id: %d\n", id) : "") + f("event: %s\ndata: %s\n\n", type, data))
+					.getBytes(StandardCharsets.UTF_8);
+		}
+
+		boolean matches(final Optional<String> filter) {
+			return filter.isEmpty() || language.isEmpty() || language.equals(filter);
+		}
+	}
+
+	/** Event that tells clients to reload all data, because events were lost. */
+	static final Event reset = new Event(0, "reset", Nothing(), "{}");
+
+	/**
+	 * A subscription of a client to the feed, which buffers the events that the
+	 * client has not recieved yet.
+	 */
+	static final class Subscription {
+		final Optional<String> language;
+		final BlockingQueue<Event> events = new ArrayBlockingQueue<>(SUBSCRIPTION_CAPACITY);
+		/** System.nanoTime() after which the subscription is certainly abandoned. */
+		final long expiry;
+		/** Whether events were lost because the client did not keep up. */
+		volatile boolean overflowed = false;
+
+		Subscription(final Optional<String> language, final long expiry) {
+			this.language = language;
+			this.expiry = expiry;
+		}
+
+		void offer(final Event event) {
+			if (event.matches(language) && !events.offer(event))
+				overflowed = true;
+		}
+	}
+
+	private static final ArrayDeque<Event> history = new ArrayDeque<>(HISTORY_SIZE);
+	private static final List<Subscription> subscriptions = new ArrayList<>();
+	private static long lastId = 0;
+
+	static {
+		Metrics.callback("event_streams", "Number of connected event stream clients.", "gauge",
+				ChangeFeed::subscriptionCount);
+	}
+
+	@Override
+	public CObject clone() {
+		return new ChangeFeed();
+	}
+
+	/**
+	 * Publishes a modification to all subscriptions. Used as a database
+	 * modification listener.
+	 *
+	 * @param modification The modification, or Nothing if all data may have been
+	 *                     modified, which causes a reset event.
+	 */
+	public static synchronized void publish(final Optional<Modification> modification) {
+		final Event event;
+		if (modification.isPresent()) {
+			event = new Event(++lastId, modification.get().kind, Just(modification.get().language),
+					modification.get().toJSON().toString());
+			if (history.size() == HISTORY_SIZE)
+				history.removeFirst();
+			history.addLast(event);
+		} else {
+			// clients must reload anyways, older events are useless
+			history.clear();
+			event = reset;
+		}
+		removeExpired();
+		for (final var subscription : subscriptions)
+			subscription.offer(event);
+	}
+
+	/**
+	 * Subscribes to the feed.
+	 *
+	 * @param language    The language whose events are wanted, or Nothing for all
+	 *                    languages.
+	 * @param lastEventId The ID of the last event that the client recieved before
+	 *                    reconnecting, if any. Later events are replayed, or a reset
+	 *                    event is sent if they are not available anymore.
+	 * @param expiry      System.nanoTime() after which the subscription is removed
+	 *                    even if it was not ended.
+	 */
+	static synchronized Subscription subscribe(final Optional<String> language, final Optional<Long> lastEventId,
+			final long expiry) {
+		final var subscription = new Subscription(language, expiry);
+		if (lastEventId.isPresent()) {
+			final var oldestId = history.isEmpty() ? lastId + 1 : history.getFirst().id;
+			if (lastEventId.get() < oldestId - 1 || lastEventId.get() > lastId)
+				subscription.offer(reset);
+			else
+				for (final var event : history)
+					if (event.id > lastEventId.get())
+						subscription.offer(event);
+		}
+		subscriptions.add(subscription);
+		log.fine(() -> f("%d event subscriptions", subscriptions.size()));
+		return subscription;
+	}
+
+	/**
+	 * Ends the subscription.
+	 */
+	static synchronized void unsubscribe(final Subscription subscription) {
+		subscriptions.remove(subscription);
+	}
+
+	/**
+	 * Returns the number of current subscriptions.
+	 */
+	static synchronized int subscriptionCount() {
+		removeExpired();
+		return subscriptions.size();
+	}
+
+	/**
+	 * Removes subscriptions whose clients disconnected without ending them.
+	 */
+	private static void removeExpired() {
+		final var now = System.nanoTime();
+		subscriptions.removeIf(subscription -> now - subscription.expiry > 0);
+	}
+}
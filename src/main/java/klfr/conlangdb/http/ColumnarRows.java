@@ -0,0 +1,237 @@
+package klfr.conlangdb.http;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+
+import klfr.conlangdb.http.util.JSONWriter;
+
+/**
+ * Columnar buffer of a list query's result, which the list APIs serialize to
+ * JSON without creating an object per row. Each column is stored in arrays of
+ * its kind: integers and booleans in primitive arrays with a null mask, texts
+ * and numbers in string arrays, and SQL arrays as one string array of all
+ * elements with offsets per row. The JSON is written with a
+ * {@link JSONWriter}; the column names are escaped once per column.<br>
+ * <br>
+ * Column kinds are determined from the result set's metadata. Columns of types
+ * that have no JSON equivalent (e.g. the text search configuration) are
+ * represented by their text.
+ */
+final class ColumnarRows {
+
+	private static enum Kind {
+		INTEGER, BOOLEAN, NUMBER, TEXT, ARRAY
+	}
+
+	/** The values of one column. Only the arrays of the column's kind are used. */
+	private static final class Column {
+		final Kind kind;
+		final JSONWriter.Key key;
+		/** Whether the column is a numeric SQL array, whose elements are not quoted. */
+		boolean numericElements;
+		boolean baseTypeKnown;
+
+		long[] longs;
+		boolean[] booleans;
+		/** Marks the null values of integer, boolean and array columns. */
+		boolean[] nulls;
+		/** Values of text and number columns, null for SQL NULL. */
+		String[] strings;
+		/**
+		 * Start of each row's array elements in {@link #elements}; the row's elements
+		 * end at the next row's offset.
+		 */
+		int[] offsets;
+		String[] elements;
+		int elementCount;
+
+		Column(final Kind kind, final String name, final int capacity) {
+			this.kind = kind;
+			this.key = new JSONWriter.Key(name);
+			switch (kind) {
+				case INTEGER:
+					longs = new long[capacity];
+					nulls = new boolean[capacity];
+					break;
+				case BOOLEAN:
+					booleans = new boolean[capacity];
+					nulls = new boolean[capacity];
+					break;
+				case NUMBER:
+				case TEXT:
+					strings = new String[capacity];
+					break;
+				case ARRAY:
+					nulls = new boolean[capacity];
+					offsets = new int[capacity + 1];
+					elements = new String[capacity * 2];
+					break;
+			}
+		}
+
+		void grow(final int capacity) {
+			if (longs != null)
+				longs = Arrays.copyOf(longs, capacity);
+			if (booleans != null)
+				booleans = Arrays.copyOf(booleans, capacity);
+			if (nulls != null)
+				nulls = Arrays.copyOf(nulls, capacity);
+			if (strings != null)
+				strings = Arrays.copyOf(strings, capacity);
+			if (offsets != null)
+				offsets = Arrays.copyOf(offsets, capacity + 1);
+		}
+
+		void read(final ResultSet rset, final int column, final int row) throws SQLException {
+			switch (kind) {
+				case INTEGER:
+					longs[row] = rset.getLong(column);
+					nulls[row] = rset.wasNull();
+					break;
+				case BOOLEAN:
+					booleans[row] = rset.getBoolean(column);
+					nulls[row] = rset.wasNull();
+					break;
+				case NUMBER:
+				case TEXT:
+					strings[row] = rset.getString(column);
+					break;
+				case ARRAY:
+					final var array = rset.getArray(column);
+					nulls[row] = array == null;
+					if (array != null) {
+						final var values = (Object[]) array.getArray();
+						if (!baseTypeKnown) {
+							numericElements = isNumeric(array.getBaseType());
+							baseTypeKnown = true;
+						}
+						if (elementCount + values.length > elements.length)
+							elements = Arrays.copyOf(elements,
+									Math.max(elements.length * 2, elementCount + values.length));
+						for (final var value : values)
+							elements[elementCount++] = value == null ? null : value.toString();
+						array.free();
+					}
+					offsets[row + 1] = elementCount;
+					break;
+			}
+		}
+
+		boolean isNull(final int row) {
+			return strings != null ? strings[row] == null : nulls[row];
+		}
+
+		/** Writes the non-null value of the row. */
+		void write(final JSONWriter out, final int row) {
+			switch (kind) {
+				case INTEGER:
+					out.value(longs[row]);
+					break;
+				case BOOLEAN:
+					out.value(booleans[row]);
+					break;
+				case NUMBER:
+					out.number(strings[row]);
+					break;
+				case TEXT:
+					out.value(strings[row]);
+					break;
+				case ARRAY:
+					out.beginArray();
+					for (int i = offsets[row]; i < offsets[row + 1]; ++i) {
+						if (numericElements)
+							out.number(elements[i]);
+						else
+							out.value(elements[i]);
+					}
+					out.endArray();
+					break;
+			}
+		}
+	}
+
+	private final Column[] columns;
+	private int rows;
+	private int capacity;
+
+	/**
+	 * Reads all remaining rows of the result set, which is not closed.
+	 *
+	 * @param expectedRows The expected number of rows, used as the initial
+	 *                     capacity; non-positive if unknown.
+	 */
+	ColumnarRows(final ResultSet rset, final int expectedRows) throws SQLException {
+		final var meta = rset.getMetaData();
+		capacity = expectedRows > 0 ? expectedRows : 64;
+		columns = new Column[meta.getColumnCount()];
+		for (int i = 0; i < columns.length; ++i)
+			columns[i] = new Column(kind(meta.getColumnType(i + 1)), meta.getColumnName(i + 1), capacity);
+
+		while (rset.next()) {
+			if (rows == capacity) {
+				capacity *= 2;
+				for (final var column : columns)
+					column.grow(capacity);
+			}
+			for (int i = 0; i < columns.length; ++i)
+				columns[i].read(rset, i + 1, rows);
+			++rows;
+		}
+	}
+
+	/** Returns the number of rows. */
+	int size() {
+		return rows;
+	}
+
+	/**
+	 * Returns the rows as UTF-8 encoded JSON array of objects, whose keys are the
+	 * column names. Like with {@link org.json.JSONObject}, null values are left
+	 * out.
+	 */
+	byte[] toJSON() {
+		final var out = new JSONWriter().beginArray();
+		for (int row = 0; row < rows; ++row) {
+			out.beginObject();
+			for (final var column : columns) {
+				if (column.isNull(row))
+					continue;
+				out.key(column.key);
+				column.write(out, row);
+			}
+			out.endObject();
+		}
+		return out.endArray().toByteArray();
+	}
+
+	private static Kind kind(final int sqlType) {
+		switch (sqlType) {
+			case Types.BIGINT:
+			case Types.INTEGER:
+			case Types.SMALLINT:
+			case Types.TINYINT:
+				return Kind.INTEGER;
+			// PostgreSQL reports its booleans as bits
+			case Types.BOOLEAN:
+			case Types.BIT:
+				return Kind.BOOLEAN;
+			case Types.NUMERIC:
+			case Types.DECIMAL:
+			case Types.REAL:
+			case Types.FLOAT:
+			case Types.DOUBLE:
+				return Kind.NUMBER;
+			case Types.ARRAY:
+				return Kind.ARRAY;
+			default:
+				return Kind.TEXT;
+		}
+	}
+
+	private static boolean isNumeric(final int sqlType) {
+		final var kind = kind(sqlType);
+		return kind == Kind.INTEGER || kind == Kind.NUMBER;
+	}
+}
@@ -0,0 +1,162 @@
+package klfr.conlangdb.http;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.takes.Request;
+import org.takes.Response;
+import org.takes.rq.RqHeaders;
+import org.takes.rs.RsEmpty;
+import org.takes.rs.RsWithHeader;
+
+import klfr.conlangdb.CObject;
+import klfr.conlangdb.database.DatabaseCommunicator;
+import klfr.conlangdb.database.Modification;
+import klfr.conlangdb.http.util.HttpStatusCode;
+
+/**
+ * Static registry of data versions, which are counters per language that are
+ * increased whenever the server modifies the language's data. The versions are
+ * used for weak ETags of the JSON APIs, so that clients can revalidate their
+ * cached responses with If-None-Match without the server querying the
+ * database. Modifications of the language table also invalidate the
+ * {@link LanguageRegistry}.<br>
+ * <br>
+ * The versions are only known to this server process, therefore every ETag
+ * contains the start time of the server to not match ETags of earlier runs.
+ * Modifications of the database by other means than this server are reported
+ * by the database's change notifications.
+ */
+public class DataVersions extends CObject {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Identifies this server run in ETags. Is changed when all data must be
+	 * considered modified.
+	 */
+	private static volatile String epoch = Long.toString(System.currentTimeMillis(), 36);
+	/** Number of times that all data was considered modified. */
+	private static final AtomicLong resets = new AtomicLong();
+
+	/** Versions per language ID or {@link ResponseCache#LANGUAGE_TABLE}. */
+	private static final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+	/** Version of all data, increased with every modification. */
+	private static final AtomicLong globalVersion = new AtomicLong();
+
+	@Override
+	public CObject clone() {
+		return new DataVersions();
+	}
+
+	/**
+	 * Records that the data of the given languages was modified. This increases
+	 * their versions and invalidates their cached responses. Must be called after
+	 * every modification, also if it possibly failed.
+	 *
+	 * @param languages Language IDs or {@link ResponseCache#LANGUAGE_TABLE}.
+	 */
+	public static void modified(final String... languages) {
+		for (final var language : languages) {
+			versions.computeIfAbsent(language, l -> new AtomicLong()).incrementAndGet();
+			if (language.equals(ResponseCache.LANGUAGE_TABLE))
+				LanguageRegistry.modified();
+		}
+		globalVersion.incrementAndGet();
+		ResponseCache.invalidate(languages);
+	}
+
+	/**
+	 * Records that all data may have been modified, which changes all ETags and
+	 * empties the response cache.
+	 */
+	public static void modifiedAll() {
+		epoch = Long.toString(System.currentTimeMillis(), 36) + "." + resets.incrementAndGet();
+		globalVersion.incrementAndGet();
+		ResponseCache.invalidateAll();
+		LanguageRegistry.modified();
+	}
+
+	/**
+	 * Handles a modification notification from the database, see
+	 * {@link DatabaseCommunicator#addModificationListener(java.util.function.Consumer)}.
+	 * Modifications by this server are also notified, which causes a harmless
+	 * second invalidation.
+	 *
+	 * @param modification The modification, or Nothing if all data may have been
+	 *                     modified.
+	 */
+	public static void modifiedExternally(final Optional<Modification> modification) {
+		if (modification.isEmpty())
+			modifiedAll();
+		else if (modification.get().isLanguageModification())
+			modified(modification.get().language, ResponseCache.LANGUAGE_TABLE);
+		else
+			modified(modification.get().language);
+	}
+
+	/**
+	 * Returns the current version of the language's data.
+	 */
+	public static long version(final String language) {
+		final var version = versions.get(language);
+		return version == null ? 0 : version.get();
+	}
+
+	/**
+	 * Returns a weak ETag that changes whenever the data of any of the given
+	 * languages changes. Must be computed before the data is queried, so that the
+	 * ETag is never newer than the data.
+	 *
+	 * @param languages Language IDs or {@link ResponseCache#LANGUAGE_TABLE}, in a
+	 *                  fixed order.
+	 */
+	public static String etag(final String... languages) {
+		return "W/\"" + epoch + "-" + Arrays.stream(languages).map(l -> Long.toString(version(l), 36))
+				.collect(Collectors.joining("-")) + "\"";
+	}
+
+	/**
+	 * Returns a weak ETag that changes whenever any data changes.
+	 */
+	public static String globalEtag() {
+		return "W/\"" + epoch + "-g" + Long.toString(globalVersion.get(), 36) + "\"";
+	}
+
+	/**
+	 * Checks whether the If-None-Match header of the request matches the ETag,
+	 * using the weak comparison.
+	 *
+	 * @param request The request that possibly contains an If-None-Match header.
+	 * @param etag    The current ETag of the requested resource.
+	 * @return whether the client's cached response is still current.
+	 */
+	public static boolean notModified(final Request request, final String etag) throws IOException {
+		final var ifNoneMatch = new RqHeaders.Smart(request).single("If-None-Match", "");
+		if (ifNoneMatch.isBlank())
+			return false;
+		final var opaqueTag = weakless(etag);
+		for (final var candidate : ifNoneMatch.split(","))
+			if (candidate.strip().equals("*") || weakless(candidate.strip()).equals(opaqueTag))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Returns the ETag without its weakness indicator.
+	 */
+	private static String weakless(final String etag) {
+		return etag.startsWith("W/") ? etag.substring(2) : etag;
+	}
+
+	/**
+	 * Creates the "304 Not Modified" response for the ETag.
+	 */
+	public static Response notModifiedResponse(final String etag) {
+		return new RsWithHeader(new RsCWrap(new RsEmpty(), HttpStatusCode.NOT_MODIFIED), "ETag", etag);
+	}
+}
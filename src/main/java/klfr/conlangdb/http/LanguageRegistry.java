@@ -0,0 +1,280 @@
+package klfr.conlangdb.http;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import klfr.conlangdb.CObject;
+import klfr.conlangdb.CResources;
+import klfr.conlangdb.database.CommandPriority;
+import klfr.conlangdb.database.DatabaseCommand;
+import klfr.conlangdb.database.DatabaseCommunicator;
+import klfr.conlangdb.http.util.JSONWriter;
+import klfr.conlangdb.util.StringStreamUtil;
+
+/**
+ * Static in-memory copy of the language table. The table is tiny and rarely
+ * modified, so it is loaded as a whole at startup and loaded again on the first
+ * lookup after any language was modified. This way, language metadata and the
+ * conscript font CSS are served without querying the database.<br>
+ * <br>
+ * The font CSS of every language is rendered once from the
+ * {@code native-font.css} template and kept until the languages are loaded
+ * again.
+ */
+public class LanguageRegistry extends CObject {
+	private static final long serialVersionUID = 1L;
+	private static final Logger log = Logger.getLogger(LanguageRegistry.class.getCanonicalName());
+
+	private static final Pattern fontUrlReplaceSequence = Pattern.compile(Pattern.quote("%%JAVA-FONT-FILE%%"));
+
+	/** The metadata of a single language, as stored in the language table. */
+	public static final class Language extends CObject {
+		private static final long serialVersionUID = 1L;
+
+		/** The JSON keys of the language data, see the language API. */
+		private static final List<String> keys = List.of("id", "name", "name-en", "description", "description-en",
+				"fonturl");
+		private static final List<JSONWriter.Key> jsonKeys = keys.stream().map(JSONWriter.Key::new)
+				.collect(Collectors.toUnmodifiableList());
+		private static final JSONWriter.Key isconlangKey = new JSONWriter.Key("isconlang");
+
+		private final Map<String, String> data;
+		public final boolean isconlang;
+
+		private Language(final Map<String, String> data, final boolean isconlang) {
+			this.data = Collections.unmodifiableMap(data);
+			this.isconlang = isconlang;
+		}
+
+		public String id() {
+			return data.get("id");
+		}
+
+		/**
+		 * Returns the base name of the language's font file, or Nothing if the
+		 * language has no font.
+		 */
+		public Optional<String> fontUrl() {
+			final var fontUrl = data.get("fonturl");
+			return fontUrl.isEmpty() ? Nothing() : Just(fontUrl);
+		}
+
+		/**
+		 * Writes the language data as a JSON object in the format of the language API.
+		 * Missing values are left out.
+		 */
+		public JSONWriter write(final JSONWriter out) {
+			out.beginObject();
+			for (final var key : jsonKeys) {
+				final var value = data.get(key.toString());
+				if (value != null)
+					out.key(key).value(value);
+			}
+			return out.key(isconlangKey).value(isconlang).endObject();
+		}
+
+		@Override
+		public String toString() {
+			return f("Language(%s)", id());
+		}
+
+		@Override
+		public CObject clone() {
+			return new Language(new HashMap<>(data), isconlang);
+		}
+	}
+
+	/** The result of a single load of the language table. */
+	private static final class Snapshot {
+		/** The languages by ID. */
+		final Map<String, Language> languages;
+		/** Rendered font CSS by language ID, filled on demand. */
+		final Map<String, String> fontCSS = new ConcurrentHashMap<>();
+
+		Snapshot(final Map<String, Language> languages) {
+			this.languages = Collections.unmodifiableMap(languages);
+		}
+	}
+
+	private static volatile Snapshot snapshot = new Snapshot(Map.of());
+	/** The font CSS template, loaded once. */
+	private static volatile String fontTemplate = null;
+	/** Whether the loaded languages are current. */
+	private static volatile boolean current = false;
+	/**
+	 * Number of modifications so far, to detect modifications during a load.
+	 * Guarded by the class lock.
+	 */
+	private static long modifications = 0;
+	/**
+	 * The load that is in progress, which all lookups wait on instead of loading
+	 * the languages themselves, or null. Guarded by the class lock.
+	 */
+	private static CompletableFuture<Snapshot> pendingLoad = null;
+
+	@Override
+	public CObject clone() {
+		return new LanguageRegistry();
+	}
+
+	/**
+	 * Loads all languages. Called at startup so that the first requests don't
+	 * need to wait for the database; failures are logged and the load is retried
+	 * on the first lookup.
+	 */
+	public static void setup() {
+		try {
+			currentSnapshot();
+		} catch (final ExecutionException | InterruptedException e) {
+			log.log(Level.WARNING, "Could not load languages, will retry on first use.", e);
+		}
+	}
+
+	/**
+	 * Records that the language table was modified. The languages are loaded again
+	 * on the next lookup. Called by {@link DataVersions}.
+	 */
+	static synchronized void modified() {
+		++modifications;
+		current = false;
+	}
+
+	/**
+	 * Looks up a language.
+	 *
+	 * @param id The language ID.
+	 * @return The language, or Nothing if no language with that ID exists.
+	 * @throws ExecutionException   if the languages had to be loaded, but the
+	 *                              database command failed, including
+	 *                              {@link klfr.conlangdb.database.CommandRejectedException}.
+	 * @throws InterruptedException if the languages had to be loaded and the thread
+	 *                              was interrupted while waiting.
+	 */
+	public static Optional<Language> get(final String id) throws ExecutionException, InterruptedException {
+		return Optional.ofNullable(currentSnapshot().languages.get(id));
+	}
+
+	/**
+	 * Returns the current snapshot, loading the languages first if necessary. Only
+	 * one load runs at a time; lookups that find the languages outdated while a
+	 * load is running wait for its result.
+	 */
+	private static Snapshot currentSnapshot() throws ExecutionException, InterruptedException {
+		if (current)
+			return snapshot;
+		final CompletableFuture<Snapshot> reload;
+		final boolean loading;
+		synchronized (LanguageRegistry.class) {
+			if (current)
+				return snapshot;
+			loading = pendingLoad == null;
+			if (loading)
+				pendingLoad = new CompletableFuture<>();
+			reload = pendingLoad;
+		}
+		if (loading) {
+			try {
+				reload.complete(load());
+			} catch (final ExecutionException | InterruptedException | RuntimeException e) {
+				reload.completeExceptionally(e);
+				throw e;
+			} finally {
+				synchronized (LanguageRegistry.class) {
+					pendingLoad = null;
+				}
+			}
+		}
+		try {
+			return reload.get();
+		} catch (final ExecutionException e) {
+			// pass on the failure of the load, such as a CommandRejectedException
+			if (e.getCause() instanceof ExecutionException)
+				throw (ExecutionException) e.getCause();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the rendered {@code @font-face} CSS of a language.
+	 *
+	 * @param id The language ID.
+	 * @return The CSS, or Nothing if the language does not exist or has no font.
+	 * @throws IOException          if the CSS template cannot be read.
+	 * @throws ExecutionException   see {@link #get(String)}.
+	 * @throws InterruptedException see {@link #get(String)}.
+	 */
+	public static Optional<String> fontCSS(final String id)
+			throws IOException, ExecutionException, InterruptedException {
+		final var languages = currentSnapshot();
+		final var cached = languages.fontCSS.get(id);
+		if (cached != null)
+			return Just(cached);
+		final var fontUrl = Optional.ofNullable(languages.languages.get(id)).flatMap(Language::fontUrl);
+		if (fontUrl.isEmpty())
+			return Nothing();
+		if (fontTemplate == null)
+			fontTemplate = StringStreamUtil.stringify(
+					CResources.open("native-font.css").orElseThrow(() -> new IOException("native-font.css missing")));
+		final var css = fontUrlReplaceSequence.matcher(fontTemplate)
+				.replaceAll(Matcher.quoteReplacement(fontUrl.get()));
+		languages.fontCSS.put(id, css);
+		return Just(css);
+	}
+
+	/**
+	 * Loads all languages from the database and replaces the loaded languages. If
+	 * the language table was modified while loading, they are loaded again on the
+	 * next lookup. The languages are read on the primary connection, as a lagging
+	 * read replica might not contain the modification yet.
+	 *
+	 * @return The new snapshot.
+	 */
+	private static Snapshot load() throws ExecutionException, InterruptedException {
+		final long loadModifications;
+		synchronized (LanguageRegistry.class) {
+			loadModifications = modifications;
+		}
+		final var command = DatabaseCommand.from(CommandPriority.Interactive, con -> {
+			try {
+				final var stmt = con.prepareStatement(
+						"select id, name, name_en as \"name-en\", description, description_en as \"description-en\", isconlang, fonturl from tlanguage;");
+				final var rset = stmt.executeQuery();
+				final var loaded = new HashMap<String, Language>();
+				while (rset.next()) {
+					final var data = new HashMap<String, String>();
+					for (final var key : Language.keys)
+						data.put(key, Just(rset.getString(key)).orElse(""));
+					loaded.put(data.get("id"), new Language(data, rset.getBoolean("isconlang")));
+				}
+				rset.close();
+				return Just(loaded);
+			} catch (SQLException e) {
+				log.log(Level.SEVERE, "Server SQL exception", e);
+				return Nothing();
+			}
+		});
+		DatabaseCommunicator.submitCommand(command);
+		final var loaded = command.get().orElseThrow(() -> new ExecutionException("Loading languages failed", null));
+		final var loadedSnapshot = new Snapshot(loaded);
+		synchronized (LanguageRegistry.class) {
+			snapshot = loadedSnapshot;
+			// if the table was modified meanwhile, this may already be outdated
+			current = loadModifications == modifications;
+		}
+		log.fine(() -> f("Loaded %d languages", loaded.size()));
+		return loadedSnapshot;
+	}
+}
@@ -0,0 +1,182 @@
+package klfr.conlangdb.http;
+
+import java.util.LinkedHashMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import klfr.conlangdb.CObject;
+import klfr.conlangdb.ServerMain.Arguments;
+import klfr.conlangdb.util.Metrics;
+
+/**
+ * Static cache for the serialized bodies of API responses, such as lists and
+ * language data. Entries are identified by a key that is built from the
+ * normalized request, and are tagged with the IDs of the languages whose data
+ * they contain. Whenever a language's data is modified, all entries tagged with
+ * that language are invalidated. The cache is bounded by the total size of the
+ * cached bodies and evicts the least recently used entries first.<br>
+ * <br>
+ * To avoid caching data that was read before a modification but is stored
+ * after the modification's invalidation, users of the cache retrieve the
+ * current generation before querying the database and pass it to
+ * {@link ResponseCache#put(String, Set, byte[], long)}, which ignores the entry
+ * if any invalidation happened in the meantime.
+ */
+public class ResponseCache extends CObject {
+	private static final long serialVersionUID = 1L;
+	private static final Logger log = Logger.getLogger(ResponseCache.class.getCanonicalName());
+
+	/**
+	 * Tag for entries that contain data from the language table itself, such as
+	 * the language list. This can never be a language ID.
+	 */
+	public static final String LANGUAGE_TABLE = "#languages";
+
+	/**
+	 * Maximum part of the cache that a single entry may occupy. Larger entries are
+	 * not cached, as they would evict most other entries.
+	 */
+	private static final int MAX_ENTRY_FRACTION = 4;
+
+	/** A cached response body with its tags. */
+	private static final class Entry {
+		final byte[] data;
+		final Set<String> tags;
+
+		Entry(final byte[] data, final Set<String> tags) {
+			this.data = data;
+			this.tags = tags;
+		}
+	}
+
+	/** Cached entries in least-recently-used order. */
+	private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+	/** Total number of bytes of all cached bodies. */
+	private static long size = 0;
+	/** Maximum number of bytes of all cached bodies, 0 disables the cache. */
+	private static long maxSize = 0;
+	/** Number of invalidations so far. */
+	private static long generation = 0;
+
+	private static final LongAdder hits = new LongAdder();
+	private static final LongAdder misses = new LongAdder();
+
+	@Override
+	public CObject clone() {
+		return new ResponseCache();
+	}
+
+	/**
+	 * Configures the cache size from the arguments and empties the cache.
+	 */
+	public static synchronized void setup(final Arguments args) {
+		maxSize = args.responseCacheSize * 1024L * 1024L;
+		entries.clear();
+		size = 0;
+		++generation;
+		log.config(f("Response cache size %d bytes", maxSize));
+		Metrics.callback("response_cache_hits_total", "Number of requests answered from the response cache.",
+				"counter", ResponseCache::hits);
+		Metrics.callback("response_cache_misses_total", "Number of requests not found in the response cache.",
+				"counter", ResponseCache::misses);
+		Metrics.callback("response_cache_bytes", "Total size of the cached responses.", "gauge",
+				ResponseCache::size);
+	}
+
+	/**
+	 * Returns the current generation of the cache, which changes with every
+	 * invalidation. Must be retrieved before the data to be cached is queried.
+	 */
+	public static synchronized long generation() {
+		return generation;
+	}
+
+	/**
+	 * Returns the cached body for the key, or Nothing if there is none.
+	 *
+	 * @param key The normalized request key.
+	 * @return The cached body, which must not be modified.
+	 */
+	public static synchronized Optional<byte[]> get(final String key) {
+		final var entry = entries.get(key);
+		if (entry == null) {
+			misses.increment();
+			return Nothing();
+		}
+		hits.increment();
+		return Just(entry.data);
+	}
+
+	/**
+	 * Caches the body for the key, evicting least recently used entries if the
+	 * cache is full. Nothing is cached if the cache was invalidated since the given
+	 * generation.
+	 *
+	 * @param key        The normalized request key.
+	 * @param tags       The language IDs whose data is contained in the body, and
+	 *                   possibly {@link ResponseCache#LANGUAGE_TABLE}.
+	 * @param data       The serialized body, which must not be modified anymore.
+	 * @param generation The generation of the cache at the time the data was
+	 *                   queried.
+	 */
+	public static synchronized void put(final String key, final Set<String> tags, final byte[] data,
+			final long generation) {
+		if (maxSize == 0 || generation != ResponseCache.generation || data.length > maxSize / MAX_ENTRY_FRACTION)
+			return;
+		final var old = entries.put(key, new Entry(data, Set.copyOf(tags)));
+		if (old != null)
+			size -= old.data.length;
+		size += data.length;
+		final var iterator = entries.values().iterator();
+		while (size > maxSize && iterator.hasNext()) {
+			size -= iterator.next().data.length;
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Invalidates all entries that are tagged with any of the given tags. Must be
+	 * called after the data of these languages was modified.
+	 *
+	 * @param tags Language IDs or {@link ResponseCache#LANGUAGE_TABLE}.
+	 */
+	public static synchronized void invalidate(final String... tags) {
+		++generation;
+		final var iterator = entries.values().iterator();
+		while (iterator.hasNext()) {
+			final var entry = iterator.next();
+			for (final var tag : tags)
+				if (entry.tags.contains(tag)) {
+					size -= entry.data.length;
+					iterator.remove();
+					break;
+				}
+		}
+	}
+
+	/**
+	 * Invalidates all entries, because any data may have been modified.
+	 */
+	public static synchronized void invalidateAll() {
+		++generation;
+		entries.clear();
+		size = 0;
+	}
+
+	/** Returns the total number of bytes of all cached bodies. */
+	public static synchronized long size() {
+		return size;
+	}
+
+	/** Returns the number of requests that were answered from the cache. */
+	public static long hits() {
+		return hits.sum();
+	}
+
+	/** Returns the number of requests that were not found in the cache. */
+	public static long misses() {
+		return misses.sum();
+	}
+}
@@ -0,0 +1,56 @@
+package klfr.conlangdb.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.takes.Response;
+import org.takes.rs.RsWithHeader;
+
+import klfr.conlangdb.CObject;
+import klfr.conlangdb.database.CommandRejectedException;
+import klfr.conlangdb.http.util.HttpStatusCode;
+
+/**
+ * Response for requests that were shed because the database command queue is
+ * overloaded. This is a "503 Service Unavailable" response whose "Retry-After"
+ * header tells the client when to try again.
+ */
+public class RsUnavailable extends CObject implements Response {
+	private static final long serialVersionUID = 1L;
+
+	private final long retryAfterSeconds;
+	private final Response res;
+
+	/**
+	 * Creates the response from the rejection of the command that the request
+	 * needed.
+	 */
+	public RsUnavailable(final CommandRejectedException rejection) {
+		this(Math.max(1, (rejection.retryAfter.toMillis() + 999) / 1000));
+	}
+
+	/**
+	 * Creates the response with the given retry time.
+	 * 
+	 * @param retryAfterSeconds The number of seconds after which the client may
+	 *                          retry the request.
+	 */
+	public RsUnavailable(final long retryAfterSeconds) {
+		this.retryAfterSeconds = retryAfterSeconds;
+		this.res = new RsWithHeader(new RsCWrap(HttpStatusCode.SERVICE_UNAVAILABLE), "Retry-After",
+				String.valueOf(retryAfterSeconds));
+	}
+
+	public InputStream body() throws IOException {
+		return res.body();
+	}
+
+	public Iterable<String> head() throws IOException {
+		return res.head();
+	}
+
+	@Override
+	public CObject clone() {
+		return new RsUnavailable(retryAfterSeconds);
+	}
+}
@@ -0,0 +1,180 @@
+package klfr.conlangdb.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.takes.Request;
+import org.takes.Response;
+import org.takes.Take;
+import org.takes.rq.RqHeaders;
+import org.takes.rq.RqHref;
+
+import klfr.conlangdb.CObject;
+import klfr.conlangdb.http.util.HttpStatusCode;
+
+/**
+ * Server-Sent Events endpoint that pushes the modifications of the database to
+ * clients as they are committed, optionally only those of a single language
+ * given with the "lang" query parameter. See the API documentation for the
+ * event format.<br>
+ * <br>
+ * Every stream occupies one HTTP server thread, therefore the number of
+ * concurrent streams is limited and every stream ends after a while. Clients
+ * (such as the browser's EventSource) reconnect automatically and recieve the
+ * events they missed in between.
+ */
+public class TkEvents extends CObject implements Take {
+	private static final long serialVersionUID = 1L;
+	private static final Logger log = Logger.getLogger(TkEvents.class.getCanonicalName());
+
+	/** Time after which a stream ends and the client must reconnect. */
+	private static final long STREAM_DURATION_NANOS = TimeUnit.SECONDS.toNanos(60);
+	/** Time after which a comment is sent to keep an idle stream open. */
+	private static final long HEARTBEAT_NANOS = TimeUnit.SECONDS.toNanos(15);
+	/** Time in milliseconds after which the client should reconnect. */
+	private static final int RECONNECT_MILLIS = 1000;
+
+	private final int maxStreams;
+
+	/**
+	 * @param maxStreams The maximum number of concurrent event streams.
+	 */
+	public TkEvents(final int maxStreams) {
+		this.maxStreams = maxStreams;
+	}
+
+	@Override
+	public Response act(final Request request) {
+		try {
+			if (ChangeFeed.subscriptionCount() >= maxStreams)
+				return new RsUnavailable(TimeUnit.NANOSECONDS.toSeconds(STREAM_DURATION_NANOS) / 4);
+
+			final var language = new RqHref.Smart(request).single("lang", "");
+			Optional<Long> lastEventId = Nothing();
+			try {
+				final var lastEventIdHeader = new RqHeaders.Smart(request).single("Last-Event-ID", "");
+				if (!lastEventIdHeader.isBlank())
+					lastEventId = Just(Long.parseLong(lastEventIdHeader.strip()));
+			} catch (final NumberFormatException e) {
+				// treat as a new client
+			}
+
+			final var end = System.nanoTime() + STREAM_DURATION_NANOS;
+			final var subscription = ChangeFeed.subscribe(language.isBlank() ? Nothing() : Just(language),
+					lastEventId, end + HEARTBEAT_NANOS);
+			log.fine(() -> f("Event stream for %s", language.isBlank() ? "all languages" : language));
+			return new RsCWrap(new RsEventStream(new EventStream(subscription, end)));
+		} catch (final IOException e) {
+			log.log(Level.SEVERE, "IO exception in event stream.", e);
+			return new RsCWrap(HttpStatusCode.INTERNAL_SERVER_ERROR);
+		}
+	}
+
+	/**
+	 * Response with an event stream body. It has no Content-Length, the stream
+	 * ends with the connection.
+	 */
+	private static final class RsEventStream implements Response {
+		private final InputStream body;
+
+		RsEventStream(final InputStream body) {
+			this.body = body;
+		}
+
+		@Override
+		public Iterable<String> head() {
+			return List.of("Content-Type: text/event-stream; charset=UTF-8", "Cache-Control: no-cache");
+		}
+
+		@Override
+		public InputStream body() {
+			return body;
+		}
+	}
+
+	/**
+	 * Input stream that blocks until the next event of the subscription arrives,
+	 * sends heartbeats while there are no events and ends after the stream's
+	 * duration or when the client did not keep up with the events.
+	 */
+	private static final class EventStream extends InputStream {
+		private final ChangeFeed.Subscription subscription;
+		private final long end;
+		private byte[] chunk = f("retry: %d\n\n", RECONNECT_MILLIS).getBytes(StandardCharsets.UTF_8);
+		private int position = 0;
+		private boolean resetSent = false;
+		private boolean closed = false;
+
+		EventStream(final ChangeFeed.Subscription subscription, final long end) {
+			this.subscription = subscription;
+			this.end = end;
+		}
+
+		/**
+		 * Makes sure that the current chunk has unread bytes, waiting for the next
+		 * event if necessary.
+		 *
+		 * @return whether there are bytes, or false if the stream ended.
+		 */
+		private boolean fill() throws IOException {
+			while (position >= chunk.length) {
+				if (closed)
+					return false;
+				final var remaining = end - System.nanoTime();
+				if (subscription.overflowed && !resetSent) {
+					chunk = ChangeFeed.reset.formatted;
+					resetSent = true;
+				} else if (remaining <= 0 || subscription.overflowed) {
+					close();
+					return false;
+				} else {
+					try {
+						final var event = subscription.events.poll(Math.min(remaining, HEARTBEAT_NANOS),
+								TimeUnit.NANOSECONDS);
+						chunk = event == null ? ": keep-alive\n\n".getBytes(StandardCharsets.UTF_8) : event.formatted;
+					} catch (final InterruptedException e) {
+						close();
+						throw new InterruptedIOException("Interrupted while waiting for events");
+					}
+				}
+				position = 0;
+			}
+			return true;
+		}
+
+		@Override
+		public int read() throws IOException {
+			return fill() ? chunk[position++] & 0xff : -1;
+		}
+
+		@Override
+		public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+			if (length == 0)
+				return 0;
+			if (!fill())
+				return -1;
+			final var count = Math.min(length, chunk.length - position);
+			System.arraycopy(chunk, position, buffer, offset, count);
+			position += count;
+			return count;
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+			ChangeFeed.unsubscribe(subscription);
+		}
+	}
+
+	@Override
+	public CObject clone() {
+		return new TkEvents(maxStreams);
+	}
+}
@@ -1,6 +1,7 @@
 package klfr.conlangdb.http;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.nio.charset.IllegalCharsetNameException;
 import java.nio.charset.UnsupportedCharsetException;
 import java.sql.SQLException;
@@ -12,6 +13,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -24,12 +26,14 @@ import org.takes.rs.RsText;
 import org.takes.rs.RsWithHeader;
 
 import klfr.conlangdb.CObject;
+import klfr.conlangdb.database.CommandPriority;
+import klfr.conlangdb.database.CommandRejectedException;
 import klfr.conlangdb.database.DatabaseCommand;
 import klfr.conlangdb.database.DatabaseCommunicator;
 import klfr.conlangdb.http.util.HttpStatusCode;
+import klfr.conlangdb.http.util.JSONWriter;
 import klfr.conlangdb.http.util.RqBody;
 import klfr.conlangdb.http.util.RsJSON;
-import klfr.conlangdb.util.StringStreamUtil;
 
 /**
  * Container for the three HTTP methods associated with the single language API.
@@ -38,9 +42,87 @@ public final class TkLanguageAPI extends CObject {
 
 	public static final Pattern languageAPIPattern = Pattern.compile("/language/(\\S{1,3})");
 
+	/**
+	 * Command that inserts a language or, if a language with the given id already
+	 * exists, updates it. This is done with a single
+	 * {@code INSERT ... ON CONFLICT DO UPDATE} statement, so no prior existence
+	 * check is necessary. Only the keys present in the language data are changed on
+	 * update, which may change the language id. The command returns the (possibly
+	 * new) language id, or Nothing if the client data was invalid.
+	 */
+	public static class LanguageUpsertCmd extends DatabaseCommand<String> {
+		private static final long serialVersionUID = 1L;
+
+		/** The JSON keys that are recognized, in the order of their SQL columns. */
+		private static final List<String> languageKeys = List.of("id", "name", "name-en", "description",
+				"description-en", "fonturl", "config");
+
+		public final String language;
+		public final JSONObject data;
+
+		/**
+		 * @param language The language id as given in the request path.
+		 * @param data     The language data from the request body.
+		 */
+		public LanguageUpsertCmd(final String language, final JSONObject data) {
+			super(con -> {
+				try {
+					con.setAutoCommit(true);
+					// the id is the only column whose inserted value differs from the client data,
+					// all other columns can be taken from the excluded (i.e. insertion) row
+					final var updatedColumns = languageKeys.stream().filter(data::has)
+							.map(key -> key.equals("id") ? "id=?"
+									: "%1$s=excluded.%1$s".formatted(key.replace('-', '_')))
+							.collect(Collectors.toList());
+					final var upsertor = con.prepareStatement(new StringBuilder(
+							"insert into tlanguage ( id, name, name_en, description, description_en, fonturl, config ) values (?, ?, ?, ?, ?, ?, ?) on conflict (id) do update set ")
+									// the language must always be returned, so an empty update is replaced by a
+									// no-op
+									.append(updatedColumns.isEmpty() ? "id=tlanguage.id"
+											: String.join(", ", updatedColumns))
+									.append(" returning id;").toString());
+					upsertor.setString(1, language);
+					var counter = 2;
+					for (final var key : languageKeys.subList(1, languageKeys.size()))
+						upsertor.setString(counter++, data.optString(key));
+					if (data.has("id"))
+						upsertor.setString(counter, data.getString("id"));
+					log.fine(() -> "DATABASE upserting language %s: %s".formatted(language, upsertor));
+
+					final var rset = upsertor.executeQuery();
+					return rset.next() ? Just(rset.getString("id")) : Nothing();
+				} catch (SQLException e) {
+					log.log(Level.WARNING, "SQL error, probably client-caused", e);
+					return Nothing();
+				} catch (JSONException e) {
+					log.log(Level.WARNING, "Malformed input JSON", e);
+					return Nothing();
+				}
+			});
+			this.language = language;
+			this.data = data;
+		}
+
+		@Override
+		public Stream<Object> getArguments() {
+			return Stream.of(language, data);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public <U> Optional<U> getArgument(int index) {
+			return index == 0 ? (Optional<U>) Just(language) : index == 1 ? (Optional<U>) Just(data) : Nothing();
+		}
+
+		@Override
+		public DatabaseCommand<String> clone() {
+			return new LanguageUpsertCmd(language, data);
+		}
+	}
+
 	/**
 	 * Get method on the single language API. Returns language information in JSON
-	 * format.
+	 * format, which is taken from the {@link LanguageRegistry}.
 	 */
 	public static class Get extends CObject implements Take {
 		private static final Logger log = Logger.getLogger(Get.class.getCanonicalName());
@@ -55,32 +137,16 @@ public final class TkLanguageAPI extends CObject {
 					return new RsCWrap(HttpStatusCode.BAD_REQUEST);
 				final var language = pathMatcher.group(1);
 				log.fine(() -> "Requested language data for id %s".formatted(language));
-				final var command = DatabaseCommand.from(con -> {
-					try {
-						// prepare statement
-						final var stmt = con.prepareStatement(
-								"select id, name, name_en as \"name-en\", description, description_en as \"description-en\", isconlang, fonturl from tlanguage where id=?;");
-						stmt.setString(1, language);
-						// will throw sql error when nothing was found - this behavior is desirable
-						final var rset = stmt.executeQuery();
-						rset.next();
-
-						// create result object
-						final var obj = new JSONObject();
-						for (var key : List.of("id", "name", "name-en", "description", "description-en", "fonturl"))
-							obj.put(key, Just(rset.getString(key)).orElse(""));
-						obj.put("isconlang", Just(rset.getBoolean("isconlang")).orElse(false));
-						rset.close();
-						return Just(obj);
-					} catch (SQLException e) {
-						log.log(Level.SEVERE, "Server SQL exception", e);
-						return Nothing();
-					}
-				});
-				DatabaseCommunicator.submitCommand(command);
-				final var languageData = command.get().orElseThrow(() -> new SQLException("language not found"));
+
+				final var etag = DataVersions.etag(language);
+				if (DataVersions.notModified(request, etag))
+					return DataVersions.notModifiedResponse(etag);
+				final var languageData = LanguageRegistry.get(language)
+						.orElseThrow(() -> new SQLException("language not found")).write(new JSONWriter());
 				log.finer(() -> languageData.toString());
-				return new RsCWrap(new RsJSON(languageData));
+				return new RsWithHeader(new RsCWrap(new RsJSON(languageData)), "ETag", etag);
+			} catch (CommandRejectedException e) {
+				return new RsUnavailable(e);
 			} catch (IOException | InterruptedException | ExecutionException e) {
 				log.log(Level.SEVERE, "Server exception", e);
 				return new RsCWrap(HttpStatusCode.INTERNAL_SERVER_ERROR);
@@ -105,11 +171,11 @@ public final class TkLanguageAPI extends CObject {
 		@Override
 		public Response act(Request request) {
 			try {
-				request = new RqBody(request);
-				// parse body
-				final var charset = new RqHeaders.Smart(request).single("Accept-Charset", "utf-8");
-				final var bodyS = StringStreamUtil.stringify(request.body(), charset);
-				final var rq = new JSONObject(bodyS);
+				final var body = new RqBody(request);
+				request = body;
+				// parse body while it is read
+				final var charset = Charset.forName(new RqHeaders.Smart(request).single("Accept-Charset", "utf-8"));
+				final var rq = body.json(charset);
 				log.finer(() -> rq.toString());
 
 				// parse language
@@ -118,73 +184,30 @@ public final class TkLanguageAPI extends CObject {
 					return new RsCWrap(HttpStatusCode.BAD_REQUEST);
 				final var modifiedLanguage = maybeModifedLanguage.get();
 
-				final var command = DatabaseCommand.from(con -> {
-					try {
-						con.setAutoCommit(true);
-						// check whether the language that is to be modified exists
-						final var existenceChecker = con.prepareStatement("select id from tlanguage where id=?;");
-						existenceChecker.setString(1, modifiedLanguage);
-						final var exists = existenceChecker.executeQuery();
-						// if there was a record found, the first next() call will return true and point
-						// to the language's id
-						if (exists.next()) {
-							log.fine(() -> "DATABASE modifying language %s".formatted(modifiedLanguage));
-							// the language exists, do UPDATE (which may change the language id)
-							// also, this may fail if there are no valid keys, but that is ok (caught below)
-							final var updator = con.prepareStatement(new StringBuilder("update tlanguage set ")
-									.append(String.join(", ", List.of(rq.has("id") ? "id=?" : "",
-											rq.has("name") ? "name=?" : "", rq.has("name-en") ? "name_en=?" : "",
-											rq.has("description") ? "description=?" : "",
-											rq.has("description-en") ? "description_en=?" : "",
-											rq.has("fonturl") ? "fonturl=?" : "", rq.has("config") ? "config=?" : "")
-											.stream().filter(x -> !x.isBlank()).collect(Collectors.toList())))
-									.append(" where id=?;").toString());
-							// set all existent keys, use counter to keep track of parameter index
-							var counter = 1;
-							for (final var key : List.of("id", "name", "name-en", "description", "description-en",
-									"fonturl", "config"))
-								if (rq.has(key))
-									updator.setString(counter++, rq.getString(key));
-
-							log.finer("Parameter counter %s, query '%s'".formatted(counter, updator.toString()));
-							// the where clause's language parameter is the last argument
-							updator.setString(counter, modifiedLanguage);
-
-							final var updateCount = updator.executeUpdate();
-							// use the new id from the json if existent
-							return updateCount > 0 ? Just(rq.optString("id", modifiedLanguage)) : Nothing();
-						} else {
-							log.fine(() -> "DATABASE creating language %s".formatted(modifiedLanguage));
-							// the language does not exist, do INSERT
-							final var inserter = con.prepareStatement(
-									"insert into tlanguage ( id, name, name_en, description, description_en, fonturl, config ) values (?, ?, ?, ?, ?, ?, ?) on conflict do nothing;");
-							inserter.setString(1, modifiedLanguage);
-							inserter.setString(2, rq.optString("name"));
-							inserter.setString(3, rq.optString("name-en"));
-							inserter.setString(4, rq.optString("description"));
-							inserter.setString(5, rq.optString("description-en"));
-							inserter.setString(6, rq.optString("fonturl"));
-							inserter.setString(7, rq.optString("config"));
-
-							final var insertionCount = inserter.executeUpdate();
-							return insertionCount > 0 ? Just(modifiedLanguage) : Nothing();
-						}
-					} catch (SQLException e) {
-						log.log(Level.WARNING, "SQL error, probably client-caused", e);
-						return Nothing();
-					} catch (JSONException e) {
-						log.log(Level.WARNING, "Malformed input JSON", e);
-						return Nothing();
-					}
-				});
+				final var command = new LanguageUpsertCmd(modifiedLanguage, rq);
 				DatabaseCommunicator.submitCommand(command);
-				final var maybeNewpath = command.get();
+				final Optional<String> maybeNewpath;
+				try {
+					maybeNewpath = command.get();
+				} finally {
+					DataVersions.modified(modifiedLanguage, ResponseCache.LANGUAGE_TABLE);
+				}
 				if (maybeNewpath.isEmpty())
 					return new RsCWrap(HttpStatusCode.BAD_REQUEST);
+				// an "id" renames the language, which moves all its words to the new ID
+				if (!maybeNewpath.get().equals(modifiedLanguage))
+					DataVersions.modified(maybeNewpath.get());
 
 				log.fine("Successful update/insert.");
 				final var newpath = "/language/" + maybeNewpath.get();
 				return new RsCWrap(new RsWithHeader("Location", newpath), HttpStatusCode.NO_CONTENT);
+			} catch (CommandRejectedException e) {
+				return new RsUnavailable(e);
+			} catch (RqBody.TooLargeException e) {
+				log.warning(e.getMessage());
+				if (!e.isDiscarded())
+					return new RsCWrap(new RsWithHeader("Connection", "close"), HttpStatusCode.PAYLOAD_TOO_LARGE);
+				return new RsCWrap(HttpStatusCode.PAYLOAD_TOO_LARGE);
 			} catch (IOException | InterruptedException | ExecutionException e) {
 				log.log(Level.SEVERE, "Server exception", e);
 				return new RsCWrap(HttpStatusCode.INTERNAL_SERVER_ERROR);
@@ -238,10 +261,17 @@ public final class TkLanguageAPI extends CObject {
 					con.commit();
 					return Just(deleteCount);
 				});
-				final var result = DatabaseCommunicator.submitCommand(command).get();
+				final Optional<Integer> result;
+				try {
+					result = DatabaseCommunicator.submitCommand(command).get();
+				} finally {
+					DataVersions.modified(deletedLanguage, ResponseCache.LANGUAGE_TABLE);
+				}
 				if (result.isEmpty())
 					return new RsCWrap(HttpStatusCode.BAD_REQUEST);
 				return new RsCWrap(HttpStatusCode.NO_CONTENT);
+			} catch (CommandRejectedException e) {
+				return new RsUnavailable(e);
 			} catch (IOException | InterruptedException | ExecutionException e) {
 				log.log(Level.SEVERE, "Server exception", e);
 				return new RsCWrap(HttpStatusCode.INTERNAL_SERVER_ERROR);
@@ -22,8 +22,6 @@ import java.util.logging.Logger;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
 import org.takes.Request;
 import org.takes.Response;
 import org.takes.Take;
@@ -32,13 +30,14 @@ import org.takes.rs.RsEmpty;
 import org.takes.rs.RsWithHeader;
 
 import klfr.conlangdb.CObject;
+import klfr.conlangdb.database.CommandPriority;
+import klfr.conlangdb.database.CommandRejectedException;
 import klfr.conlangdb.database.DatabaseCommand;
 import klfr.conlangdb.database.DatabaseCommunicator;
 import klfr.conlangdb.database.SortOrder;
 import klfr.conlangdb.database.commands.EmptyCmd;
 import klfr.conlangdb.http.util.HttpStatusCode;
 import klfr.conlangdb.http.util.RsJSON;
-import klfr.conlangdb.util.Range;
 
 /**
  * An API template which outputs a data list in JSON format to the requestor.
@@ -127,7 +126,8 @@ public class TkListAPI extends CObject implements Take {
 			return (fields, order, oname, qpms, offset, limit) -> {
 				final var query = builder.execute(fields, order, oname, qpms, offset, limit);
 				log.fine("Resulting query: %s".formatted(query));
-				return DatabaseCommand.from(con -> {
+				// lists are cached and sent with ETags, so they must not come from a lagging replica
+				return DatabaseCommand.currentRead(CommandPriority.Normal, con -> {
 					final var stmt = con.createStatement();
 					return Optional.of(stmt.executeQuery(query));
 				});
@@ -247,6 +247,20 @@ public class TkListAPI extends CObject implements Take {
 
 			log.fine("Query params: fields=%s, order=%s %s, limit=%d, offset=%d".formatted(fields, ordering, order,
 					limit, offset));
+
+			// answer from the client's or the server's cache if possible
+			final var tags = cacheTags(queryParams);
+			final var etag = DataVersions.etag(tags.stream().sorted().toArray(String[]::new));
+			if (DataVersions.notModified(request, etag))
+				return DataVersions.notModifiedResponse(etag);
+			final var cacheKey = f("%s?fields=%s&order=%s %s&limit=%d&offset=%d&from=%s&to=%s",
+					queryParams.href().path(), new TreeSet<>(fields), ordering, order, limit, offset,
+					queryParams.single("from", ""), queryParams.single("to", ""));
+			final var cached = ResponseCache.get(cacheKey);
+			if (cached.isPresent())
+				return respond(cached.get(), etag);
+			final var cacheGeneration = ResponseCache.generation();
+
 			final var command = builder.execute(fields, order, ordering, queryParams, offset, limit);
 
 			final var maybeRset = DatabaseCommunicator.submitCommand(command).get();
@@ -254,30 +268,20 @@ public class TkListAPI extends CObject implements Take {
 				return new RsCWrap(HttpStatusCode.INTERNAL_SERVER_ERROR);
 			final var rset = maybeRset.get();
 
-			final var meta = rset.getMetaData();
-			final JSONArray arr = new JSONArray();
-			final var columns = new Range(1, meta.getColumnCount() + 1);
-			while (rset.next()) {
-				final var jsonObj = new JSONObject();
-				for (int i : columns) {
-					// The result set will convert its data to normal java data types such as
-					// Integer, Boolean and String, JSONObject's put(Object) detects primitive
-					// wrapper types (Integer, Float etc.) as well as complicated objects and
-					// represents them accordingly. The only exception is the SQL array type, which
-					// is more like a pointer to the server data than anything. The utility method
-					// detects SQL arrays and retrieves all of their data into a simple
-					// List<Object>.
-					final var data = DatabaseCommunicator.javaType(rset.getObject(i));
-					jsonObj.put(meta.getColumnName(i), data.orElse(null));
-				}
-				arr.put(jsonObj);
-			}
+			// The rows are buffered column by column and written to JSON directly, which
+			// avoids an object and boxed values per row. SQL arrays, which are more like
+			// pointers to the server data, are retrieved entirely while buffering.
+			final var rows = new ColumnarRows(rset, limit);
 			rset.close();
 
-			return new RsWithHeader(new RsCWrap(new RsJSON(arr)), "Cache-Control", "public, max-age=10");
+			final var json = rows.toJSON();
+			ResponseCache.put(cacheKey, tags, json, cacheGeneration);
+			return respond(json, etag);
 		} catch (IllegalArgumentException e1) {
 			log.log(Level.WARNING, "Illegal arguments to data list API.", e1);
 			return new RsCWrap(new RsEmpty(), HttpStatusCode.BAD_REQUEST);
+		} catch (CommandRejectedException e) {
+			return new RsUnavailable(e);
 		} catch (ExecutionException | SQLException e2) {
 			log.log(Level.SEVERE, "Database processing exception in data list API.", e2);
 			return new RsCWrap(new RsEmpty(), HttpStatusCode.INTERNAL_SERVER_ERROR);
@@ -290,6 +294,30 @@ public class TkListAPI extends CObject implements Take {
 		}
 	}
 
+	/**
+	 * Creates the response from the JSON list and its ETag.
+	 */
+	private static Response respond(final byte[] json, final String etag) {
+		return new RsWithHeader(new RsWithHeader(new RsCWrap(new RsJSON(json)), "Cache-Control", "public, max-age=10"),
+				"ETag", etag);
+	}
+
+	/**
+	 * Returns the cache tags of the list, i.e. the languages whose modification
+	 * invalidates the list. These are the languages given in the standard "from"
+	 * and "to" parameters. Every list is also invalidated when any language
+	 * changes, as languages are rarely modified and their deletion affects all
+	 * lists that refer to them.
+	 */
+	private static Set<String> cacheTags(final RqHref.Smart queryParams) throws IOException {
+		final var tags = new HashSet<String>();
+		tags.add(ResponseCache.LANGUAGE_TABLE);
+		for (final var language : List.of(queryParams.single("from", ""), queryParams.single("to", "")))
+			if (!language.isBlank())
+				tags.add(language);
+		return tags;
+	}
+
 	// #region Standard query builder implementations
 
 	private static final Map<String, String> languageFieldMap = new TreeMap<>();
@@ -344,7 +372,9 @@ public class TkListAPI extends CObject implements Take {
 									.collect(Collectors.toSet())),
 					properOrdering, order.sql, (limit >= 0 ? ("LIMIT " + limit) : ""),
 					(offset >= 0 ? ("OFFSET " + offset) : ""));
-			return DatabaseCommand.from(con -> {
+			// unpaginated word lists may be very long, so they should not hold up other
+			// queries
+			return DatabaseCommand.currentRead(limit >= 0 ? CommandPriority.Normal : CommandPriority.Bulk, con -> {
 				try {
 					final var stmt = con.prepareStatement(query);
 					var paramIdx = 1;
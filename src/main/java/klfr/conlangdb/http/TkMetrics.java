@@ -0,0 +1,30 @@
+package klfr.conlangdb.http;
+
+import org.takes.Request;
+import org.takes.Response;
+import org.takes.Take;
+import org.takes.rs.RsWithHeader;
+
+import klfr.conlangdb.CObject;
+import klfr.conlangdb.http.util.RsUnicodeText;
+import klfr.conlangdb.util.Metrics;
+
+/**
+ * Exports the server's {@link Metrics} in the Prometheus text format.
+ */
+public class TkMetrics extends CObject implements Take {
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	public Response act(final Request request) {
+		return new RsWithHeader(
+				new RsWithHeader(new RsCWrap(new RsUnicodeText(Metrics.export())), "Content-Type",
+						"text/plain; version=0.0.4; charset=utf-8"),
+				"Cache-Control", "no-store");
+	}
+
+	@Override
+	public CObject clone() {
+		return new TkMetrics();
+	}
+}
@@ -16,10 +16,8 @@ import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.takes.Request;
@@ -31,21 +29,26 @@ import org.takes.rs.RsText;
 import org.takes.rs.RsWithHeader;
 
 import klfr.conlangdb.CObject;
+import klfr.conlangdb.database.CommandPriority;
+import klfr.conlangdb.database.CommandRejectedException;
 import klfr.conlangdb.database.DatabaseCommand;
 import klfr.conlangdb.database.DatabaseCommunicator;
 import klfr.conlangdb.database.commands.SQLCmd;
 import klfr.conlangdb.database.commands.WordAttributeDataCmd;
 import klfr.conlangdb.http.util.HttpStatusCode;
+import klfr.conlangdb.http.util.JSONWriter;
 import klfr.conlangdb.http.util.RqBody;
 import klfr.conlangdb.http.util.RsJSON;
 import klfr.conlangdb.util.Range;
-import klfr.conlangdb.util.StringStreamUtil;
 
 public class TkSingleWordAPI extends CObject {
 	private static final long serialVersionUID = 1L;
 
 	public static final Pattern singleWordAPIPtn = Pattern.compile("/word/(\\S{1,3})/(.+)");
 
+	private static final JSONWriter.Key translationsKey = new JSONWriter.Key("translations"),
+			attributesKey = new JSONWriter.Key("attributes");
+
 	/**
 	 * Command that retrieves the word ID belonging to a language id - romanized
 	 * word text - pair.
@@ -85,6 +88,16 @@ public class TkSingleWordAPI extends CObject {
 			return index == 0 ? (Optional<U>) Just(language) : index == 1 ? (Optional<U>) Just(romanized) : Nothing();
 		}
 
+		@Override
+		public CommandPriority getPriority() {
+			return CommandPriority.Interactive;
+		}
+
+		@Override
+		public boolean isReadOnly() {
+			return true;
+		}
+
 		@Override
 		public DatabaseCommand<Long> clone() {
 			return new WordIdFinderCmd(language, romanized);
@@ -92,6 +105,153 @@ public class TkSingleWordAPI extends CObject {
 
 	}
 
+	/**
+	 * Command that inserts a word or, if a word with the same language id -
+	 * romanized word text pair already exists, updates it. This is done with a
+	 * single {@code INSERT ... ON CONFLICT DO UPDATE} statement, so no prior word
+	 * id lookup is necessary. Only the keys present in the word data are changed
+	 * on update. The command returns a result set with the new romanized text and
+	 * language id of the word, which together form the word's new location.
+	 */
+	public static class WordUpsertCmd extends DatabaseCommand<ResultSet> {
+		private static final long serialVersionUID = 1L;
+
+		public final String language;
+		public final String romanized;
+		public final JSONObject data;
+
+		/**
+		 * @param language  The language id of the word, as given in the request path.
+		 * @param romanized The romanized word text, as given in the request path.
+		 * @param data      The word data from the request body. Recognized keys are
+		 *                  "text", "romanized" and "language".
+		 */
+		public WordUpsertCmd(final String language, final String romanized, final JSONObject data) {
+			super(con -> {
+				try {
+					// columns that are only changed if the client specified them
+					final var updatedColumns = new LinkedList<String>();
+					if (data.has("text"))
+						updatedColumns.add("native=excluded.native");
+					if (data.has("romanized"))
+						updatedColumns.add("romanized=?");
+					if (data.has("language"))
+						updatedColumns.add("lid=?");
+					// the word must always be returned, so an empty update is replaced by a no-op
+					if (updatedColumns.isEmpty())
+						updatedColumns.add("romanized=tword.romanized");
+
+					final var upsertor = con.prepareStatement(new StringBuilder(
+							"insert into tword (native, romanized, lid) values (?, ?, ?) on conflict (lid, romanized) do update set ")
+									.append(String.join(", ", updatedColumns)).append(" returning romanized, lid;")
+									.toString());
+					upsertor.setString(1, data.optString("text", null));
+					upsertor.setString(2, romanized);
+					upsertor.setString(3, language);
+					var counter = 4;
+					for (final var key : List.of("romanized", "language"))
+						if (data.has(key))
+							upsertor.setString(counter++, data.getString(key));
+					log.fine(() -> f("DATABASE Upsert word: %s", upsertor));
+
+					// execute and return
+					return Just(upsertor.executeQuery());
+				} catch (SQLException e) {
+					log.log(Level.WARNING, "SQL error, probably client-caused", e);
+					return Nothing();
+				} catch (JSONException e) {
+					log.log(Level.WARNING, "Malformed input JSON", e);
+					return Nothing();
+				}
+			});
+			this.language = language;
+			this.romanized = romanized;
+			this.data = data;
+		}
+
+		@Override
+		public Stream<Object> getArguments() {
+			return Stream.of(language, romanized, data);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public <U> Optional<U> getArgument(int index) {
+			switch (index) {
+				case 0:
+					return (Optional<U>) Just(language);
+				case 1:
+					return (Optional<U>) Just(romanized);
+				case 2:
+					return (Optional<U>) Just(data);
+			}
+			return Nothing();
+		}
+
+		/** Word upserts are run in write batches if the executor supports it. */
+		@Override
+		public boolean isBatchable() {
+			return true;
+		}
+
+		@Override
+		public DatabaseCommand<ResultSet> clone() {
+			return new WordUpsertCmd(language, romanized, data);
+		}
+
+	}
+
+	/**
+	 * Command that deletes the word belonging to a language id - romanized word
+	 * text pair. It returns the number of deleted words, which is zero if the word
+	 * did not exist.
+	 */
+	public static class WordDeleteCmd extends DatabaseCommand<Integer> {
+		private static final long serialVersionUID = 1L;
+
+		public final String language;
+		public final String romanized;
+
+		public WordDeleteCmd(final String language, final String romanized) {
+			super(con -> {
+				try {
+					final var stmt = con.prepareStatement("delete from tword where lid=? and romanized=?;");
+					stmt.setString(1, language);
+					stmt.setString(2, romanized);
+					return Just(stmt.executeUpdate());
+				} catch (SQLException e) {
+					log.log(Level.SEVERE, "SQL exception while deleting word", e);
+					return Nothing();
+				}
+			});
+			this.language = language;
+			this.romanized = romanized;
+		}
+
+		@Override
+		public Stream<Object> getArguments() {
+			return Stream.of(language, romanized);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public <U> Optional<U> getArgument(int index) {
+			return index == 0 ? (Optional<U>) Just(language) : index == 1 ? (Optional<U>) Just(romanized) : Nothing();
+		}
+
+		/** Word deletions are run in write batches if the executor supports it. */
+		@Override
+		public boolean isBatchable() {
+			return true;
+		}
+
+		@Override
+		public DatabaseCommand<Integer> clone() {
+			return new WordDeleteCmd(language, romanized);
+		}
+
+	}
+
 	public static class Get extends CObject implements Take {
 		private static final Logger log = Logger.getLogger(Get.class.getCanonicalName());
 		private static final long serialVersionUID = 1L;
@@ -106,9 +266,13 @@ public class TkSingleWordAPI extends CObject {
 				final String language = m.group(1), word = m.group(2);
 				log.fine(() -> f("lang=%s word=%s", language, word));
 				final String translationLanguage = new RqHref.Smart(rq).single("to", "");
+				final var etag = translationLanguage.isEmpty() ? DataVersions.etag(language)
+						: DataVersions.etag(language, translationLanguage);
+				if (DataVersions.notModified(rq, etag))
+					return DataVersions.notModifiedResponse(etag);
 
-				// command
-				final var mainCmd = DatabaseCommand.from(con -> {
+				// command; the response carries the ETag, so it must not come from a lagging replica
+				final var mainCmd = DatabaseCommand.currentRead(CommandPriority.Interactive, con -> {
 					final var stmt = con.prepareStatement("select romanized, native as \"text\", id, "
 							+ "ARRAY(select definition from tdefinition where TWord.ID=TDefinition.WID) as definitions "
 							+ "from tword where lid=? and romanized=?;");
@@ -132,7 +296,7 @@ public class TkSingleWordAPI extends CObject {
 				final var cmds = new LinkedList<DatabaseCommand<ResultSet>>();
 				// submit other commands that depend on word id.
 				if (!translationLanguage.isEmpty()) {
-					final var translationsCmd = DatabaseCommand.from(con -> {
+					final var translationsCmd = DatabaseCommand.currentRead(CommandPriority.Interactive, con -> {
 						final var stmt = con.prepareStatement(
 								"select romanized, native as text, RelTranslation.description as description from TWord translation "
 										+ "join RelTranslation on (translation.ID=RelTranslation.WIDOne or translation.ID=RelTranslation.WIDTwo) "
@@ -150,49 +314,61 @@ public class TkSingleWordAPI extends CObject {
 				DatabaseCommunicator.submitCommand(attributeCmd);
 				cmds.add(attributeCmd);
 
-				// convert main data to JSON
-				final var obj = new JSONObject();
-				for (var i : new Range(1, rset.getMetaData().getColumnCount()))
-					obj.put(rset.getMetaData().getColumnLabel(i),
-							DatabaseCommunicator.javaType(rset.getObject(i)).orElse(null));
-
-				// convert translation and attribute data to JSON
-				final List<JSONArray> subArrays = cmds.stream().map(subCmd -> {
-					try {
-						final var maybeSubRset = subCmd.get();
-						if (maybeSubRset.isEmpty())
-							return new RsCWrap(HttpStatusCode.INTERNAL_SERVER_ERROR);
-						final var subRset = maybeSubRset.get();
-						final JSONArray subArr = new JSONArray();
-						while (subRset.next()) {
-							final var tobj = new JSONObject();
-							for (var i : new Range(1, subRset.getMetaData().getColumnCount()))
-								tobj.put(subRset.getMetaData().getColumnLabel(i),
-										DatabaseCommunicator.javaType(subRset.getObject(i)).orElse(null));
-							subArr.put(tobj);
-						}
-						log.finer(() -> subArr.toString());
-						return subArr;
-					} catch (JSONException | InterruptedException | ExecutionException | SQLException e) {
-						log.log(Level.SEVERE, "", e);
-						return new JSONArray();
-					}
-				})
-						// Note that this map is technically pointless, but Java cannot infer the return
-						// type of the above lambda for some reason.
-						.map(x -> (JSONArray) x).collect(Collectors.<JSONArray>toList());
+				// write main data as JSON
+				final var out = new JSONWriter().beginObject();
+				writeColumns(rset, out);
+
+				// write translation and attribute data as JSON
 				if (!translationLanguage.isEmpty())
-					obj.put("translations", subArrays.remove(0));
-				obj.put("attributes", subArrays.get(0));
+					writeRows(cmds.remove(0), out.key(translationsKey));
+				writeRows(cmds.remove(0), out.key(attributesKey));
+				out.endObject();
 
 				// send response
-				return new RsCWrap(new RsJSON(obj));
+				return new RsWithHeader(new RsCWrap(new RsJSON(out)), "ETag", etag);
+			} catch (CommandRejectedException e) {
+				return new RsUnavailable(e);
 			} catch (IOException | InterruptedException | ExecutionException | SQLException e) {
 				log.log(Level.SEVERE, "", e);
 				return new RsCWrap(HttpStatusCode.INTERNAL_SERVER_ERROR);
 			}
 		}
 
+		/**
+		 * Writes the columns of the result set's current row as members of the current
+		 * JSON object. Null values are left out.
+		 */
+		private static void writeColumns(final ResultSet rset, final JSONWriter out) throws SQLException {
+			final var meta = rset.getMetaData();
+			for (var i : new Range(1, meta.getColumnCount())) {
+				final var data = DatabaseCommunicator.javaType(rset.getObject(i));
+				if (data.isPresent())
+					out.key(meta.getColumnLabel(i)).value(data.get());
+			}
+		}
+
+		/**
+		 * Writes the rows that a sub-command returned as a JSON array of objects. If
+		 * the command failed, the array is empty.
+		 */
+		private static void writeRows(final DatabaseCommand<ResultSet> subCmd, final JSONWriter out) {
+			out.beginArray();
+			try {
+				final var maybeSubRset = subCmd.get();
+				if (maybeSubRset.isPresent()) {
+					final var subRset = maybeSubRset.get();
+					while (subRset.next()) {
+						out.beginObject();
+						writeColumns(subRset, out);
+						out.endObject();
+					}
+				}
+			} catch (InterruptedException | ExecutionException | SQLException e) {
+				log.log(Level.SEVERE, "", e);
+			}
+			out.endArray();
+		}
+
 		@Override
 		public CObject clone() {
 			return new Get();
@@ -206,7 +382,8 @@ public class TkSingleWordAPI extends CObject {
 		@Override
 		public Response act(Request request) {
 			try {
-				request = new RqBody(request);
+				final var body = new RqBody(request);
+				request = body;
 
 				// get word and language data
 				final var m = singleWordAPIPtn.matcher(new RqHref.Base(request).href().path());
@@ -215,72 +392,41 @@ public class TkSingleWordAPI extends CObject {
 				final String language = m.group(1), word = m.group(2);
 				log.fine(() -> f("lang=%s word=%s", language, word));
 
-				// parse body
-				final var charset = new RqHeaders.Smart(request).single("Accept-Charset", "utf-8");
-				final var bodyS = StringStreamUtil.stringify(request.body(), charset);
-				final var rq = new JSONObject(bodyS);
-
-				// try to get word ID
-				final var wordIdFinder = new WordIdFinderCmd(language, word);
-				DatabaseCommunicator.submitCommand(wordIdFinder);
-				final var mWordId = wordIdFinder.get();
-
-				HttpStatusCode scode;
-				DatabaseCommand<ResultSet> cmd;
-				if (mWordId.isEmpty()) {
-					// no word exists: execute INSERT
-					cmd = DatabaseCommand.from(con -> {
-						con.setAutoCommit(true);
-						final var insertor = con.prepareStatement(
-								"insert into tword (native, romanized, lid) values (?, ?, ?) returning romanized, lid, id;");
-						insertor.setString(1, rq.optString("text", null));
-						insertor.setString(2, word);
-						insertor.setString(3, language);
-						log.fine(() -> f("DATABASE Add word: %s", insertor));
-
-						// execute and return
-						final var rset = insertor.executeQuery();
-						return Just(rset);
-					});
-					scode = HttpStatusCode.CREATED;
-				} else {
-					// word exists: execute UPDATE on word id
-					final var wordId = mWordId.get();
-					log.finer(() -> f("Word id=%s", wordId));
-
-					cmd = DatabaseCommand.from(con -> {
-						con.setAutoCommit(true);
-						final var updator = con.prepareStatement(
-								new StringBuilder("update tword set ").append(rq.has("text") ? "native=?" : "")
-										.append(rq.has("romanized") ? ", romanized=?" : "")
-										.append(rq.has("language") ? ", lid=?" : "")
-										.append(" where id=? returning romanized, lid;").toString());
-						var counter = 1;
-						for (final var key : List.of("text", "romanized", "language"))
-							if (rq.has(key))
-								updator.setString(counter++, rq.getString(key));
-						updator.setLong(counter, wordId);
-						log.fine(() -> f("DATABASE Modify word: %s", updator));
-
-						// execute and return
-						final var rset = updator.executeQuery();
-						return Just(rset);
-					});
-					scode = HttpStatusCode.CREATED;
-				}
+				// parse body while it is read
+				final var charset = Charset.forName(new RqHeaders.Smart(request).single("Accept-Charset", "utf-8"));
+				final var rq = body.json(charset);
+				// the word may be moved to another language, whose data is modified as well
+				final var targetLanguage = rq.optString("language", language);
 
+				// insert or update the word in a single statement
+				final var cmd = new WordUpsertCmd(language, word, rq);
 				DatabaseCommunicator.submitCommand(cmd);
 
 				// construct location from command return value and exit
-				final ResultSet newLocationRset = cmd.get().orElseThrow(() -> new JSONException("fake"));
+				final ResultSet newLocationRset;
+				try {
+					newLocationRset = cmd.get().orElseThrow(() -> new JSONException("fake"));
+				} finally {
+					if (targetLanguage.equals(language))
+						DataVersions.modified(language);
+					else
+						DataVersions.modified(language, targetLanguage);
+				}
 				if (!newLocationRset.next())
 					return new RsCWrap(HttpStatusCode.BAD_REQUEST);
 				return new RsCWrap(
 						new RsWithHeader("Location", String.format("/word/%s/%s",
 								URLEncoder.encode(newLocationRset.getString("lid"), Charset.forName("utf-8")),
 								URLEncoder.encode(newLocationRset.getString("romanized"), Charset.forName("utf-8")))),
-						scode);
-
+						HttpStatusCode.CREATED);
+
+			} catch (CommandRejectedException e) {
+				return new RsUnavailable(e);
+			} catch (RqBody.TooLargeException e) {
+				log.warning(e.getMessage());
+				if (!e.isDiscarded())
+					return new RsCWrap(new RsWithHeader("Connection", "close"), HttpStatusCode.PAYLOAD_TOO_LARGE);
+				return new RsCWrap(HttpStatusCode.PAYLOAD_TOO_LARGE);
 			} catch (IOException | ExecutionException | InterruptedException e) {
 				return new RsCWrap(HttpStatusCode.INTERNAL_SERVER_ERROR);
 			} catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
@@ -321,12 +467,12 @@ public class TkSingleWordAPI extends CObject {
 				final String language = m.group(1), word = m.group(2);
 				log.fine(() -> f("lang=%s word=%s", language, word));
 
-				final var delcount = DatabaseCommunicator.submitCommand(DatabaseCommand.from(con -> {
-					final var stmt = con.prepareStatement("delete from tword where lid=? and romanized=?;");
-					stmt.setString(1, language);
-					stmt.setString(2, word);
-					return Just(stmt.executeUpdate());
-				})).get();
+				final Optional<Integer> delcount;
+				try {
+					delcount = DatabaseCommunicator.submitCommand(new WordDeleteCmd(language, word)).get();
+				} finally {
+					DataVersions.modified(language);
+				}
 
 				if (delcount.isEmpty())
 					return new RsCWrap(HttpStatusCode.INTERNAL_SERVER_ERROR);
@@ -334,6 +480,8 @@ public class TkSingleWordAPI extends CObject {
 					return new RsCWrap(HttpStatusCode.NOT_FOUND);
 				return new RsCWrap(HttpStatusCode.NO_CONTENT);
 
+			} catch (CommandRejectedException e) {
+				return new RsUnavailable(e);
 			} catch (IOException | InterruptedException | ExecutionException e) {
 				return new RsCWrap(HttpStatusCode.INTERNAL_SERVER_ERROR);
 			}
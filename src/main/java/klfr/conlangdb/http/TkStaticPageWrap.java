@@ -12,7 +12,6 @@ import org.takes.Request;
 import org.takes.Response;
 import org.takes.Take;
 import org.takes.rq.RqHeaders;
-import org.takes.rs.RsGzip;
 import org.takes.rs.RsWithHeaders;
 import org.takes.rs.RsWithType;
 
@@ -93,9 +92,10 @@ public class TkStaticPageWrap extends CObject implements Take {
 					CResources.openBinary("html/postbody.html").get(),
 					StringStreamUtil.streamify("</section></body></html>")));
 			log.finer(body);
-			return new RsGzip(new RsWithHeaders(
+			// compressed by the server's TkCompressed if the client accepts it
+			return new RsWithHeaders(
 					new RsWithType(new RsCWrap(new RsUnicodeText(body)), "text/html", Charset.forName("utf-8")),
-					StringStreamUtil.sequencify(prepared.head(), headPrepared.head())));
+					StringStreamUtil.sequencify(prepared.head(), headPrepared.head()));
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
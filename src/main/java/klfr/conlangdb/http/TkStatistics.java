@@ -1,7 +1,9 @@
 package klfr.conlangdb.http;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -10,7 +12,6 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.json.JSONException;
-import org.json.JSONObject;
 import org.takes.Request;
 import org.takes.Response;
 import org.takes.Take;
@@ -19,7 +20,10 @@ import org.takes.rs.RsEmpty;
 import org.takes.rs.RsWithHeader;
 
 import klfr.conlangdb.http.util.HttpStatusCode;
+import klfr.conlangdb.http.util.JSONWriter;
 import klfr.conlangdb.http.util.RsJSON;
+import klfr.conlangdb.database.CommandPriority;
+import klfr.conlangdb.database.CommandRejectedException;
 import klfr.conlangdb.database.DatabaseCommunicator;
 import klfr.conlangdb.database.commands.StatisticsCmd;
 
@@ -27,9 +31,26 @@ public class TkStatistics implements Take {
 
 	private static final Logger log = Logger.getLogger(TkStatistics.class.getCanonicalName());
 
+	private static final JSONWriter.Key queueTimeKey = new JSONWriter.Key("queue-time"),
+			queueTimeMaxKey = new JSONWriter.Key("queue-time-max"),
+			queueRejectedKey = new JSONWriter.Key("queue-rejected");
+	/** The keys of the queue statistics groups, the lower-case priority names. */
+	private static final Map<CommandPriority, JSONWriter.Key> groupKeys = new EnumMap<>(CommandPriority.class);
+	static {
+		for (final var priority : CommandPriority.values())
+			groupKeys.put(priority, new JSONWriter.Key(priority.name().toLowerCase()));
+	}
+
 	@Override
 	public Response act(Request request) {
 		try {
+			// the queue statistics change all the time, the database statistics only with
+			// modifications
+			final var cacheable = new RqHref.Smart(request).single("queue-time", "").isBlank();
+			final var etag = DataVersions.globalEtag();
+			if (cacheable && DataVersions.notModified(request, etag))
+				return DataVersions.notModifiedResponse(etag);
+
 			// convert http query params -> java set-map
 			final var requestedStatistics = requestParamsToMap(request);
 
@@ -43,9 +64,15 @@ public class TkStatistics implements Take {
 
 			// convert java set-map -> json
 			final var results = resultMaybe.get();
-			final var responseObject = responseToJSON(results);
+			final var out = new JSONWriter().beginObject();
+			writeResults(results, out);
+			writeQueueStatistics(request, out);
 			// return the response
-			return new RsWithHeader(new RsCWrap(new RsJSON(responseObject)), "Cache-Control", "public, max-age=60");
+			final var response = new RsWithHeader(new RsCWrap(new RsJSON(out.endObject())), "Cache-Control",
+					"public, max-age=60");
+			return cacheable ? new RsWithHeader(response, "ETag", etag) : response;
+		} catch (CommandRejectedException e) {
+			return new RsUnavailable(e);
 		} catch (JSONException e) {
 			log.log(Level.WARNING, "JSON exception in statistics", e);
 			return new RsCWrap(new RsEmpty(), HttpStatusCode.BAD_REQUEST);
@@ -110,15 +137,51 @@ public class TkStatistics implements Take {
 		return requestedStatistics;
 	}
 
-	private static JSONObject responseToJSON(final Map<String, Map<String, Object>> results) {
-		final var responseObject = new JSONObject();
-		// create response json object
+	/**
+	 * Writes the queue time statistics of the database command queue to the
+	 * response object, if they were requested with the "queue-time" parameter;
+	 * otherwise, none of their keys are written. The groups of these statistics are
+	 * the priority classes of the commands, e.g. "interactive", or "all" for all
+	 * classes. For every class, the average and maximum queue time in milliseconds
+	 * are returned under the "queue-time" and "queue-time-max" keys, and the number
+	 * of commands that were rejected because of overload under the
+	 * "queue-rejected" key.
+	 * 
+	 * @param request The request with the query parameters.
+	 * @param out     The writer of the JSON response object, in which the
+	 *                statistics are written as members.
+	 * @throws IOException
+	 */
+	private static void writeQueueStatistics(final Request request, final JSONWriter out) throws IOException {
+		final var parameter = new RqHref.Smart(request).single("queue-time", "");
+		if (parameter.isBlank())
+			return;
+		final var requested = Arrays.asList(parameter.split("\\,"));
+		final var queueStatistics = DatabaseCommunicator.getQueueStatistics();
+		final var groups = new ArrayList<CommandPriority>();
+		for (final var priority : CommandPriority.values())
+			if (requested.contains(groupKeys.get(priority).toString()) || requested.contains("all"))
+				groups.add(priority);
+
+		out.key(queueTimeKey).beginObject();
+		for (final var priority : groups)
+			out.key(groupKeys.get(priority)).value(queueStatistics.averageMillis(priority));
+		out.endObject().key(queueTimeMaxKey).beginObject();
+		for (final var priority : groups)
+			out.key(groupKeys.get(priority)).value(queueStatistics.maximumMillis(priority));
+		out.endObject().key(queueRejectedKey).beginObject();
+		for (final var priority : groups)
+			out.key(groupKeys.get(priority)).value(queueStatistics.rejections(priority));
+		out.endObject();
+	}
+
+	private static void writeResults(final Map<String, Map<String, Object>> results, final JSONWriter out) {
 		for (final var statistic : results.entrySet()) {
-			final var json = new JSONObject();
+			out.key(statistic.getKey()).beginObject();
 			for (final var category : statistic.getValue().entrySet())
-				json.put(category.getKey(), category.getValue());
-			responseObject.put(statistic.getKey(), json);
+				if (category.getValue() != null)
+					out.key(category.getKey()).value(category.getValue());
+			out.endObject();
 		}
-		return responseObject;
 	}
 }
@@ -0,0 +1,191 @@
+package klfr.conlangdb.http.util;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import klfr.conlangdb.CObject;
+
+/**
+ * Access log that records every HTTP request into a preallocated ring buffer,
+ * which is drained by a background thread that writes the requests in the
+ * Common Log Format, extended by the request latency in microseconds:<br>
+ * {@code 127.0.0.1 - - [18/Oct/2026:13:55:36 +0200] "GET /word/list HTTP/1.1" 200 2326 1523}<br>
+ * <br>
+ * Recording a request does not allocate and only takes a short lock, so that
+ * the HTTP threads are not slowed down by logging. If the writer does not keep
+ * up, requests are dropped and the number of dropped requests is logged.
+ */
+public class AccessLog extends CObject {
+	private static final long serialVersionUID = 1L;
+	private static final Logger log = Logger.getLogger(AccessLog.class.getCanonicalName());
+
+	/** Number of requests that the ring buffer holds, a power of two. */
+	private static final int CAPACITY = 4096;
+	/** Time in milliseconds between two drains of the ring buffer. */
+	private static final long DRAIN_INTERVAL_MILLIS = 200;
+
+	private static final DateTimeFormatter timeFormat = DateTimeFormatter
+			.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.US).withZone(ZoneId.systemDefault());
+
+	// the ring buffer, one array per field; guarded by this
+	private final String[] requestLines = new String[CAPACITY];
+	private final String[] remoteHeaders = new String[CAPACITY];
+	private final int[] statuses = new int[CAPACITY];
+	private final long[] sizes = new long[CAPACITY];
+	private final long[] times = new long[CAPACITY];
+	private final long[] latencies = new long[CAPACITY];
+	/** Number of requests recorded so far. */
+	private long written = 0;
+	/** Number of requests drained so far. */
+	private long read = 0;
+	/** Number of requests dropped since the last drain. */
+	private long dropped = 0;
+
+	private final String target;
+	private transient Writer out;
+	private transient Thread writer;
+
+	/**
+	 * Opens the access log. The writer thread is started by {@link #start()}.
+	 *
+	 * @param target The file that the log is appended to, or "-" for the standard
+	 *               output.
+	 */
+	public AccessLog(final String target) {
+		this.target = target;
+	}
+
+	/**
+	 * Opens the log file and starts the writer thread.
+	 *
+	 * @throws IOException if the log file cannot be opened.
+	 */
+	public synchronized void start() throws IOException {
+		if (writer != null)
+			return;
+		out = new BufferedWriter(new OutputStreamWriter(
+				target.equals("-") ? System.out : new FileOutputStream(target, true), StandardCharsets.UTF_8));
+		writer = new Thread(this::drainLoop, "AccessLg");
+		writer.setDaemon(true);
+		writer.start();
+		log.config(f("Access log to %s", target.equals("-") ? "standard output" : target));
+	}
+
+	/**
+	 * Records a request.
+	 *
+	 * @param requestLine  The HTTP request line, such as
+	 *                     {@code GET /word/list HTTP/1.1}.
+	 * @param remoteHeader The header line that contains the remote address, or
+	 *                     null if it is not known.
+	 * @param status       The response status code, or 0 if no response was sent.
+	 * @param size         The number of bytes of the response body.
+	 * @param time         The start time of the request, in milliseconds since the
+	 *                     epoch.
+	 * @param latency      The time that the request took, in nanoseconds.
+	 */
+	public synchronized void record(final String requestLine, final String remoteHeader, final int status,
+			final long size, final long time, final long latency) {
+		if (written - read >= CAPACITY) {
+			++dropped;
+			return;
+		}
+		final var slot = (int) (written & (CAPACITY - 1));
+		requestLines[slot] = requestLine;
+		remoteHeaders[slot] = remoteHeader;
+		statuses[slot] = status;
+		sizes[slot] = size;
+		times[slot] = time;
+		latencies[slot] = latency;
+		++written;
+	}
+
+	private void drainLoop() {
+		// the writer's own copy of the ring buffer, so that formatting happens outside
+		// the lock
+		final var lines = new String[CAPACITY];
+		final var remotes = new String[CAPACITY];
+		final var statusCopy = new int[CAPACITY];
+		final var sizeCopy = new long[CAPACITY];
+		final var timeCopy = new long[CAPACITY];
+		final var latencyCopy = new long[CAPACITY];
+		final var line = new StringBuilder(256);
+		try {
+			while (true) {
+				Thread.sleep(DRAIN_INTERVAL_MILLIS);
+				final int count;
+				final long droppedCount;
+				synchronized (this) {
+					count = (int) (written - read);
+					for (int i = 0; i < count; ++i) {
+						final var slot = (int) ((read + i) & (CAPACITY - 1));
+						lines[i] = requestLines[slot];
+						remotes[i] = remoteHeaders[slot];
+						statusCopy[i] = statuses[slot];
+						sizeCopy[i] = sizes[slot];
+						timeCopy[i] = times[slot];
+						latencyCopy[i] = latencies[slot];
+						requestLines[slot] = remoteHeaders[slot] = null;
+					}
+					read = written;
+					droppedCount = dropped;
+					dropped = 0;
+				}
+				if (droppedCount > 0)
+					log.warning(f("Access log dropped %d requests", droppedCount));
+				if (count == 0)
+					continue;
+				try {
+					for (int i = 0; i < count; ++i) {
+						line.setLength(0);
+						format(line, lines[i], remotes[i], statusCopy[i], sizeCopy[i], timeCopy[i], latencyCopy[i]);
+						out.append(line);
+						lines[i] = remotes[i] = null;
+					}
+					out.flush();
+				} catch (final IOException e) {
+					log.log(Level.WARNING, "Writing the access log failed.", e);
+				}
+			}
+		} catch (final InterruptedException e) {
+			log.warning("Access log writer interrupted");
+		}
+	}
+
+	/**
+	 * Formats a request in the Common Log Format with latency.
+	 */
+	private static void format(final StringBuilder line, final String requestLine, final String remoteHeader,
+			final int status, final long size, final long time, final long latency) {
+		line.append(remoteHeader == null ? "-" : remoteHeader.substring(remoteHeader.indexOf(':') + 1).strip())
+				.append(" - - [");
+		timeFormat.formatTo(Instant.ofEpochMilli(time), line);
+		line.append("] \"").append(requestLine).append("\" ");
+		if (status > 0)
+			line.append(status);
+		else
+			line.append('-');
+		line.append(' ');
+		if (size > 0)
+			line.append(size);
+		else
+			line.append('-');
+		line.append(' ').append(TimeUnit.NANOSECONDS.toMicros(latency)).append('\n');
+	}
+
+	@Override
+	public CObject clone() {
+		return new AccessLog(target);
+	}
+}
@@ -0,0 +1,121 @@
+package klfr.conlangdb.http.util;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.takes.HttpException;
+import org.takes.Request;
+import org.takes.Response;
+import org.takes.Take;
+import org.takes.http.Back;
+import org.takes.rq.RqLive;
+import org.takes.rq.RqWithHeaders;
+import org.takes.rs.RsEmpty;
+import org.takes.rs.RsPrint;
+import org.takes.rs.RsWithStatus;
+
+import klfr.conlangdb.CObject;
+
+/**
+ * Back end that handles the requests of a connection like Takes'
+ * {@code BkBasic}, but sends the body of event streams
+ * ({@code text/event-stream}) as soon as the take produces it. BkBasic buffers
+ * the output and only flushes it at the end of the body, so that the small
+ * events and heartbeats of a stream would only reach the client in bursts of
+ * several kilobytes. Other responses are flushed once at the end of their
+ * body.<br>
+ * <br>
+ * Like BkBasic, the socket's addresses and ports are added to the request as
+ * the X-Takes-LocalAddress, X-Takes-LocalPort, X-Takes-RemoteAddress and
+ * X-Takes-RemotePort headers. Unlike BkBasic, no further requests are read
+ * from the connection after a response with a {@code Connection: close}
+ * header.
+ */
+public class BkFlushing extends CObject implements Back {
+	private static final long serialVersionUID = 1L;
+	private static final Logger log = Logger.getLogger(BkFlushing.class.getCanonicalName());
+
+	private static final int CHUNK_SIZE = 4096;
+
+	private final Take take;
+
+	public BkFlushing(final Take take) {
+		this.take = take;
+	}
+
+	@Override
+	public void accept(final Socket socket) throws IOException {
+		try (final var input = socket.getInputStream();
+				final var output = new BufferedOutputStream(socket.getOutputStream())) {
+			boolean open;
+			do {
+				open = print(new RqWithHeaders(new RqLive(input),
+						f("X-Takes-LocalAddress: %s", socket.getLocalAddress().getHostAddress()),
+						f("X-Takes-LocalPort: %d", socket.getLocalPort()),
+						f("X-Takes-RemoteAddress: %s", socket.getInetAddress().getHostAddress()),
+						f("X-Takes-RemotePort: %d", socket.getPort())), output);
+			} while (open && input.available() > 0);
+		}
+	}
+
+	/**
+	 * Answers the request.
+	 *
+	 * @return Whether the connection may be used for further requests.
+	 */
+	private boolean print(final Request request, final OutputStream output) throws IOException {
+		try {
+			return print(take.act(request), output);
+		} catch (final HttpException e) {
+			return print(new RsWithStatus(new RsEmpty(), e.code()), output);
+		} catch (final IOException e) {
+			throw e;
+		} catch (final Exception e) {
+			log.log(Level.SEVERE, "Uncaught exception in take.", e);
+			return print(new RsWithStatus(new RsEmpty(), HttpURLConnection.HTTP_INTERNAL_ERROR), output);
+		}
+	}
+
+	private static boolean print(final Response response, final OutputStream output) throws IOException {
+		final var streaming = hasHeader(response, "Content-Type", "text/event-stream");
+		final var keepOpen = !hasHeader(response, "Connection", "close");
+		new RsPrint(response).printHead(output);
+		final var buffer = new byte[CHUNK_SIZE];
+		// closing the body ends event streams whose client went away
+		try (final var body = response.body()) {
+			for (var count = body.read(buffer); count >= 0; count = body.read(buffer)) {
+				output.write(buffer, 0, count);
+				if (streaming)
+					output.flush();
+			}
+		} finally {
+			output.flush();
+		}
+		return keepOpen;
+	}
+
+	/**
+	 * Whether the response has a header with the given name whose value starts
+	 * with the given lowercase value, ignoring case.
+	 */
+	private static boolean hasHeader(final Response response, final String name, final String value)
+			throws IOException {
+		final var prefix = name + ":";
+		for (final var line : response.head())
+			if (line.regionMatches(true, 0, prefix, 0, prefix.length())
+					&& line.substring(prefix.length()).strip().toLowerCase(Locale.ROOT).startsWith(value))
+				return true;
+		return false;
+	}
+
+	@Override
+	public CObject clone() {
+		return new BkFlushing(take);
+	}
+}
@@ -0,0 +1,94 @@
+package klfr.conlangdb.http.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import klfr.conlangdb.CObject;
+
+/**
+ * A range of bytes of a resource as requested by a Range header, with inclusive
+ * first and last byte positions as in the HTTP specification (RFC 7233).
+ */
+public final class ByteRange extends CObject {
+	private static final long serialVersionUID = 1L;
+
+	/** Position of the first byte. */
+	public final long first;
+	/** Position of the last byte, inclusive. */
+	public final long last;
+
+	public ByteRange(final long first, final long last) {
+		this.first = first;
+		this.last = last;
+	}
+
+	/** Returns the number of bytes in the range. */
+	public long length() {
+		return last - first + 1;
+	}
+
+	/**
+	 * Returns the value of the Content-Range header for this range of a resource.
+	 *
+	 * @param size The size of the whole resource.
+	 */
+	public String contentRange(final long size) {
+		return f("bytes %d-%d/%d", first, last, size);
+	}
+
+	/**
+	 * Parses a Range header for a resource of the given size. Ranges that exceed
+	 * the resource are shortened, and suffix ranges ({@code bytes=-500}) are
+	 * converted to absolute ranges.
+	 *
+	 * @param header The value of the Range header.
+	 * @param size   The size of the resource in bytes.
+	 * @return Nothing if the header is malformed or uses another unit than bytes,
+	 *         in which case it must be ignored. Otherwise the satisfiable ranges in
+	 *         the order of the header, which is empty if no range is satisfiable.
+	 */
+	public static Optional<List<ByteRange>> parse(final String header, final long size) {
+		final var value = header.strip();
+		if (!value.regionMatches(true, 0, "bytes=", 0, 6))
+			return Nothing();
+		final var ranges = new ArrayList<ByteRange>();
+		for (final var spec : value.substring(6).split(",")) {
+			final var part = spec.strip();
+			final var dash = part.indexOf('-');
+			if (dash < 0)
+				return Nothing();
+			try {
+				if (dash == 0) {
+					// suffix range: the last n bytes
+					final var suffix = Long.parseLong(part.substring(1));
+					if (suffix < 0)
+						return Nothing();
+					if (suffix > 0 && size > 0)
+						ranges.add(new ByteRange(Math.max(0, size - suffix), size - 1));
+				} else {
+					final var first = Long.parseLong(part.substring(0, dash));
+					final var last = dash == part.length() - 1 ? Long.MAX_VALUE
+							: Long.parseLong(part.substring(dash + 1));
+					if (first < 0 || last < first)
+						return Nothing();
+					if (first < size)
+						ranges.add(new ByteRange(first, Math.min(last, size - 1)));
+				}
+			} catch (NumberFormatException e) {
+				return Nothing();
+			}
+		}
+		return Just(ranges);
+	}
+
+	@Override
+	public String toString() {
+		return f("ByteRange(%d-%d)", first, last);
+	}
+
+	@Override
+	public CObject clone() {
+		return new ByteRange(first, last);
+	}
+}
@@ -0,0 +1,63 @@
+package klfr.conlangdb.http.util;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+import org.takes.Request;
+import org.takes.Response;
+import org.takes.Take;
+import org.takes.facets.fork.FkRegex;
+import org.takes.facets.fork.Fork;
+import org.takes.facets.fork.TkRegex;
+import org.takes.misc.Opt;
+
+import klfr.conlangdb.util.Metrics;
+
+/**
+ * Fork that routes like {@link FkRegex} and records the number of requests and
+ * the time until the response was created in the {@link Metrics}, with the
+ * route's pattern as the label. The time until the body was sent is not
+ * included.
+ */
+public class FkMetered implements Fork {
+
+	private final Fork origin;
+	private final Metrics.Counter requests;
+	private final Metrics.Histogram durations;
+
+	public FkMetered(final String pattern, final Take take) {
+		this(pattern, new FkRegex(pattern, take));
+	}
+
+	public FkMetered(final Pattern pattern, final Take take) {
+		this(pattern.pattern(), new FkRegex(pattern, take));
+	}
+
+	public FkMetered(final String pattern, final TkRegex take) {
+		this(pattern, new FkRegex(pattern, take));
+	}
+
+	public FkMetered(final Pattern pattern, final TkRegex take) {
+		this(pattern.pattern(), new FkRegex(pattern, take));
+	}
+
+	private FkMetered(final String pattern, final Fork origin) {
+		this.origin = origin;
+		// quoted patterns are the most common, and their quotes only clutter the label
+		final var route = pattern.replace("\\Q", "").replace("\\E", "");
+		this.requests = Metrics.counter("http_requests_total", "Number of HTTP requests per route.", "route", route);
+		this.durations = Metrics.histogram("http_request_duration_seconds",
+				"Time until the response of a route was created.", "route", route);
+	}
+
+	@Override
+	public Opt<Response> route(final Request request) throws IOException {
+		final var start = System.nanoTime();
+		final var response = origin.route(request);
+		if (response.has()) {
+			durations.record(System.nanoTime() - start);
+			requests.increment();
+		}
+		return response;
+	}
+}
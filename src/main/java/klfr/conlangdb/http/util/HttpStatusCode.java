@@ -15,16 +15,26 @@ public enum HttpStatusCode {
 	ACCEPTED(HttpURLConnection.HTTP_ACCEPTED, "Accepted"),
 	/** 204 - The request was processed and the response is intentionally empty. */
 	NO_CONTENT(HttpURLConnection.HTTP_NO_CONTENT, "No Content"),
+	/** 206 - The body contains the byte range(s) requested with the "Range"-Header. */
+	PARTIAL_CONTENT(HttpURLConnection.HTTP_PARTIAL, "Partial Content"),
+	/** 304 - The client's cached response is still current, the body is empty. */
+	NOT_MODIFIED(HttpURLConnection.HTTP_NOT_MODIFIED, "Not Modified"),
 	/** 400 - Request contains syntactical or semantical errors. */
 	BAD_REQUEST(HttpURLConnection.HTTP_BAD_REQUEST, "Bad Request"),
 	/** 404 - The resource was not found. */
 	NOT_FOUND(HttpURLConnection.HTTP_NOT_FOUND, "Not Found"),
 	/** 405 - The HTTP method was incorrect, only other method(s) are allowed. */
 	METHOD_UNALLOWED(HttpURLConnection.HTTP_BAD_METHOD, "Method Not Allowed"),
+	/** 413 - The request body is larger than the server accepts. */
+	PAYLOAD_TOO_LARGE(HttpURLConnection.HTTP_ENTITY_TOO_LARGE, "Payload Too Large"),
+	/** 416 - None of the requested byte ranges lies within the resource. */
+	RANGE_NOT_SATISFIABLE(416, "Range Not Satisfiable"),
 	/** 500 - Server error. */
 	INTERNAL_SERVER_ERROR(HttpURLConnection.HTTP_INTERNAL_ERROR, "Internal Server Error"),
 	/** 501 - Not implemented, this is rarely used. */
-	NOT_IMPLEMENTED(HttpURLConnection.HTTP_NOT_IMPLEMENTED, "Not Implemented")
+	NOT_IMPLEMENTED(HttpURLConnection.HTTP_NOT_IMPLEMENTED, "Not Implemented"),
+	/** 503 - The server is overloaded. The "Retry-After"-Header says when to retry. */
+	SERVICE_UNAVAILABLE(HttpURLConnection.HTTP_UNAVAILABLE, "Service Unavailable")
 
 	;
 
@@ -0,0 +1,339 @@
+package klfr.conlangdb.http.util;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Streaming JSON writer that encodes directly to UTF-8 bytes, as a replacement
+ * of building {@link org.json} objects and converting them to a string and then
+ * to bytes. Values, keys and the begin and end of objects and arrays are
+ * written in document order; commas are inserted automatically. The output is
+ * compact, i.e. without any whitespace.<br>
+ * <br>
+ * Keys that are written often should be created once as a {@link Key}, which
+ * holds their escaped bytes. The writer's buffer is reused by the next writer
+ * on the same thread, so a response only allocates the final byte array
+ * returned by {@link #toByteArray()}. A writer must therefore not be used after
+ * that call.
+ */
+public final class JSONWriter {
+
+	/** A precomputed object key, i.e. the bytes of {@code "name":}. */
+	public static final class Key {
+		private final byte[] bytes;
+		private final String name;
+
+		public Key(final String name) {
+			final var out = new JSONWriter(new byte[name.length() + 8]);
+			out.string(name);
+			out.raw(':');
+			this.bytes = Arrays.copyOf(out.buffer, out.length);
+			this.name = name;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+	/** Buffers larger than this are not kept for reuse, to not pin their memory. */
+	private static final int MAX_REUSED_BUFFER = 1 << 20;
+	private static final ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[8192]);
+
+	private byte[] buffer;
+	private int length;
+	/** Whether a comma must be written before the next value or key. */
+	private boolean separate;
+
+	/** Creates a writer that uses this thread's reusable buffer. */
+	public JSONWriter() {
+		// a nested writer on the same thread gets a new buffer
+		final var reused = buffers.get();
+		buffers.set(null);
+		this.buffer = reused != null ? reused : new byte[8192];
+	}
+
+	private JSONWriter(final byte[] buffer) {
+		this.buffer = buffer;
+	}
+
+	// #region Structure
+
+	public JSONWriter beginObject() {
+		separator();
+		raw('{');
+		separate = false;
+		return this;
+	}
+
+	public JSONWriter endObject() {
+		raw('}');
+		separate = true;
+		return this;
+	}
+
+	public JSONWriter beginArray() {
+		separator();
+		raw('[');
+		separate = false;
+		return this;
+	}
+
+	public JSONWriter endArray() {
+		raw(']');
+		separate = true;
+		return this;
+	}
+
+	/** Writes a precomputed object key; a value must follow. */
+	public JSONWriter key(final Key key) {
+		separator();
+		raw(key.bytes);
+		separate = false;
+		return this;
+	}
+
+	/** Writes an object key; a value must follow. */
+	public JSONWriter key(final String key) {
+		separator();
+		string(key);
+		raw(':');
+		separate = false;
+		return this;
+	}
+
+	// #endregion Structure
+
+	// #region Values
+
+	public JSONWriter nullValue() {
+		separator();
+		raw(NULL);
+		separate = true;
+		return this;
+	}
+
+	/** Writes a string, or null. */
+	public JSONWriter value(final String value) {
+		separator();
+		string(value);
+		separate = true;
+		return this;
+	}
+
+	public JSONWriter value(final long value) {
+		separator();
+		ascii(Long.toString(value));
+		separate = true;
+		return this;
+	}
+
+	/**
+	 * Writes a floating-point number like {@link org.json} does, i.e. integral
+	 * values without fraction. Infinite and NaN values, which JSON cannot
+	 * represent, are written as null.
+	 */
+	public JSONWriter value(final double value) {
+		if (!Double.isFinite(value))
+			return nullValue();
+		separator();
+		if (value == Math.rint(value) && Math.abs(value) < 1e15)
+			ascii(Long.toString((long) value));
+		else
+			ascii(Double.toString(value));
+		separate = true;
+		return this;
+	}
+
+	public JSONWriter value(final boolean value) {
+		separator();
+		raw(value ? TRUE : FALSE);
+		separate = true;
+		return this;
+	}
+
+	/**
+	 * Writes a number that is given in its decimal text form, such as an SQL
+	 * numeric value. Null and values that JSON cannot represent (infinities and
+	 * NaN) are written as null. The text is not checked otherwise.
+	 */
+	public JSONWriter number(final String number) {
+		if (number == null || number.endsWith("Infinity") || number.equals("NaN"))
+			return nullValue();
+		separator();
+		ascii(number);
+		separate = true;
+		return this;
+	}
+
+	/**
+	 * Writes any value that {@link org.json.JSONObject#put(String, Object)}
+	 * accepts: null, strings, numbers, booleans, org.json objects and arrays as
+	 * well as maps, collections and object arrays of these. Null members of maps
+	 * and org.json objects are left out, as org.json does. Other objects are
+	 * written as their string representation.
+	 */
+	public JSONWriter value(final Object value) {
+		if (value == null || value == JSONObject.NULL)
+			return nullValue();
+		if (value instanceof String)
+			return value((String) value);
+		if (value instanceof Boolean)
+			return value(((Boolean) value).booleanValue());
+		if (value instanceof Double || value instanceof Float)
+			return value(((Number) value).doubleValue());
+		if (value instanceof BigDecimal || value instanceof BigInteger)
+			return number(value.toString());
+		if (value instanceof Number)
+			return value(((Number) value).longValue());
+		if (value instanceof JSONObject)
+			return value(((JSONObject) value).toMap());
+		if (value instanceof JSONArray)
+			return value(((JSONArray) value).toList());
+		if (value instanceof Map) {
+			beginObject();
+			for (final var entry : ((Map<?, ?>) value).entrySet())
+				if (entry.getValue() != null)
+					key(String.valueOf(entry.getKey())).value(entry.getValue());
+			return endObject();
+		}
+		if (value instanceof Collection) {
+			beginArray();
+			for (final var element : (Collection<?>) value)
+				value(element);
+			return endArray();
+		}
+		if (value instanceof Object[])
+			return value(Arrays.asList((Object[]) value));
+		return value(value.toString());
+	}
+
+	// #endregion Values
+
+	/** Returns the number of bytes written so far. */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Returns the written JSON. The writer's buffer is handed to the next writer
+	 * on this thread, so this writer must not be used afterwards.
+	 */
+	public byte[] toByteArray() {
+		final var json = Arrays.copyOf(buffer, length);
+		if (buffer.length <= MAX_REUSED_BUFFER)
+			buffers.set(buffer);
+		buffer = null;
+		return json;
+	}
+
+	@Override
+	public String toString() {
+		return new String(buffer, 0, length, StandardCharsets.UTF_8);
+	}
+
+	// #region Encoding
+
+	private void separator() {
+		if (separate)
+			raw(',');
+	}
+
+	private void ensure(final int additional) {
+		if (length + additional > buffer.length)
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + additional));
+	}
+
+	private void raw(final char c) {
+		ensure(1);
+		buffer[length++] = (byte) c;
+	}
+
+	private void raw(final byte[] bytes) {
+		ensure(bytes.length);
+		System.arraycopy(bytes, 0, buffer, length, bytes.length);
+		length += bytes.length;
+	}
+
+	/** Writes a string that is known to only contain ASCII characters. */
+	private void ascii(final String s) {
+		ensure(s.length());
+		for (int i = 0; i < s.length(); ++i)
+			buffer[length++] = (byte) s.charAt(i);
+	}
+
+	/** Writes a quoted and escaped string, or null. */
+	private void string(final String s) {
+		if (s == null) {
+			raw(NULL);
+			return;
+		}
+		// at most 6 bytes per UTF-16 unit (\\u escapes)
+		ensure(s.length() * 6 + 2);
+		final var b = buffer;
+		var n = length;
+		b[n++] = '"';
+		for (int i = 0; i < s.length(); ++i) {
+			final var c = s.charAt(i);
+			if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+				b[n++] = (byte) c;
+			} else if (c == '"' || c == '\\') {
+				b[n++] = '\\';
+				b[n++] = (byte) c;
+			} else if (c < 0x20) {
+				b[n++] = '\\';
+				switch (c) {
+					case '\n':
+						b[n++] = 'n';
+						break;
+					case '\r':
+						b[n++] = 'r';
+						break;
+					case '\t':
+						b[n++] = 't';
+						break;
+					default:
+						b[n++] = 'u';
+						b[n++] = '0';
+						b[n++] = '0';
+						b[n++] = HEX[c >> 4];
+						b[n++] = HEX[c & 0xf];
+				}
+			} else if (c < 0x800) {
+				b[n++] = (byte) (0xc0 | c >> 6);
+				b[n++] = (byte) (0x80 | c & 0x3f);
+			} else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+					&& Character.isLowSurrogate(s.charAt(i + 1))) {
+				final var cp = Character.toCodePoint(c, s.charAt(++i));
+				b[n++] = (byte) (0xf0 | cp >> 18);
+				b[n++] = (byte) (0x80 | cp >> 12 & 0x3f);
+				b[n++] = (byte) (0x80 | cp >> 6 & 0x3f);
+				b[n++] = (byte) (0x80 | cp & 0x3f);
+			} else if (Character.isSurrogate(c)) {
+				// unpaired surrogates cannot be encoded, like the JDK's encoder does
+				b[n++] = '?';
+			} else {
+				b[n++] = (byte) (0xe0 | c >> 12);
+				b[n++] = (byte) (0x80 | c >> 6 & 0x3f);
+				b[n++] = (byte) (0x80 | c & 0x3f);
+			}
+		}
+		b[n++] = '"';
+		length = n;
+	}
+
+	// #endregion Encoding
+}
@@ -0,0 +1,336 @@
+package klfr.conlangdb.http.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Logger;
+
+import org.takes.Request;
+import org.takes.Response;
+import org.takes.rq.RqHeaders;
+import org.takes.rq.RqMethod;
+
+import klfr.conlangdb.CObject;
+import klfr.conlangdb.http.DataVersions;
+import klfr.conlangdb.http.RsCWrap;
+
+/**
+ * A static representation of a resource with known size, ETag and possibly a
+ * modification time, which answers conditional and partial requests. The
+ * response to a request is, in this order:
+ * <ul>
+ * <li>304 Not Modified if the If-None-Match header matches the ETag, or, if
+ * there is no If-None-Match header, the resource was not modified since the
+ * time in the If-Modified-Since header.</li>
+ * <li>206 Partial Content if a Range header requests satisfiable byte ranges
+ * and the If-Range header, if any, matches the resource. Multiple ranges are
+ * sent as a multipart/byteranges body.</li>
+ * <li>416 Range Not Satisfiable if no requested range lies within the
+ * resource.</li>
+ * <li>200 OK with the entire content otherwise.</li>
+ * </ul>
+ * The content is only read for the bytes that are actually sent.
+ */
+public final class RangedContent extends CObject {
+	private static final long serialVersionUID = 1L;
+	private static final Logger log = Logger.getLogger(RangedContent.class.getCanonicalName());
+
+	/**
+	 * Maximum number of ranges served as multipart body, after adjacent ranges were
+	 * merged. Requests for more ranges receive the entire content.
+	 */
+	public static final int MAX_RANGES = 16;
+	/**
+	 * Ranges that are separated by fewer bytes than this are merged, as sending the
+	 * gap is cheaper than the headers of another body part.
+	 */
+	private static final long MERGE_GAP = 80;
+	private static final byte[] CRLF = { '\r', '\n' };
+
+	/** Provides the bytes of the content. */
+	@FunctionalInterface
+	public static interface Source {
+		/**
+		 * Opens a stream of a part of the content.
+		 *
+		 * @param offset The position of the first byte.
+		 * @param length The number of bytes.
+		 */
+		InputStream open(long offset, long length) throws IOException;
+	}
+
+	private final Source source;
+	private final long size;
+	private final String contentType;
+	private final String etag;
+	private final Optional<Instant> lastModified;
+	private final List<String> headers;
+
+	/**
+	 * @param source       The content.
+	 * @param size         The size of the content in bytes.
+	 * @param contentType  The MIME type of the content.
+	 * @param etag         The strong or weak ETag of the content, including
+	 *                     quotes. Ranges are only served conditionally with
+	 *                     If-Range for strong ETags.
+	 * @param lastModified The time of the last modification of the content, if
+	 *                     known.
+	 * @param headers      Further header lines for all responses, such as
+	 *                     Cache-Control.
+	 */
+	public RangedContent(final Source source, final long size, final String contentType, final String etag,
+			final Optional<Instant> lastModified, final List<String> headers) {
+		this.source = source;
+		this.size = size;
+		this.contentType = contentType;
+		this.etag = etag;
+		this.lastModified = lastModified;
+		this.headers = headers;
+	}
+
+	/** Content that is entirely in memory. */
+	public static Source of(final byte[] data) {
+		return (offset, length) -> new ByteArrayInputStream(data, (int) offset, (int) length);
+	}
+
+	/**
+	 * Content that is in a buffer, such as a mapped file. The buffer's position and
+	 * limit are not used and not modified, the content are its bytes from index 0
+	 * to its capacity.
+	 */
+	public static Source of(final ByteBuffer data) {
+		return (offset, length) -> new BufferStream(
+				data.duplicate().limit((int) (offset + length)).position((int) offset));
+	}
+
+	/**
+	 * Creates the response to the request.
+	 */
+	public Response respond(final Request request) throws IOException {
+		final var method = new RqMethod.Base(request).method();
+		final var reading = method.equals(RqMethod.GET) || method.equals(RqMethod.HEAD);
+		final var rqHeaders = new RqHeaders.Smart(request);
+
+		// If-None-Match takes precedence over If-Modified-Since
+		if (reading && (rqHeaders.header("If-None-Match").iterator().hasNext() ? DataVersions.notModified(request, etag)
+				: !modifiedSince(rqHeaders.single("If-Modified-Since", ""))))
+			return new RsCWrap(new Rs(head(List.of()), null), HttpStatusCode.NOT_MODIFIED);
+
+		final var rangeHeader = rqHeaders.single("Range", "");
+		if (!method.equals(RqMethod.GET) || rangeHeader.isBlank() || !ifRangeMatches(rqHeaders.single("If-Range", "")))
+			return entire();
+		final var parsed = ByteRange.parse(rangeHeader, size);
+		if (parsed.isEmpty())
+			return entire();
+		if (parsed.get().isEmpty())
+			return new RsCWrap(new Rs(head(List.of("Content-Range: bytes */" + size)), null),
+					HttpStatusCode.RANGE_NOT_SATISFIABLE);
+
+		final var ranges = merge(parsed.get());
+		if (ranges.size() > MAX_RANGES) {
+			log.fine(() -> f("Requested %d ranges, sending entire content", ranges.size()));
+			return entire();
+		}
+		if (ranges.size() == 1) {
+			final var range = ranges.get(0);
+			return new RsCWrap(new Rs(
+					head(List.of("Content-Type: " + contentType, "Content-Range: " + range.contentRange(size),
+							"Content-Length: " + range.length())),
+					() -> source.open(range.first, range.length())), HttpStatusCode.PARTIAL_CONTENT);
+		}
+		return multipart(ranges);
+	}
+
+	private Response entire() {
+		return new RsCWrap(
+				new Rs(head(List.of("Content-Type: " + contentType, "Content-Length: " + size)),
+						() -> source.open(0, size)),
+				HttpStatusCode.OK);
+	}
+
+	/**
+	 * Creates the multipart/byteranges response, whose body is the sequence of the
+	 * parts' headers and content.
+	 */
+	private Response multipart(final List<ByteRange> ranges) {
+		final var boundary = "conlangdb-" + Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+		final var partHeads = new ArrayList<byte[]>(ranges.size());
+		var length = 0L;
+		for (final var range : ranges) {
+			final var partHead = f("--%s\r\nContent-Type: %s\r\nContent-Range: %s\r\n\r\n", boundary, contentType,
+					range.contentRange(size)).getBytes(StandardCharsets.US_ASCII);
+			partHeads.add(partHead);
+			length += partHead.length + range.length() + 2;
+		}
+		final var end = f("--%s--\r\n", boundary).getBytes(StandardCharsets.US_ASCII);
+		length += end.length;
+		log.finer(f("Sending %d ranges in %d bytes", ranges.size(), length));
+
+		return new RsCWrap(new Rs(
+				head(List.of("Content-Type: multipart/byteranges; boundary=" + boundary, "Content-Length: " + length)),
+				() -> {
+					final var parts = new ArrayList<InputStream>(ranges.size() * 3 + 1);
+					for (int i = 0; i < ranges.size(); ++i) {
+						parts.add(new ByteArrayInputStream(partHeads.get(i)));
+						parts.add(source.open(ranges.get(i).first, ranges.get(i).length()));
+						parts.add(new ByteArrayInputStream(CRLF));
+					}
+					parts.add(new ByteArrayInputStream(end));
+					return new SequenceInputStream(Collections.enumeration(parts));
+				}), HttpStatusCode.PARTIAL_CONTENT);
+	}
+
+	/** Returns the header lines common to all responses, plus the given ones. */
+	private List<String> head(final List<String> specific) {
+		final var head = new ArrayList<String>(headers.size() + specific.size() + 3);
+		head.addAll(headers);
+		head.add("ETag: " + etag);
+		lastModified.ifPresent(time -> head.add("Last-Modified: " + TkFilesAdvanced.toHTTPTime(time)));
+		head.add("Accept-Ranges: bytes");
+		head.addAll(specific);
+		return head;
+	}
+
+	/**
+	 * Whether the content was modified since the HTTP date. Dates that cannot be
+	 * parsed and content without modification time count as modified.
+	 */
+	private boolean modifiedSince(final String date) {
+		final var since = parseHTTPTime(date);
+		if (since.isEmpty() || lastModified.isEmpty())
+			return true;
+		// HTTP dates have a precision of one second
+		return lastModified.get().getEpochSecond() > since.get().getEpochSecond();
+	}
+
+	/**
+	 * Whether the If-Range header allows serving ranges: it is absent, or it is a
+	 * strong ETag equal to the content's, or it is the exact modification time.
+	 */
+	private boolean ifRangeMatches(final String ifRange) {
+		if (ifRange.isBlank())
+			return true;
+		if (ifRange.startsWith("W/"))
+			return false;
+		if (ifRange.startsWith("\""))
+			return !etag.startsWith("W/") && ifRange.equals(etag);
+		final var time = parseHTTPTime(ifRange);
+		return time.isPresent() && lastModified.isPresent()
+				&& time.get().getEpochSecond() == lastModified.get().getEpochSecond();
+	}
+
+	private static Optional<Instant> parseHTTPTime(final String date) {
+		if (date.isBlank())
+			return Nothing();
+		try {
+			return Just(ZonedDateTime.parse(date.strip(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant());
+		} catch (DateTimeParseException e) {
+			return Nothing();
+		}
+	}
+
+	/**
+	 * Sorts the ranges and merges overlapping ranges and ranges separated by small
+	 * gaps.
+	 */
+	private static List<ByteRange> merge(final List<ByteRange> ranges) {
+		if (ranges.size() == 1)
+			return ranges;
+		final var sorted = new ArrayList<ByteRange>(ranges);
+		sorted.sort(Comparator.comparingLong(range -> range.first));
+		final var merged = new ArrayList<ByteRange>(sorted.size());
+		var current = sorted.get(0);
+		for (final var range : sorted.subList(1, sorted.size())) {
+			if (range.first <= current.last + MERGE_GAP) {
+				current = new ByteRange(current.first, Math.max(current.last, range.last));
+			} else {
+				merged.add(current);
+				current = range;
+			}
+		}
+		merged.add(current);
+		return merged;
+	}
+
+	@Override
+	public CObject clone() {
+		return new RangedContent(source, size, contentType, etag, lastModified, headers);
+	}
+
+	/** Opens a response body. */
+	@FunctionalInterface
+	private static interface Body {
+		InputStream open() throws IOException;
+	}
+
+	/** Response with the given header lines and body, empty if it is null. */
+	private static final class Rs implements Response {
+		private final List<String> head;
+		private final Body body;
+
+		Rs(final List<String> head, final Body body) {
+			this.head = head;
+			this.body = body;
+		}
+
+		@Override
+		public Iterable<String> head() {
+			return head;
+		}
+
+		@Override
+		public InputStream body() throws IOException {
+			return body == null ? InputStream.nullInputStream() : body.open();
+		}
+	}
+
+	/** Input stream that reads the remaining bytes of a buffer. */
+	private static final class BufferStream extends InputStream {
+		private final ByteBuffer view;
+
+		BufferStream(final ByteBuffer view) {
+			this.view = view;
+		}
+
+		@Override
+		public int read() {
+			return view.hasRemaining() ? view.get() & 0xff : -1;
+		}
+
+		@Override
+		public int read(final byte[] buffer, final int offset, final int count) {
+			if (count == 0)
+				return 0;
+			if (!view.hasRemaining())
+				return -1;
+			final var n = Math.min(count, view.remaining());
+			view.get(buffer, offset, n);
+			return n;
+		}
+
+		@Override
+		public long skip(final long n) {
+			final var skipped = (int) Math.max(0, Math.min(n, view.remaining()));
+			view.position(view.position() + skipped);
+			return skipped;
+		}
+
+		@Override
+		public int available() {
+			return view.remaining();
+		}
+	}
+}
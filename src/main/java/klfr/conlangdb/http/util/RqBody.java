@@ -2,69 +2,117 @@ package klfr.conlangdb.http.util;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
 import org.takes.Request;
 import org.takes.rq.RqHeaders;
 
 import klfr.conlangdb.CObject;
+import klfr.conlangdb.ServerMain.Arguments;
 
 /**
  * A request decorator that will limit its body input stream to however many
- * bytes are indicated by the Content-Length header.
+ * bytes are indicated by the Content-Length header. The body is read in bulk
+ * from the underlying stream, and bodies larger than the configured maximum
+ * are rejected. The data of rejected bodies is discarded up to a fixed limit,
+ * so that it is not mistaken for the next request on the connection.
  */
 public class RqBody extends CObject implements Request {
 	private static final long serialVersionUID = 1L;
 
+	/** Maximum accepted body size in bytes. */
+	private static volatile long maxSize = 1024L * 1024L;
+	/**
+	 * Maximum number of bytes of a rejected body that are read and discarded. The
+	 * connection of a request with a larger body must be closed instead.
+	 */
+	private static final long DISCARD_LIMIT = 16L * 1024L * 1024L;
+
+	/**
+	 * Thrown if the request body is larger than the maximum body size. Request
+	 * handlers should answer with {@link HttpStatusCode#PAYLOAD_TOO_LARGE}.
+	 */
+	public static class TooLargeException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		private final boolean discarded;
+
+		public TooLargeException(final long size, final boolean discarded) {
+			super(f("Request body of %d bytes exceeds the maximum of %d bytes", size, maxSize));
+			this.discarded = discarded;
+		}
+
+		/**
+		 * Whether the body was read and discarded completely. If not, the rest of the
+		 * body is still waiting on the connection, and the response must close it
+		 * with a {@code Connection: close} header.
+		 */
+		public boolean isDiscarded() {
+			return discarded;
+		}
+	}
+
 	private final Request inner;
 
 	public RqBody(final Request inner) {
 		this.inner = inner;
 	}
 
+	/**
+	 * Configures the maximum body size from the arguments.
+	 */
+	public static void setup(final Arguments args) {
+		maxSize = args.maxBodySize * 1024L;
+	}
+
 	@Override
 	public Iterable<String> head() throws IOException {
 		return inner.head();
 	}
 
+	/**
+	 * Returns the body, limited to the Content-Length. A missing or malformed
+	 * Content-Length results in an empty body.
+	 *
+	 * @throws TooLargeException if the Content-Length exceeds the maximum body
+	 *                           size. The body is discarded first if it does not
+	 *                           exceed the discard limit.
+	 */
 	@Override
 	public InputStream body() throws IOException {
-		final var innerBody = inner.body();
-
 		// figure out how many bytes to read
 		final var maxreadStr = new RqHeaders.Smart(this).single("Content-Length", "0");
-		var maxread_ = 0;
+		var maxread = 0L;
 		try {
-			maxread_ = Integer.parseInt(maxreadStr);
+			maxread = Math.max(0, Long.parseLong(maxreadStr.strip()));
 		} catch (final NumberFormatException e) {
 		}
-		final var maxread = maxread_;
-
-		return new InputStream() {
-			private int read = 0;
-
-			@Override
-			public int read() throws IOException {
-				if (read >= maxread)
-					return -1;
-				final int innerData = innerBody.read();
-				read++;
-				// will also stop if the inner request has no more body data
-				return innerData;
-			}
-
-			@Override
-			public byte[] readAllBytes() throws IOException {
-				return this.readNBytes(maxread - read);
-			}
-
-			@Override
-			public byte[] readNBytes(int len) throws IOException {
-				len = Math.min(len, maxread - read);
-				if (len <= 0)
-					return new byte[0];
-				return innerBody.readNBytes(len);
-			}
-		};
+		if (maxread > maxSize) {
+			final var discarded = maxread <= DISCARD_LIMIT;
+			if (discarded)
+				new Bounded(inner.body(), maxread).transferTo(OutputStream.nullOutputStream());
+			throw new TooLargeException(maxread, discarded);
+		}
+		return new Bounded(inner.body(), maxread);
+	}
+
+	/**
+	 * Parses the body as a JSON object while it is read, without copying it into a
+	 * string first.
+	 *
+	 * @param charset The body's character set.
+	 * @throws TooLargeException if the body exceeds the maximum body size.
+	 * @throws JSONException     if the body is no valid JSON object.
+	 */
+	public JSONObject json(final Charset charset) throws IOException, JSONException {
+		try (final var reader = new InputStreamReader(body(), charset)) {
+			return new JSONObject(new JSONTokener(reader));
+		}
 	}
 
 	@Override
@@ -72,4 +120,57 @@ public class RqBody extends CObject implements Request {
 		return new RqBody(inner);
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Input stream that reads at most a given number of bytes from the underlying
+	 * stream. Closing it does not close the underlying stream, which is the
+	 * connection's.
+	 */
+	private static final class Bounded extends InputStream {
+		private final InputStream inner;
+		private long remaining;
+
+		Bounded(final InputStream inner, final long length) {
+			this.inner = inner;
+			this.remaining = length;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (remaining <= 0)
+				return -1;
+			final int data = inner.read();
+			// will also stop if the inner request has no more body data
+			remaining = data < 0 ? 0 : remaining - 1;
+			return data;
+		}
+
+		@Override
+		public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+			if (length == 0)
+				return 0;
+			if (remaining <= 0)
+				return -1;
+			final var count = inner.read(buffer, offset, (int) Math.min(length, remaining));
+			remaining = count < 0 ? 0 : remaining - count;
+			return count;
+		}
+
+		@Override
+		public long skip(final long n) throws IOException {
+			final var skipped = inner.skip(Math.min(n, remaining));
+			remaining -= skipped;
+			return skipped;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return (int) Math.min(inner.available(), remaining);
+		}
+
+		@Override
+		public void close() {
+			remaining = 0;
+		}
+	}
+
+}
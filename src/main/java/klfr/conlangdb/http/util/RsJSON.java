@@ -1,34 +1,32 @@
 package klfr.conlangdb.http.util;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.takes.Response;
 
-import klfr.conlangdb.util.StringStreamUtil;
-
 /**
  * A simple response that uses JSON data as its body. Appropriately, the
  * Content-Type and Content-Length headers are set. The JSON data is recieved
  * either from a preformatted String containing JSON, or from a JSONObject as
  * specified and implemented by the {@link org.json} Java JSON reference
  * implementation. This makes this class ideal for operation with other systems
- * which use the reference implementation of JSON in Java.
+ * which use the reference implementation of JSON in Java. Alternatively, the
+ * JSON is written directly with a {@link JSONWriter}. The JSON is encoded to
+ * UTF-8 once on construction.
  */
 public class RsJSON implements Response {
 
-	private final String json;
+	private final byte[] json;
 
 	/**
 	 * Standard constructor which accepts a JSON Object from the reference JSON
-	 * implementation. The JSON is pretty-printed for ease of debugging. This, of
-	 * course, does not affect the data in any way, but may be significant if a lot
-	 * of JSON data is transferred and the amount of data is significantly increased
-	 * by the pretty-printing. Use the String constructor with the already
-	 * stringified JSON in such a case.
+	 * implementation. The JSON is written compactly with a {@link JSONWriter}.
 	 * 
 	 * @param json A JSONObject from the reference implementation {@link org.json}.
 	 *             This also ensures that the JSON is always valid, which is one of
@@ -36,16 +34,12 @@ public class RsJSON implements Response {
 	 *             structures in org.json.
 	 */
 	public RsJSON(JSONObject json) {
-		this.json = json.toString(2);
+		this.json = new JSONWriter().value(json).toByteArray();
 	}
 
 	/**
 	 * Standard constructor which accepts a JSON Array from the reference JSON
-	 * implementation. The JSON is pretty-printed for ease of debugging. This, of
-	 * course, does not affect the data in any way, but may be significant if a lot
-	 * of JSON data is transferred and the amount of data is significantly increased
-	 * by the pretty-printing. Use the String constructor with the already
-	 * stringified JSON in such a case.
+	 * implementation. The JSON is written compactly with a {@link JSONWriter}.
 	 * 
 	 * @param json A JSONArray from the reference implementation {@link org.json}.
 	 *             This also ensures that the JSON is always valid, which is one of
@@ -53,7 +47,19 @@ public class RsJSON implements Response {
 	 *             structures in org.json.
 	 */
 	public RsJSON(JSONArray json) {
-		this.json = json.toString(2);
+		this.json = new JSONWriter().value(json).toByteArray();
+	}
+
+	/**
+	 * Constructor which accepts the JSON that was written with a JSON writer. This
+	 * is the cheapest way of creating JSON responses, as no intermediate objects or
+	 * strings are created.
+	 * 
+	 * @param json A writer that contains one complete JSON value. It must not be
+	 *             used afterwards.
+	 */
+	public RsJSON(JSONWriter json) {
+		this.json = json.toByteArray();
 	}
 
 	/**
@@ -64,7 +70,25 @@ public class RsJSON implements Response {
 	 * @param jsonAsString JSON in string form. Its validity is not checked.
 	 */
 	public RsJSON(CharSequence jsonAsString) {
-		this.json = jsonAsString.toString();
+		this.json = jsonAsString.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Constructor which accepts JSON that was already encoded in UTF-8, such as a
+	 * cached response body.
+	 * 
+	 * @param json UTF-8 encoded JSON. Its validity is not checked, and the array
+	 *             must not be modified afterwards.
+	 */
+	public RsJSON(byte[] json) {
+		this.json = json;
+	}
+
+	/**
+	 * Returns the UTF-8 encoded JSON of this response, which must not be modified.
+	 */
+	public byte[] bytes() {
+		return json;
 	}
 
 	/**
@@ -75,12 +99,12 @@ public class RsJSON implements Response {
 	@Override
 	public Iterable<String> head() throws IOException {
 		return List.of("Content-Type: application/json; charset=UTF-8",
-				"Content-Length: " + Integer.toString(StringStreamUtil.contentLength(json)));
+				"Content-Length: " + Integer.toString(json.length));
 	}
 
 	@Override
 	public InputStream body() throws IOException {
-		return StringStreamUtil.streamify(json);
+		return new ByteArrayInputStream(json);
 	}
 
 }
\ No newline at end of file
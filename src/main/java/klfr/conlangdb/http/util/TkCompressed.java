@@ -0,0 +1,301 @@
+package klfr.conlangdb.http.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.takes.Request;
+import org.takes.Response;
+import org.takes.Take;
+import org.takes.rq.RqHeaders;
+
+import klfr.conlangdb.CObject;
+import klfr.conlangdb.util.Metrics;
+
+/**
+ * Take decorator that compresses responses with the content encoding that the
+ * client prefers according to its Accept-Encoding header, either gzip or
+ * deflate. Only successful responses of textual types (HTML, CSS, JavaScript,
+ * JSON, SVG and the like) are compressed, and only if their body is at least
+ * the minimum size, as compression does not pay off for small bodies. Event
+ * streams are never touched, as they must not be buffered.<br>
+ * <br>
+ * The body is compressed as a whole, so that the response keeps its
+ * Content-Length. The {@link Deflater} instances, whose native buffers are
+ * expensive to allocate, are reused from a pool. Responses of compressible
+ * types carry a {@code Vary: Accept-Encoding} header, and strong ETags of
+ * compressed responses are made weak, as their bytes differ from the
+ * uncompressed representation.
+ */
+public class TkCompressed extends CObject implements Take {
+	private static final long serialVersionUID = 1L;
+	private static final Logger log = Logger.getLogger(TkCompressed.class.getCanonicalName());
+
+	/** Bodies smaller than this are not compressed by default. */
+	public static final int DEFAULT_MINIMUM_SIZE = 1024;
+
+	/** Content encodings that this take can produce. */
+	private static enum Encoding {
+		GZIP("gzip"), DEFLATE("deflate");
+
+		final String token;
+		/** Deflaters of this encoding that are not in use. */
+		final BlockingQueue<Deflater> pool = new ArrayBlockingQueue<>(16);
+
+		private Encoding(final String token) {
+			this.token = token;
+		}
+	}
+
+	private static final Metrics.Counter compressedResponses = Metrics.counter("http_compressed_responses_total",
+			"Number of responses that were sent compressed.", null, null);
+	private static final Metrics.Counter savedBytes = Metrics.counter("http_compression_saved_bytes_total",
+			"Number of body bytes that compression saved.", null, null);
+
+	private final Take origin;
+	private final int minimumSize;
+	private final int level;
+
+	/**
+	 * Compresses the origin's responses of at least
+	 * {@link #DEFAULT_MINIMUM_SIZE} bytes with the default compression level.
+	 */
+	public TkCompressed(final Take origin) {
+		this(origin, DEFAULT_MINIMUM_SIZE, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * @param origin      The take whose responses are compressed.
+	 * @param minimumSize The minimum body size in bytes for compression.
+	 * @param level       The compression level, 1 (fastest) to 9 (smallest), see
+	 *                    {@link Deflater}.
+	 */
+	public TkCompressed(final Take origin, final int minimumSize, final int level) {
+		this.origin = origin;
+		this.minimumSize = minimumSize;
+		this.level = level;
+	}
+
+	@Override
+	public Response act(final Request request) throws IOException {
+		final var response = origin.act(request);
+		final var head = new ArrayList<String>();
+		response.head().forEach(head::add);
+		if (head.isEmpty() || !head.get(0).contains(" 200 ") || header(head, "Content-Encoding").isPresent())
+			return response;
+		final var type = header(head, "Content-Type").orElse("").toLowerCase(Locale.ROOT);
+		if (!isCompressible(type))
+			return response;
+		head.add("Vary: Accept-Encoding");
+
+		final var qualities = qualities(new RqHeaders.Base(request).header("Accept-Encoding"));
+		final var encoding = negotiate(qualities);
+		// a client that refuses the uncompressed representation gets even small bodies compressed
+		final var minimumSize = quality(qualities, "identity") > 0 ? this.minimumSize : 0;
+		final var length = header(head, "Content-Length").map(TkCompressed::parseLength).orElse(-1L);
+		if (encoding.isEmpty() || (length >= 0 && length < minimumSize))
+			return new Modified(head, response);
+
+		final byte[] body;
+		try (final var stream = response.body()) {
+			body = stream.readAllBytes();
+		}
+		if (body.length < minimumSize)
+			return new Modified(head, body);
+		final var compressed = compress(body, encoding.get());
+		log.finer(() -> f("%s %d -> %d bytes", encoding.get().token, body.length, compressed.length));
+		compressedResponses.increment();
+		savedBytes.add(body.length - compressed.length);
+
+		head.removeIf(line -> isHeader(line, "Content-Length"));
+		head.add("Content-Length: " + compressed.length);
+		head.add("Content-Encoding: " + encoding.get().token);
+		for (int i = 0; i < head.size(); ++i)
+			if (isHeader(head.get(i), "ETag") && !head.get(i).contains("W/"))
+				head.set(i, head.get(i).replaceFirst("(?i)ETag:\\s*", "ETag: W/"));
+		return new Modified(head, compressed);
+	}
+
+	/** Whether responses of the Content-Type benefit from compression. */
+	private static boolean isCompressible(final String type) {
+		if (type.startsWith("text/event-stream"))
+			return false;
+		return type.startsWith("text/") || type.startsWith("application/json")
+				|| type.startsWith("application/javascript") || type.startsWith("application/xml")
+				|| type.startsWith("image/svg+xml");
+	}
+
+	/**
+	 * Parses the Accept-Encoding headers into the quality of each listed token,
+	 * including "*". Invalid qualities count as 0.
+	 */
+	private static Map<String, Double> qualities(final Iterable<String> acceptEncoding) {
+		final var qualities = new HashMap<String, Double>();
+		for (final var header : acceptEncoding) {
+			for (final var part : header.split(",")) {
+				final var parameters = part.split(";");
+				final var token = parameters[0].strip().toLowerCase(Locale.ROOT);
+				if (token.isEmpty())
+					continue;
+				var quality = 1.0;
+				for (int i = 1; i < parameters.length; ++i) {
+					final var parameter = parameters[i].strip();
+					if (parameter.startsWith("q="))
+						try {
+							quality = Double.parseDouble(parameter.substring(2));
+						} catch (NumberFormatException e) {
+							quality = 0;
+						}
+				}
+				qualities.put(token, quality);
+			}
+		}
+		return qualities;
+	}
+
+	/**
+	 * Returns the quality of a content coding: its own if it is listed, otherwise
+	 * that of "*". Unlisted codings are not acceptable, except for identity,
+	 * which is acceptable unless it is refused explicitly.
+	 */
+	private static double quality(final Map<String, Double> qualities, final String token) {
+		final var quality = qualities.get(token);
+		if (quality != null)
+			return quality;
+		return qualities.getOrDefault("*", token.equals("identity") ? 1.0 : 0.0);
+	}
+
+	/**
+	 * Selects the encoding with the highest quality, preferring gzip on equal
+	 * quality. Encodings with quality 0 are never selected, and none is selected
+	 * if the client explicitly prefers the uncompressed representation, i.e. if
+	 * identity or "*" has a higher quality.
+	 */
+	private static Optional<Encoding> negotiate(final Map<String, Double> qualities) {
+		Optional<Encoding> best = Nothing();
+		var bestQuality = 0.0;
+		for (final var encoding : Encoding.values()) {
+			final var quality = quality(qualities, encoding.token);
+			if (quality > bestQuality) {
+				best = Just(encoding);
+				bestQuality = quality;
+			}
+		}
+		if (bestQuality < qualities.getOrDefault("identity", qualities.getOrDefault("*", 0.0)))
+			return Nothing();
+		return best;
+	}
+
+	private byte[] compress(final byte[] body, final Encoding encoding) {
+		var deflater = encoding.pool.poll();
+		if (deflater == null)
+			deflater = new Deflater(level, encoding == Encoding.GZIP);
+		else
+			deflater.setLevel(level);
+		try {
+			deflater.setInput(body);
+			deflater.finish();
+			// text mostly compresses to less than half its size; the buffer grows otherwise
+			var out = new byte[body.length / 2 + 64];
+			var length = 0;
+			if (encoding == Encoding.GZIP) {
+				// header: magic, deflate method, no flags, no time, no extra flags, unknown OS
+				final byte[] header = { 0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+				System.arraycopy(header, 0, out, 0, header.length);
+				length = header.length;
+			}
+			while (!deflater.finished()) {
+				if (length == out.length)
+					out = Arrays.copyOf(out, out.length * 2);
+				length += deflater.deflate(out, length, out.length - length);
+			}
+			if (encoding == Encoding.GZIP) {
+				// trailer: CRC-32 and size of the uncompressed data, little-endian
+				final var crc = new CRC32();
+				crc.update(body);
+				out = Arrays.copyOf(out, length + 8);
+				writeIntLE(out, length, (int) crc.getValue());
+				writeIntLE(out, length + 4, body.length);
+				return out;
+			}
+			return Arrays.copyOf(out, length);
+		} finally {
+			deflater.reset();
+			if (!encoding.pool.offer(deflater))
+				deflater.end();
+		}
+	}
+
+	private static void writeIntLE(final byte[] out, final int offset, final int value) {
+		out[offset] = (byte) value;
+		out[offset + 1] = (byte) (value >> 8);
+		out[offset + 2] = (byte) (value >> 16);
+		out[offset + 3] = (byte) (value >> 24);
+	}
+
+	private static boolean isHeader(final String line, final String name) {
+		return line.length() > name.length() && line.charAt(name.length()) == ':'
+				&& line.regionMatches(true, 0, name, 0, name.length());
+	}
+
+	private static Optional<String> header(final List<String> head, final String name) {
+		for (final var line : head)
+			if (isHeader(line, name))
+				return Just(line.substring(name.length() + 1).strip());
+		return Nothing();
+	}
+
+	private static long parseLength(final String length) {
+		try {
+			return Long.parseLong(length);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	@Override
+	public CObject clone() {
+		return new TkCompressed(origin, minimumSize, level);
+	}
+
+	/** Response with a modified head and either the original or a new body. */
+	private static final class Modified implements Response {
+		private final List<String> head;
+		private final Response original;
+		private final byte[] body;
+
+		Modified(final List<String> head, final Response original) {
+			this.head = head;
+			this.original = original;
+			this.body = null;
+		}
+
+		Modified(final List<String> head, final byte[] body) {
+			this.head = head;
+			this.original = null;
+			this.body = body;
+		}
+
+		@Override
+		public Iterable<String> head() {
+			return head;
+		}
+
+		@Override
+		public InputStream body() throws IOException {
+			return body != null ? new ByteArrayInputStream(body) : original.body();
+		}
+	}
+}
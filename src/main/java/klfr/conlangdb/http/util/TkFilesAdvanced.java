@@ -6,21 +6,20 @@ import java.nio.file.Files;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
+import java.util.zip.CRC32;
 
 import org.takes.Request;
 import org.takes.Response;
 import org.takes.Take;
 import org.takes.rq.RqHref;
-import org.takes.rs.RsWithBody;
-import org.takes.rs.RsWithHeaders;
 
 import klfr.conlangdb.CObject;
 import klfr.conlangdb.CResources;
@@ -35,13 +34,14 @@ import klfr.conlangdb.http.RsCWrap;
  * strategies. For one, public caching of the files is allowed for up to 20
  * days. Second, a Last-Modified header contains the time of last file change as
  * recorded by the operating system. This feature only works on non-JAR
- * resources.
+ * resources. Third, an ETag is computed from the file contents. Conditional
+ * requests with If-None-Match and If-Modified-Since as well as Range requests
+ * are answered by {@link RangedContent}.<br>
+ * <br>
+ * Resources are read once and then served from memory. A resource that is a
+ * plain file is read again when its modification time changes.
  */
 public class TkFilesAdvanced extends CObject implements Take {
-	// Third, an If-Modified-Since header is honored by returning an empty 304 (Not
-	// Modified) response if the last modification time was earlier than the given
-	// time.
-
 	private static final long serialVersionUID = 1L;
 
 	private static final Logger log = Logger.getLogger(TkFilesAdvanced.class.getCanonicalName());
@@ -95,6 +95,28 @@ public class TkFilesAdvanced extends CObject implements Take {
 
 	private static final Pattern extensionPt = Pattern.compile(".*?\\.(\\S+)");
 
+	/** A resource's content, read once and kept in memory. */
+	private static final class Resource {
+		final byte[] data;
+		final Optional<Instant> lastModified;
+		/** Strong ETag from the size and checksum of the content. */
+		final String etag;
+
+		Resource(final byte[] data, final Optional<Instant> lastModified) {
+			this.data = data;
+			this.lastModified = lastModified;
+			final var crc = new CRC32();
+			crc.update(data);
+			this.etag = "\"%s-%s\"".formatted(Long.toString(data.length, 36), Long.toString(crc.getValue(), 36));
+		}
+	}
+
+	/**
+	 * Cached resources by resource path. The static resources are few and small,
+	 * and resources in a JAR never change.
+	 */
+	private static final Map<String, Resource> resources = new ConcurrentHashMap<>();
+
 	private final String path;
 
 	/**
@@ -121,35 +143,76 @@ public class TkFilesAdvanced extends CObject implements Take {
 	public Response act(Request request) {
 		try {
 			final String requestedPath = new RqHref.Base(request).href().path();
-			final var maybeRequestStream = CResources.openBinary(this.path + requestedPath);
-			if (maybeRequestStream.isEmpty()) {
+			final var maybeResource = load(this.path + requestedPath);
+			if (maybeResource.isEmpty()) {
 				return new RsCWrap(HttpStatusCode.NOT_FOUND);
 			}
-			final List<String> headers = new LinkedList<String>();
-			headers.add(cacheControl);
-			// add Content-Type (auto-detect)
+			final var resource = maybeResource.get();
+			// auto-detect Content-Type
+			var contentType = "text/plain";
 			final var extensionMatcher = extensionPt.matcher(requestedPath);
 			if (extensionMatcher.matches()) {
+				contentType = mimeTypes.getOrDefault(extensionMatcher.group(1), "text/plain");
 				log.fine(() -> "Content type auto-detected as %s from extension .%s".formatted(
 						mimeTypes.getOrDefault(extensionMatcher.group(1), "text/plain"), extensionMatcher.group(1)));
-				headers.add("Content-Type: " + mimeTypes.getOrDefault(extensionMatcher.group(1), "text/plain"));
-			}
-			// attempt to get the last modified time for the resource - this is only
-			// possible on plain files not packed into a JAR
-			final var lastModified = getLastModified(this.path + requestedPath);
-			if (lastModified.isPresent()) {
-				log.fine(() -> "Last modification retrieved successfully for file %s%s: %s or '%s'".formatted(this.path,
-						requestedPath, lastModified.get(), toHTTPTime(lastModified.get())));
-				headers.add("Last-Modified: " + toHTTPTime(lastModified.get()));
 			}
-			// RsWithBody takes care of the content-length header
-			return new RsCWrap(new RsWithHeaders(new RsWithBody(maybeRequestStream.get()), headers), HttpStatusCode.OK);
+			return new RangedContent(RangedContent.of(resource.data), resource.data.length, contentType, resource.etag,
+					resource.lastModified, List.of(cacheControl)).respond(request);
 		} catch (Throwable e) {
 			log.log(Level.SEVERE, "Server error on static file serve.", e);
 			return new RsCWrap(HttpStatusCode.INTERNAL_SERVER_ERROR);
 		}
 	}
 
+	/**
+	 * Returns the resource from the cache, loading it if it is not cached yet or if
+	 * its file was modified since.
+	 * 
+	 * @param rpath The resource path.
+	 * @return Nothing if the resource does not exist.
+	 */
+	private static Optional<Resource> load(String rpath) throws IOException {
+		// attempt to get the last modified time for the resource - this is only
+		// possible on plain files not packed into a JAR
+		final var lastModified = getLastModified(rpath);
+		final var cached = resources.get(rpath);
+		if (cached != null && cached.lastModified.equals(lastModified))
+			return Just(cached);
+
+		final var stream = CResources.openBinary(rpath);
+		if (stream.isEmpty()) {
+			resources.remove(rpath);
+			return Nothing();
+		}
+		final byte[] data;
+		try (final var in = stream.get()) {
+			data = in.readAllBytes();
+		}
+		lastModified.ifPresent(time -> log.fine(() -> "Last modification retrieved successfully for file %s: %s or '%s'"
+				.formatted(rpath, time, toHTTPTime(time))));
+		final var resource = new Resource(data, lastModified);
+		resources.put(rpath, resource);
+		return Just(resource);
+	}
+
+	/**
+	 * Loads all resources in the resource folder and its subfolders into the cache,
+	 * in parallel, so that not even the first requests for them have to read them.
+	 * 
+	 * @param directory The resource folder, e.g. the path of a take.
+	 * @return The number of loaded resources.
+	 */
+	public static int preload(String directory) {
+		return (int) CResources.list(directory).parallelStream().filter(rpath -> {
+			try {
+				return load(rpath).isPresent();
+			} catch (IOException e) {
+				log.log(Level.WARNING, "Static file %s cannot be preloaded".formatted(rpath), e);
+				return false;
+			}
+		}).count();
+	}
+
 	private static Optional<java.time.Instant> getLastModified(String fpath) {
 		final var f = new File("./out/" + CResources.RESOURCE_PATH + "/" + fpath);
 		if (!f.exists())
@@ -0,0 +1,181 @@
+package klfr.conlangdb.http.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import org.takes.Request;
+import org.takes.Response;
+import org.takes.Take;
+import org.takes.rq.RqHref;
+
+import klfr.conlangdb.CObject;
+import klfr.conlangdb.http.RsCWrap;
+
+/**
+ * Serves the user-provided conscript fonts under {@code /font} from a
+ * directory of the file system. Font files are several megabytes large and
+ * requested by every visitor, therefore each file is memory-mapped once and
+ * the response bodies read directly from the mapping, without copying the file
+ * to the heap. A file is mapped again when its size or modification time
+ * changes. Fonts should be replaced by writing a new file and renaming it over
+ * the old one, which leaves existing mappings intact; a file that is truncated
+ * in place aborts the responses that are being sent from it.<br>
+ * <br>
+ * Fonts are sent with an ETag derived from the file's size and modification
+ * time and may be cached for a year. Conditional and Range requests are
+ * answered by {@link RangedContent}, so that revalidation is cheap and
+ * interrupted downloads can be resumed.
+ */
+public class TkFontFiles extends CObject implements Take {
+	private static final long serialVersionUID = 1L;
+	private static final Logger log = Logger.getLogger(TkFontFiles.class.getCanonicalName());
+
+	public static final Pattern requestPath = Pattern.compile("/font/(.+)");
+
+	/** MIME types of the font formats by file extension. */
+	private static final Map<String, String> fontTypes = Map.of("woff2", "font/woff2", "woff", "font/woff", "ttf",
+			"font/ttf", "otf", "font/otf", "eot", "application/vnd.ms-fontobject", "svg", "image/svg+xml");
+
+	/** Public cache allowed, maximum cache age one year */
+	private static final String cacheControl = "Cache-Control: public, max-age=31536000";
+
+	/** A memory-mapped font file. */
+	private static final class MappedFont {
+		final MappedByteBuffer data;
+		final long size;
+		final long modified;
+		final String etag;
+
+		MappedFont(final MappedByteBuffer data, final long size, final long modified) {
+			this.data = data;
+			this.size = size;
+			this.modified = modified;
+			this.etag = f("\"%s-%s\"", Long.toString(size, 36), Long.toString(modified, 36));
+		}
+	}
+
+	private final Path directory;
+	private final Map<Path, MappedFont> mapped = new ConcurrentHashMap<>();
+
+	/**
+	 * @param directory The directory that contains the font files. Files in its
+	 *                  subdirectories are served as well.
+	 */
+	public TkFontFiles(final Path directory) {
+		this.directory = directory.toAbsolutePath().normalize();
+	}
+
+	@Override
+	public Response act(final Request request) {
+		try {
+			final var matcher = requestPath.matcher(new RqHref.Base(request).href().path());
+			if (!matcher.matches())
+				return new RsCWrap(HttpStatusCode.NOT_FOUND);
+			final var name = URLDecoder.decode(matcher.group(1).replace("+", "%2B"), StandardCharsets.UTF_8);
+			final var file = directory.resolve(name).normalize();
+			final var extension = name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+			// never serve anything outside of the font directory
+			if (!file.startsWith(directory) || !fontTypes.containsKey(extension))
+				return new RsCWrap(HttpStatusCode.NOT_FOUND);
+			final var maybeFont = map(file);
+			if (maybeFont.isEmpty())
+				return new RsCWrap(HttpStatusCode.NOT_FOUND);
+			final var font = maybeFont.get();
+
+			return new RangedContent(source(file, font), font.size, fontTypes.get(extension), font.etag,
+					Just(Instant.ofEpochMilli(font.modified)), List.of(cacheControl)).respond(request);
+		} catch (IOException e) {
+			log.log(Level.SEVERE, "Server error on font file serve.", e);
+			return new RsCWrap(HttpStatusCode.INTERNAL_SERVER_ERROR);
+		}
+	}
+
+	/**
+	 * Returns the mapping of the font file, mapping it if it is not mapped yet or
+	 * was modified since.
+	 *
+	 * @return Nothing if the file does not exist or is no regular file.
+	 */
+	private Optional<MappedFont> map(final Path file) throws IOException {
+		final BasicFileAttributes attributes;
+		try {
+			attributes = Files.readAttributes(file, BasicFileAttributes.class);
+		} catch (NoSuchFileException e) {
+			mapped.remove(file);
+			return Nothing();
+		}
+		if (!attributes.isRegularFile())
+			return Nothing();
+		final var size = attributes.size();
+		final var modified = attributes.lastModifiedTime().toMillis();
+		final var current = mapped.get(file);
+		if (current != null && current.size == size && current.modified == modified)
+			return Just(current);
+
+		log.fine(() -> f("Mapping font file %s (%d bytes)", file, size));
+		// the mapping stays valid after the channel is closed
+		try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			final var font = new MappedFont(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), size, modified);
+			mapped.put(file, font);
+			return Just(font);
+		}
+	}
+
+	/**
+	 * Returns the content of the mapped font. If the file was truncated after it
+	 * was mapped, reading beyond its new end faults, which the JVM reports as an
+	 * {@link InternalError}; the stream then fails with an IOException instead,
+	 * which aborts the response, and the stale mapping is dropped.
+	 */
+	private RangedContent.Source source(final Path file, final MappedFont font) {
+		final var content = RangedContent.of(font.data);
+		return (offset, length) -> new FilterInputStream(content.open(offset, length)) {
+			@Override
+			public int read() throws IOException {
+				try {
+					return super.read();
+				} catch (InternalError e) {
+					throw truncated(e);
+				}
+			}
+
+			@Override
+			public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+				try {
+					return super.read(buffer, offset, length);
+				} catch (InternalError e) {
+					throw truncated(e);
+				}
+			}
+
+			private IOException truncated(final InternalError e) {
+				mapped.remove(file, font);
+				log.warning(() -> f("Font file %s was modified while it was sent", file));
+				return new IOException("Font file modified while reading", e);
+			}
+		};
+	}
+
+	@Override
+	public CObject clone() {
+		return new TkFontFiles(directory);
+	}
+}
@@ -1,11 +1,15 @@
 package klfr.conlangdb.http.util;
 
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
 import java.time.temporal.ChronoField;
+import java.util.Optional;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -18,7 +22,10 @@ import org.takes.rq.RqSocket;
 import klfr.conlangdb.CObject;
 
 /**
- * Take decorator that logs all requests to the Java logging system.
+ * Take decorator that logs all requests, either to the Java logging system or,
+ * if an access log is given, to the {@link AccessLog}. The latter is much
+ * cheaper and records the response status, size and the time until the
+ * response was sent completely.
  */
 public class TkLog extends CObject implements Take {
 	private static final long serialVersionUID = 1L;
@@ -30,13 +37,29 @@ public class TkLog extends CObject implements Take {
 			.appendValue(ChronoField.MILLI_OF_SECOND).appendLiteral("ms / ").optionalEnd()
 			.appendValue(ChronoField.NANO_OF_SECOND).appendLiteral("ns ").optionalEnd().toFormatter();
 
+	/** Header that the Takes back end adds with the client's address. */
+	private static final String REMOTE_ADDRESS_HEADER = "X-Takes-RemoteAddress";
+
 	private final Take sub;
+	private final Optional<AccessLog> accessLog;
 
 	public TkLog(final Take sub) {
+		this(sub, Nothing());
+	}
+
+	/**
+	 * @param sub       The logged take.
+	 * @param accessLog The access log to record requests to, or Nothing to log
+	 *                  requests to the Java logging system.
+	 */
+	public TkLog(final Take sub, final Optional<AccessLog> accessLog) {
 		this.sub = sub;
+		this.accessLog = accessLog;
 	}
 
 	public Response act(final Request req) {
+		if (accessLog.isPresent())
+			return actAccessLog(req, accessLog.get());
 		try {
 			final var before = Instant.now();
 			final var rqline = new RqRequestLine.Base(req);
@@ -56,8 +79,133 @@ public class TkLog extends CObject implements Take {
 		}
 	}
 
+	/**
+	 * Handles the request and records it to the access log once the response body
+	 * was read to its end. The request head is not parsed, only the existing header lines are
+	 * passed on.
+	 */
+	private Response actAccessLog(final Request req, final AccessLog accessLog) {
+		final var start = System.nanoTime();
+		final var time = System.currentTimeMillis();
+		String requestLine = null;
+		String remoteHeader = null;
+		try {
+			for (final var line : req.head()) {
+				if (requestLine == null) {
+					requestLine = line;
+				} else if (line.regionMatches(true, 0, REMOTE_ADDRESS_HEADER, 0, REMOTE_ADDRESS_HEADER.length())) {
+					remoteHeader = line;
+					break;
+				}
+			}
+			return new RsLogged(sub.act(req), accessLog, requestLine, remoteHeader, time, start);
+		} catch (Exception e) {
+			log.log(Level.SEVERE, "EXCEPTION in Take.", e);
+			accessLog.record(requestLine, remoteHeader, HttpStatusCode.INTERNAL_SERVER_ERROR.code, 0, time,
+					System.nanoTime() - start);
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Response decorator that takes the status from the status line and counts the
+	 * body bytes, and records the request when the body was read completely.
+	 */
+	private static final class RsLogged implements Response {
+		private final Response origin;
+		private final AccessLog accessLog;
+		private final String requestLine;
+		private final String remoteHeader;
+		private final long time;
+		private final long start;
+		private int status = 0;
+
+		RsLogged(final Response origin, final AccessLog accessLog, final String requestLine,
+				final String remoteHeader, final long time, final long start) {
+			this.origin = origin;
+			this.accessLog = accessLog;
+			this.requestLine = requestLine;
+			this.remoteHeader = remoteHeader;
+			this.time = time;
+			this.start = start;
+		}
+
+		@Override
+		public Iterable<String> head() throws IOException {
+			final var head = origin.head();
+			final var iterator = head.iterator();
+			if (iterator.hasNext())
+				status = parseStatus(iterator.next());
+			return head;
+		}
+
+		@Override
+		public InputStream body() throws IOException {
+			return new FilterInputStream(origin.body()) {
+				private long size = 0;
+				private boolean recorded = false;
+
+				@Override
+				public int read() throws IOException {
+					final var b = super.read();
+					if (b >= 0)
+						++size;
+					else
+						record();
+					return b;
+				}
+
+				@Override
+				public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+					final var count = super.read(buffer, offset, length);
+					if (count > 0)
+						size += count;
+					else if (count < 0)
+						record();
+					return count;
+				}
+
+				@Override
+				public void close() throws IOException {
+					record();
+					super.close();
+				}
+
+				/**
+				 * Records the request once, either at the end of the body, as the Takes back
+				 * ends never close it, or when the body is closed early.
+				 */
+				private void record() {
+					if (!recorded) {
+						recorded = true;
+						accessLog.record(requestLine, remoteHeader, status, size, time, System.nanoTime() - start);
+					}
+				}
+			};
+		}
+
+		/**
+		 * Parses the status code from a status line such as {@code HTTP/1.1 200 OK}.
+		 *
+		 * @return The status code, or 0 if the line is malformed.
+		 */
+		private static int parseStatus(final String statusLine) {
+			final var begin = statusLine.indexOf(' ') + 1;
+			if (begin == 0 || statusLine.length() < begin + 3)
+				return 0;
+			var code = 0;
+			for (int i = begin; i < begin + 3; ++i) {
+				final var digit = statusLine.charAt(i) - '0';
+				if (digit < 0 || digit > 9)
+					return 0;
+				code = code * 10 + digit;
+			}
+			return code;
+		}
+	}
+
 	@Override
 	public CObject clone() {
-		return new TkLog(sub);
+		return new TkLog(sub, accessLog);
 	}
 }
@@ -0,0 +1,181 @@
+package klfr.conlangdb.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Log handler that hands log records to a dedicated writer thread through a
+ * bounded queue, so that logging threads neither wait for the output stream
+ * nor for each other. The writer thread formats the records with the handler's
+ * formatter and flushes the output whenever the queue is empty.<br>
+ * <br>
+ * As formatting happens on the writer thread, the name of the logging thread
+ * is queued together with each record; formatters retrieve it with
+ * {@link AsyncLogHandler#threadName()}.<br>
+ * <br>
+ * If the queue is full, records below {@link Level#WARNING} are dropped and
+ * counted, more severe records wait for space.
+ */
+public class AsyncLogHandler extends Handler {
+
+	/** Number of records that the queue holds. */
+	private static final int QUEUE_CAPACITY = 8192;
+	/** Maximum time in milliseconds that closing waits for queued records. */
+	private static final long CLOSE_TIMEOUT_MILLIS = 2000;
+
+	/** A queued record and the name of the thread that published it. */
+	private static final class Entry {
+		final LogRecord record;
+		final String threadName;
+
+		Entry(final LogRecord record, final String threadName) {
+			this.record = record;
+			this.threadName = threadName;
+		}
+	}
+
+	/**
+	 * The name of the thread that published the record which the writer thread is
+	 * formatting, only set on writer threads.
+	 */
+	private static final ThreadLocal<String> formattedThreadName = new ThreadLocal<>();
+
+	private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+	private final LongAdder dropped = new LongAdder();
+	private final Writer out;
+	private final Thread writer;
+	private volatile boolean closed = false;
+
+	/**
+	 * Creates the handler and starts its writer thread.
+	 *
+	 * @param out The stream to write the formatted records to, which is never
+	 *            closed by the handler.
+	 */
+	public AsyncLogHandler(final OutputStream out) {
+		this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		this.writer = new Thread(this::writeLoop, "LogWritr");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Returns the name of the thread that published the record which is being
+	 * formatted. Outside of the writer thread, this is the current thread, as
+	 * other handlers format records on the publishing thread.
+	 */
+	public static String threadName() {
+		final var name = formattedThreadName.get();
+		return name == null ? Thread.currentThread().getName() : name;
+	}
+
+	@Override
+	public void publish(final LogRecord record) {
+		if (closed || !isLoggable(record))
+			return;
+		final var current = Thread.currentThread();
+		final var entry = new Entry(record, current.getName());
+		if (queue.offer(entry))
+			return;
+		if (record.getLevel().intValue() < Level.WARNING.intValue()) {
+			dropped.increment();
+			return;
+		}
+		try {
+			queue.put(entry);
+		} catch (InterruptedException e) {
+			current.interrupt();
+		}
+	}
+
+	private void writeLoop() {
+		final var batch = new ArrayList<Entry>(256);
+		try {
+			while (true) {
+				batch.add(queue.take());
+				queue.drainTo(batch, 255);
+				write(batch);
+				batch.clear();
+				if (queue.isEmpty())
+					flushOutput();
+			}
+		} catch (InterruptedException e) {
+			// closed
+		}
+	}
+
+	private void write(final Iterable<Entry> entries) {
+		final var droppedCount = dropped.sumThenReset();
+		try {
+			if (droppedCount > 0)
+				out.write("[%d log records dropped]%n".formatted(droppedCount));
+			for (final var entry : entries) {
+				formattedThreadName.set(entry.threadName);
+				try {
+					out.write(getFormatter().format(entry.record));
+				} catch (RuntimeException e) {
+					reportError(null, e, ErrorManager.FORMAT_FAILURE);
+				} finally {
+					formattedThreadName.remove();
+				}
+			}
+		} catch (IOException e) {
+			reportError(null, e, ErrorManager.WRITE_FAILURE);
+		}
+	}
+
+	private void flushOutput() {
+		try {
+			out.flush();
+		} catch (IOException e) {
+			reportError(null, e, ErrorManager.FLUSH_FAILURE);
+		}
+	}
+
+	/**
+	 * Waits until the queued records were written and flushes the output.
+	 */
+	@Override
+	public void flush() {
+		final var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CLOSE_TIMEOUT_MILLIS);
+		try {
+			while (!queue.isEmpty() && writer.isAlive() && System.nanoTime() - deadline < 0)
+				Thread.sleep(1);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		flushOutput();
+	}
+
+	/**
+	 * Writes the remaining records and stops the writer thread.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		flush();
+		writer.interrupt();
+		try {
+			writer.join(CLOSE_TIMEOUT_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		final var remaining = new ArrayList<Entry>();
+		queue.drainTo(remaining);
+		write(remaining);
+		flushOutput();
+	}
+}
@@ -0,0 +1,237 @@
+package klfr.conlangdb.util;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Static registry of the server's operational metrics, which are exported in
+ * the Prometheus text format. Metrics are grouped into families, which have a
+ * name, a type and at most one label; every label value of a family is a
+ * separate metric. Metrics are created on first use and are cheap to update
+ * from any thread.<br>
+ * <br>
+ * There are three kinds of metrics: counters, histograms of durations, and
+ * callbacks, whose value is retrieved from their owner when the metrics are
+ * exported. Callbacks are used for values that are already tracked elsewhere,
+ * such as queue lengths and cache hits.
+ */
+public final class Metrics {
+
+	/** Name prefix of all metric families. */
+	public static final String PREFIX = "conlangdb_";
+
+	/** A family of metrics with the same name and different label values. */
+	private static final class Family {
+		final String name;
+		final String help;
+		final String type;
+		final String label;
+		/** The metrics by label value, "" if the family has no label. */
+		final Map<String, Object> metrics = new ConcurrentSkipListMap<>();
+
+		Family(final String name, final String help, final String type, final String label) {
+			this.name = name;
+			this.help = help;
+			this.type = type;
+			this.label = label;
+		}
+	}
+
+	/** A monotonically increasing count. */
+	public static final class Counter {
+		private final LongAdder count = new LongAdder();
+
+		Counter() {
+		}
+
+		public void increment() {
+			count.increment();
+		}
+
+		public void add(final long amount) {
+			count.add(amount);
+		}
+
+		public long get() {
+			return count.sum();
+		}
+	}
+
+	/**
+	 * A histogram of durations. Like HDR histograms, the buckets grow
+	 * exponentially, so that the relative precision is the same for all durations:
+	 * Bucket k counts the durations up to 2^(16+k) nanoseconds, i.e. from 65µs up
+	 * to 34s, longer durations only appear in the total.
+	 */
+	public static final class Histogram {
+		private static final int MIN_EXPONENT = 16;
+		private static final int BUCKETS = 20;
+
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS + 1);
+		private final LongAdder count = new LongAdder();
+		private final LongAdder sum = new LongAdder();
+
+		Histogram() {
+		}
+
+		/**
+		 * Records a duration.
+		 *
+		 * @param nanos The duration in nanoseconds.
+		 */
+		public void record(final long nanos) {
+			final var exponent = nanos <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(nanos - 1);
+			buckets.incrementAndGet(Math.min(BUCKETS, Math.max(0, exponent - MIN_EXPONENT)));
+			count.increment();
+			sum.add(nanos);
+		}
+
+		/** Returns the number of recorded durations. */
+		public long count() {
+			return count.sum();
+		}
+	}
+
+	/** The families by name, in order of their names. */
+	private static final Map<String, Family> families = new ConcurrentSkipListMap<>();
+	/** Families whose metrics are keyed by a label, by name and label value. */
+	private static final Map<String, Map<String, Object>> lookup = new ConcurrentHashMap<>();
+
+	static {
+		final var runtime = Runtime.getRuntime();
+		callback("jvm_memory_used_bytes", "Heap memory in use.", "gauge",
+				() -> runtime.totalMemory() - runtime.freeMemory());
+		callback("jvm_memory_committed_bytes", "Heap memory reserved by the JVM.", "gauge", runtime::totalMemory);
+		callback("jvm_memory_max_bytes", "Maximum heap memory.", "gauge", runtime::maxMemory);
+		callback("jvm_threads", "Number of live threads.", "gauge", Thread::activeCount);
+	}
+
+	private Metrics() {
+	}
+
+	private static Family family(final String name, final String help, final String type, final String label) {
+		return families.computeIfAbsent(PREFIX + name, n -> new Family(n, help, type, label));
+	}
+
+	/**
+	 * Returns the counter with the given label value, creating it if necessary.
+	 *
+	 * @param name  The family name without prefix, such as "http_requests_total".
+	 * @param help  The description of the family.
+	 * @param label The label name, or null if the family has no label.
+	 * @param value The label value, ignored if the family has no label.
+	 */
+	public static Counter counter(final String name, final String help, final String label, final String value) {
+		return (Counter) metric(name, help, "counter", label, value);
+	}
+
+	/**
+	 * Returns the histogram with the given label value, creating it if necessary.
+	 * The arguments are the same as for
+	 * {@link Metrics#counter(String, String, String, String)}.
+	 */
+	public static Histogram histogram(final String name, final String help, final String label,
+			final String value) {
+		return (Histogram) metric(name, help, "histogram", label, value);
+	}
+
+	private static Object metric(final String name, final String help, final String type, final String label,
+			final String value) {
+		final var key = label == null ? "" : value;
+		final var metrics = lookup.computeIfAbsent(name, n -> family(n, help, type, label).metrics);
+		final var existing = metrics.get(key);
+		if (existing != null)
+			return existing;
+		return metrics.computeIfAbsent(key, k -> type.equals("histogram") ? new Histogram() : new Counter());
+	}
+
+	/**
+	 * Registers a metric whose value is retrieved when the metrics are exported.
+	 * Registering the same metric again replaces the callback.
+	 *
+	 * @param name  The family name without prefix.
+	 * @param help  The description of the family.
+	 * @param type  The Prometheus type, "counter" or "gauge".
+	 * @param value The callback.
+	 */
+	public static void callback(final String name, final String help, final String type, final DoubleSupplier value) {
+		callback(name, help, type, null, "", value);
+	}
+
+	/**
+	 * Registers a metric with a label whose value is retrieved when the metrics are
+	 * exported. Registering the same metric again replaces the callback.
+	 */
+	public static void callback(final String name, final String help, final String type, final String label,
+			final String labelValue, final DoubleSupplier value) {
+		family(name, help, type, label).metrics.put(label == null ? "" : labelValue, value);
+	}
+
+	/**
+	 * Writes all metrics in the Prometheus text exposition format, version 0.0.4.
+	 */
+	public static String export() {
+		final var out = new StringBuilder(8192);
+		for (final var family : families.values()) {
+			if (family.metrics.isEmpty())
+				continue;
+			out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+			out.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+			for (final var metric : family.metrics.entrySet()) {
+				final var labels = family.label == null ? ""
+						: family.label + "=\"" + escape(metric.getKey()) + "\"";
+				if (metric.getValue() instanceof Histogram)
+					writeHistogram(out, family.name, labels, (Histogram) metric.getValue());
+				else
+					writeSample(out, family.name, labels, metric.getValue() instanceof Counter
+							? ((Counter) metric.getValue()).get()
+							: ((DoubleSupplier) metric.getValue()).getAsDouble());
+			}
+		}
+		return out.toString();
+	}
+
+	private static void writeHistogram(final StringBuilder out, final String name, final String labels,
+			final Histogram histogram) {
+		final var separator = labels.isEmpty() ? "" : ",";
+		long cumulative = 0;
+		for (int k = 0; k < Histogram.BUCKETS; ++k) {
+			cumulative += histogram.buckets.get(k);
+			writeSample(out, name + "_bucket",
+					labels + separator + "le=\"" + seconds(1L << (Histogram.MIN_EXPONENT + k)) + "\"", cumulative);
+		}
+		cumulative += histogram.buckets.get(Histogram.BUCKETS);
+		writeSample(out, name + "_bucket", labels + separator + "le=\"+Inf\"", cumulative);
+		out.append(name).append("_sum");
+		if (!labels.isEmpty())
+			out.append('{').append(labels).append('}');
+		out.append(' ').append(seconds(histogram.sum.sum())).append('\n');
+		writeSample(out, name + "_count", labels, cumulative);
+	}
+
+	private static void writeSample(final StringBuilder out, final String name, final String labels,
+			final double value) {
+		out.append(name);
+		if (!labels.isEmpty())
+			out.append('{').append(labels).append('}');
+		out.append(' ');
+		if (value == Math.rint(value) && Math.abs(value) < 1e15)
+			out.append((long) value);
+		else
+			out.append(value);
+		out.append('\n');
+	}
+
+	private static String seconds(final long nanos) {
+		return String.format(Locale.ROOT, "%.6f", nanos / 1e9);
+	}
+
+	private static String escape(final String labelValue) {
+		return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
@@ -3,11 +3,13 @@
  * Depends on the JDK modules for SQL and HTTP.
  * Depends on the Takes Web Framework.
  * Depends on the JSON library reference implementation.
+ * Depends on the PostgreSQL JDBC driver for change notifications.
  * Provides an API for extensions to use.
  */
 open module klfr.conlangdb {
 	requires java.base;
 	requires java.sql;
+	requires org.postgresql.jdbc;
 	requires transitive org.json;
 	requires transitive takes;
 	exports klfr.conlangdb;
@@ -249,3 +249,266 @@ CREATE TABLE IF NOT EXISTS RelAttributeForWord (
 	FOREIGN KEY (AID) References TWordAttribute (ID) ON UPDATE CASCADE ON DELETE CASCADE
 );
 --JAVA-SEPARATOR-NEXT-CMD
+
+
+-- Change notifications: Every modification of a language's data notifies the
+-- channel conlangdb_modified with a JSON object describing the change, so that
+-- servers sharing this database can invalidate their caches and inform their
+-- clients. The object contains the kind of the changed entity ("language",
+-- "word" or "attribute"), the operation ("insert", "update" or "delete"), the
+-- language ID and, for words, the romanized word. Changes of a word's
+-- definitions, translations and attributes are updates of the word.
+-- Word changes are notified per statement: A statement that changes a single
+-- row notifies the affected words, a statement that changes several rows only
+-- notifies each affected language once per operation, without a word, so that
+-- bulk writes do not flood the listeners. PostgreSQL folds identical
+-- notifications within a transaction into one.
+CREATE OR REPLACE FUNCTION pgsql_notify_modification(Kind text, Operation text, LanguageID varchar, Word text) RETURNS void AS $$
+	BEGIN
+		IF LanguageID IS NOT NULL THEN
+			PERFORM pg_notify('conlangdb_modified', json_build_object(
+				'kind', Kind, 'op', lower(Operation), 'language', LanguageID, 'word', Word)::text);
+		END IF;
+	END;
+$$ LANGUAGE plpgsql;
+--JAVA-SEPARATOR-NEXT-CMD
+
+-- notifies the word changes of one statement, given as parallel arrays in the
+-- order of notification; with Detailed, every word is notified, otherwise
+-- every language once per operation
+CREATE OR REPLACE FUNCTION pgsql_notify_modifications(Kind text, Detailed boolean, Operations text[],
+		LanguageIDs varchar[], Words text[]) RETURNS void AS $$
+	DECLARE
+		Change record;
+	BEGIN
+		IF Detailed THEN
+			FOR Change IN SELECT C.Op, C.LID, C.Word FROM unnest(Operations, LanguageIDs, Words)
+					WITH ORDINALITY AS C(Op, LID, Word, N) GROUP BY C.Op, C.LID, C.Word ORDER BY min(C.N) LOOP
+				PERFORM pgsql_notify_modification(Kind, Change.Op, Change.LID, Change.Word);
+			END LOOP;
+		ELSE
+			FOR Change IN SELECT C.Op, C.LID FROM unnest(Operations, LanguageIDs)
+					WITH ORDINALITY AS C(Op, LID, N) GROUP BY C.Op, C.LID ORDER BY min(C.N) LOOP
+				PERFORM pgsql_notify_modification(Kind, Change.Op, Change.LID, NULL);
+			END LOOP;
+		END IF;
+	END;
+$$ LANGUAGE plpgsql;
+--JAVA-SEPARATOR-NEXT-CMD
+
+DROP FUNCTION IF EXISTS pgsql_notify_word_update(bigint);
+--JAVA-SEPARATOR-NEXT-CMD
+
+-- notifies an update of the words with the given IDs; words that are already
+-- deleted are skipped, as the word's own trigger has notified the deletion
+CREATE OR REPLACE FUNCTION pgsql_notify_word_updates(WordIDs bigint[], Detailed boolean) RETURNS void AS $$
+	DECLARE
+		Operations text[];
+		LanguageIDs varchar[];
+		Words text[];
+	BEGIN
+		SELECT array_agg('update'::text ORDER BY ID), array_agg(LID ORDER BY ID), array_agg(Romanized ORDER BY ID)
+			INTO Operations, LanguageIDs, Words FROM TWord WHERE ID = ANY(WordIDs);
+		PERFORM pgsql_notify_modifications('word', Detailed, Operations, LanguageIDs, Words);
+	END;
+$$ LANGUAGE plpgsql;
+--JAVA-SEPARATOR-NEXT-CMD
+
+CREATE OR REPLACE FUNCTION pgsql_notify_tlanguage() RETURNS Trigger AS $$
+	BEGIN
+		IF TG_OP = 'UPDATE' AND OLD.ID IS DISTINCT FROM NEW.ID THEN
+			PERFORM pgsql_notify_modification('language', 'delete', OLD.ID, NULL);
+			PERFORM pgsql_notify_modification('language', 'insert', NEW.ID, NULL);
+		ELSIF TG_OP = 'DELETE' THEN
+			PERFORM pgsql_notify_modification('language', TG_OP, OLD.ID, NULL);
+		ELSE
+			PERFORM pgsql_notify_modification('language', TG_OP, NEW.ID, NULL);
+		END IF;
+		RETURN NULL;
+	END;
+$$ LANGUAGE plpgsql;
+--JAVA-SEPARATOR-NEXT-CMD
+
+-- statement trigger with the transition tables OldRows and NewRows
+CREATE OR REPLACE FUNCTION pgsql_notify_tword() RETURNS Trigger AS $$
+	DECLARE
+		Operations text[];
+		LanguageIDs varchar[];
+		Words text[];
+		Detailed boolean;
+	BEGIN
+		IF TG_OP = 'INSERT' THEN
+			SELECT array_agg('insert'::text), array_agg(LID), array_agg(Romanized), count(*) <= 1
+				INTO Operations, LanguageIDs, Words, Detailed FROM NewRows;
+		ELSIF TG_OP = 'DELETE' THEN
+			SELECT array_agg('delete'::text), array_agg(LID), array_agg(Romanized), count(*) <= 1
+				INTO Operations, LanguageIDs, Words, Detailed FROM OldRows;
+		ELSE
+			-- renaming a word is deleting the old word for clients
+			SELECT array_agg(C.Op ORDER BY C.Step), array_agg(C.LID ORDER BY C.Step),
+				array_agg(C.Romanized ORDER BY C.Step)
+				INTO Operations, LanguageIDs, Words FROM (
+					SELECT 'update'::text AS Op, N.LID, N.Romanized, 0 AS Step FROM OldRows O JOIN NewRows N ON O.ID = N.ID
+						WHERE (O.LID, O.Romanized) IS NOT DISTINCT FROM (N.LID, N.Romanized)
+					UNION ALL
+					SELECT 'delete'::text, O.LID, O.Romanized, 1 FROM OldRows O JOIN NewRows N ON O.ID = N.ID
+						WHERE (O.LID, O.Romanized) IS DISTINCT FROM (N.LID, N.Romanized)
+					UNION ALL
+					SELECT 'insert'::text, N.LID, N.Romanized, 2 FROM OldRows O JOIN NewRows N ON O.ID = N.ID
+						WHERE (O.LID, O.Romanized) IS DISTINCT FROM (N.LID, N.Romanized)) AS C;
+			SELECT count(*) <= 1 INTO Detailed FROM NewRows;
+		END IF;
+		PERFORM pgsql_notify_modifications('word', Detailed, Operations, LanguageIDs, Words);
+		RETURN NULL;
+	END;
+$$ LANGUAGE plpgsql;
+--JAVA-SEPARATOR-NEXT-CMD
+
+CREATE OR REPLACE FUNCTION pgsql_notify_twordattribute() RETURNS Trigger AS $$
+	BEGIN
+		IF TG_OP <> 'INSERT' THEN
+			PERFORM pgsql_notify_modification('attribute', TG_OP, OLD.LID, NULL);
+		END IF;
+		IF TG_OP <> 'DELETE' THEN
+			PERFORM pgsql_notify_modification('attribute', TG_OP, NEW.LID, NULL);
+		END IF;
+		RETURN NULL;
+	END;
+$$ LANGUAGE plpgsql;
+--JAVA-SEPARATOR-NEXT-CMD
+
+-- statement trigger with the transition tables OldRows and NewRows, shared by
+-- all tables with a WID column
+CREATE OR REPLACE FUNCTION pgsql_notify_wid() RETURNS Trigger AS $$
+	DECLARE
+		WordIDs bigint[];
+		Detailed boolean;
+	BEGIN
+		IF TG_OP = 'INSERT' THEN
+			SELECT array_agg(WID), count(*) <= 1 INTO WordIDs, Detailed FROM NewRows;
+		ELSIF TG_OP = 'DELETE' THEN
+			SELECT array_agg(WID), count(*) <= 1 INTO WordIDs, Detailed FROM OldRows;
+		ELSE
+			SELECT array_agg(WID) INTO WordIDs FROM (SELECT WID FROM OldRows UNION SELECT WID FROM NewRows) AS W;
+			SELECT count(*) <= 1 INTO Detailed FROM NewRows;
+		END IF;
+		PERFORM pgsql_notify_word_updates(WordIDs, Detailed);
+		RETURN NULL;
+	END;
+$$ LANGUAGE plpgsql;
+--JAVA-SEPARATOR-NEXT-CMD
+
+-- statement trigger with the transition tables OldRows and NewRows
+CREATE OR REPLACE FUNCTION pgsql_notify_reltranslation() RETURNS Trigger AS $$
+	DECLARE
+		WordIDs bigint[];
+		Detailed boolean;
+	BEGIN
+		IF TG_OP = 'INSERT' THEN
+			SELECT array_agg(WIDOne) || array_agg(WIDTwo), count(*) <= 1 INTO WordIDs, Detailed FROM NewRows;
+		ELSIF TG_OP = 'DELETE' THEN
+			SELECT array_agg(WIDOne) || array_agg(WIDTwo), count(*) <= 1 INTO WordIDs, Detailed FROM OldRows;
+		ELSE
+			SELECT array_agg(WID) INTO WordIDs FROM (
+				SELECT WIDOne AS WID FROM OldRows UNION SELECT WIDTwo FROM OldRows
+				UNION SELECT WIDOne FROM NewRows UNION SELECT WIDTwo FROM NewRows) AS W;
+			SELECT count(*) <= 1 INTO Detailed FROM NewRows;
+		END IF;
+		PERFORM pgsql_notify_word_updates(WordIDs, Detailed);
+		RETURN NULL;
+	END;
+$$ LANGUAGE plpgsql;
+--JAVA-SEPARATOR-NEXT-CMD
+
+DROP TRIGGER IF EXISTS TrigNotifyTLanguage ON TLanguage;
+--JAVA-SEPARATOR-NEXT-CMD
+CREATE TRIGGER TrigNotifyTLanguage
+	AFTER INSERT OR UPDATE OR DELETE ON TLanguage FOR EACH ROW
+	EXECUTE FUNCTION pgsql_notify_tlanguage();
+--JAVA-SEPARATOR-NEXT-CMD
+DROP TRIGGER IF EXISTS TrigNotifyTWord ON TWord;
+--JAVA-SEPARATOR-NEXT-CMD
+DROP TRIGGER IF EXISTS TrigNotifyTWordInsert ON TWord;
+--JAVA-SEPARATOR-NEXT-CMD
+CREATE TRIGGER TrigNotifyTWordInsert
+	AFTER INSERT ON TWord REFERENCING NEW TABLE AS NewRows
+	FOR EACH STATEMENT EXECUTE FUNCTION pgsql_notify_tword();
+--JAVA-SEPARATOR-NEXT-CMD
+DROP TRIGGER IF EXISTS TrigNotifyTWordUpdate ON TWord;
+--JAVA-SEPARATOR-NEXT-CMD
+CREATE TRIGGER TrigNotifyTWordUpdate
+	AFTER UPDATE ON TWord REFERENCING OLD TABLE AS OldRows NEW TABLE AS NewRows
+	FOR EACH STATEMENT EXECUTE FUNCTION pgsql_notify_tword();
+--JAVA-SEPARATOR-NEXT-CMD
+DROP TRIGGER IF EXISTS TrigNotifyTWordDelete ON TWord;
+--JAVA-SEPARATOR-NEXT-CMD
+CREATE TRIGGER TrigNotifyTWordDelete
+	AFTER DELETE ON TWord REFERENCING OLD TABLE AS OldRows
+	FOR EACH STATEMENT EXECUTE FUNCTION pgsql_notify_tword();
+--JAVA-SEPARATOR-NEXT-CMD
+DROP TRIGGER IF EXISTS TrigNotifyTWordAttribute ON TWordAttribute;
+--JAVA-SEPARATOR-NEXT-CMD
+CREATE TRIGGER TrigNotifyTWordAttribute
+	AFTER INSERT OR UPDATE OR DELETE ON TWordAttribute FOR EACH ROW
+	EXECUTE FUNCTION pgsql_notify_twordattribute();
+--JAVA-SEPARATOR-NEXT-CMD
+DROP TRIGGER IF EXISTS TrigNotifyTDefinition ON TDefinition;
+--JAVA-SEPARATOR-NEXT-CMD
+DROP TRIGGER IF EXISTS TrigNotifyTDefinitionInsert ON TDefinition;
+--JAVA-SEPARATOR-NEXT-CMD
+CREATE TRIGGER TrigNotifyTDefinitionInsert
+	AFTER INSERT ON TDefinition REFERENCING NEW TABLE AS NewRows
+	FOR EACH STATEMENT EXECUTE FUNCTION pgsql_notify_wid();
+--JAVA-SEPARATOR-NEXT-CMD
+DROP TRIGGER IF EXISTS TrigNotifyTDefinitionUpdate ON TDefinition;
+--JAVA-SEPARATOR-NEXT-CMD
+CREATE TRIGGER TrigNotifyTDefinitionUpdate
+	AFTER UPDATE ON TDefinition REFERENCING OLD TABLE AS OldRows NEW TABLE AS NewRows
+	FOR EACH STATEMENT EXECUTE FUNCTION pgsql_notify_wid();
+--JAVA-SEPARATOR-NEXT-CMD
+DROP TRIGGER IF EXISTS TrigNotifyTDefinitionDelete ON TDefinition;
+--JAVA-SEPARATOR-NEXT-CMD
+CREATE TRIGGER TrigNotifyTDefinitionDelete
+	AFTER DELETE ON TDefinition REFERENCING OLD TABLE AS OldRows
+	FOR EACH STATEMENT EXECUTE FUNCTION pgsql_notify_wid();
+--JAVA-SEPARATOR-NEXT-CMD
+DROP TRIGGER IF EXISTS TrigNotifyRelAttributeForWord ON RelAttributeForWord;
+--JAVA-SEPARATOR-NEXT-CMD
+DROP TRIGGER IF EXISTS TrigNotifyRelAttributeForWordInsert ON RelAttributeForWord;
+--JAVA-SEPARATOR-NEXT-CMD
+CREATE TRIGGER TrigNotifyRelAttributeForWordInsert
+	AFTER INSERT ON RelAttributeForWord REFERENCING NEW TABLE AS NewRows
+	FOR EACH STATEMENT EXECUTE FUNCTION pgsql_notify_wid();
+--JAVA-SEPARATOR-NEXT-CMD
+DROP TRIGGER IF EXISTS TrigNotifyRelAttributeForWordUpdate ON RelAttributeForWord;
+--JAVA-SEPARATOR-NEXT-CMD
+CREATE TRIGGER TrigNotifyRelAttributeForWordUpdate
+	AFTER UPDATE ON RelAttributeForWord REFERENCING OLD TABLE AS OldRows NEW TABLE AS NewRows
+	FOR EACH STATEMENT EXECUTE FUNCTION pgsql_notify_wid();
+--JAVA-SEPARATOR-NEXT-CMD
+DROP TRIGGER IF EXISTS TrigNotifyRelAttributeForWordDelete ON RelAttributeForWord;
+--JAVA-SEPARATOR-NEXT-CMD
+CREATE TRIGGER TrigNotifyRelAttributeForWordDelete
+	AFTER DELETE ON RelAttributeForWord REFERENCING OLD TABLE AS OldRows
+	FOR EACH STATEMENT EXECUTE FUNCTION pgsql_notify_wid();
+--JAVA-SEPARATOR-NEXT-CMD
+DROP TRIGGER IF EXISTS TrigNotifyRelTranslation ON RelTranslation;
+--JAVA-SEPARATOR-NEXT-CMD
+DROP TRIGGER IF EXISTS TrigNotifyRelTranslationInsert ON RelTranslation;
+--JAVA-SEPARATOR-NEXT-CMD
+CREATE TRIGGER TrigNotifyRelTranslationInsert
+	AFTER INSERT ON RelTranslation REFERENCING NEW TABLE AS NewRows
+	FOR EACH STATEMENT EXECUTE FUNCTION pgsql_notify_reltranslation();
+--JAVA-SEPARATOR-NEXT-CMD
+DROP TRIGGER IF EXISTS TrigNotifyRelTranslationUpdate ON RelTranslation;
+--JAVA-SEPARATOR-NEXT-CMD
+CREATE TRIGGER TrigNotifyRelTranslationUpdate
+	AFTER UPDATE ON RelTranslation REFERENCING OLD TABLE AS OldRows NEW TABLE AS NewRows
+	FOR EACH STATEMENT EXECUTE FUNCTION pgsql_notify_reltranslation();
+--JAVA-SEPARATOR-NEXT-CMD
+DROP TRIGGER IF EXISTS TrigNotifyRelTranslationDelete ON RelTranslation;
+--JAVA-SEPARATOR-NEXT-CMD
+CREATE TRIGGER TrigNotifyRelTranslationDelete
+	AFTER DELETE ON RelTranslation REFERENCING OLD TABLE AS OldRows
+	FOR EACH STATEMENT EXECUTE FUNCTION pgsql_notify_reltranslation();
+--JAVA-SEPARATOR-NEXT-CMD